@@ -0,0 +1,23 @@
+package com.nikondsl.cache.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs benchmarks with GC profiler (same as "-prof gc"), so allocation rate per operation is
+ * reported next to throughput and latency percentiles. Accepts usual JMH command line, for example:
+ *
+ * java -jar cache-benchmarks/target/benchmarks.jar SingleCalculationLatchBenchmark.hit -p provider=ehcache
+ */
+public class BenchmarkRunner {
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		new Runner(new OptionsBuilder()
+				.parent(commandLine)
+				.addProfiler(GCProfiler.class)
+				.build())
+				.run();
+	}
+}
@@ -0,0 +1,68 @@
+package com.nikondsl.cache.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Generates keys in [0, keySpace) which are requested by {@link LoadGenerator}.
+ * Distributions are thread safe and don't share mutable state between threads.
+ */
+public interface KeyDistribution {
+	String UNIFORM = "uniform";
+	String ZIPFIAN = "zipfian";
+	String HOTSPOT = "hotspot";
+	String SCAN = "scan";
+	
+	/**
+	 * Part of keys which is hot in {@link #HOTSPOT} distribution.
+	 */
+	double HOT_KEYS = 0.2;
+	/**
+	 * Part of requests which go to hot keys in {@link #HOTSPOT} distribution.
+	 */
+	double HOT_REQUESTS = 0.8;
+	
+	long next();
+	
+	/**
+	 * Creates distribution by name: "uniform", "zipfian" (popular keys are the smallest ones), "hotspot"
+	 * (80% of requests go to 20% of keys) or "scan" (each thread reads all keys one by one from a random start).
+	 */
+	static KeyDistribution create(String name, long keySpace) {
+		if (keySpace <= 0) {
+			throw new IllegalArgumentException("Key space should be positive");
+		}
+		switch (name) {
+			case UNIFORM:
+				return () -> ThreadLocalRandom.current().nextLong(keySpace);
+			case ZIPFIAN:
+				//ThreadLocalRandom uses seed of the calling thread, so generator may be shared,
+				//current() is called first as it initializes seed of a new thread
+				ZipfianGenerator zipfian = new ZipfianGenerator(keySpace, ZipfianGenerator.DEFAULT_SKEW,
+						ThreadLocalRandom.current());
+				return () -> {
+					ThreadLocalRandom.current();
+					return zipfian.next();
+				};
+			case HOTSPOT:
+				long hotKeys = Math.max(1L, (long) (keySpace * HOT_KEYS));
+				return () -> {
+					ThreadLocalRandom random = ThreadLocalRandom.current();
+					if (hotKeys == keySpace || random.nextDouble() < HOT_REQUESTS) {
+						return random.nextLong(hotKeys);
+					}
+					return hotKeys + random.nextLong(keySpace - hotKeys);
+				};
+			case SCAN:
+				ThreadLocal<long[]> cursor = ThreadLocal.withInitial(
+						() -> new long[] {ThreadLocalRandom.current().nextLong(keySpace)});
+				return () -> {
+					long[] position = cursor.get();
+					long key = position[0];
+					position[0] = key + 1 == keySpace ? 0L : key + 1;
+					return key;
+				};
+			default:
+				throw new IllegalArgumentException("Unknown key distribution: " + name);
+		}
+	}
+}
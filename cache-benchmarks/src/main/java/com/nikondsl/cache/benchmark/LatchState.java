@@ -0,0 +1,97 @@
+package com.nikondsl.cache.benchmark;
+
+import com.nikondsl.cache.CacheProvider;
+import com.nikondsl.cache.SimpleFuture;
+import com.nikondsl.cache.SingleCalculationLatch;
+import com.nikondsl.cache.ValueProvider;
+import com.nikondsl.cache.adapter.BoundedConcurrentMapProviderAdapter;
+import com.nikondsl.cache.adapter.ConcurrentMapProviderAdapter;
+import com.nikondsl.cache.adapter.EhCacheProviderAdapter;
+import com.nikondsl.cache.adapter.NearCacheProviderAdapter;
+import org.ehcache.CacheManager;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.CacheManagerBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latch which is shared by all benchmark threads, built over the provider given by {@link #provider}.
+ * Keys are pre-boxed, so benchmarks do not measure boxing.
+ */
+@State(Scope.Benchmark)
+public class LatchState {
+	public static final String CONCURRENT_MAP = "concurrent-map";
+	public static final String BOUNDED = "bounded";
+	public static final String EHCACHE = "ehcache";
+	public static final String NEAR_EHCACHE = "near-ehcache";
+	
+	@Param({CONCURRENT_MAP, BOUNDED, EHCACHE, NEAR_EHCACHE})
+	public String provider;
+	
+	@Param({"65536"})
+	public int keySpace;
+	
+	public SingleCalculationLatch<Long, Long, RuntimeException> latch;
+	public CacheProvider<Long, SimpleFuture<Long, Long, RuntimeException>> cache;
+	public Long[] keys;
+	private CacheManager cacheManager;
+	
+	@Setup
+	public void setUp() {
+		cache = createProvider();
+		latch = new SingleCalculationLatch<>(cache, new ValueProvider<Long, Long, RuntimeException>() {
+			@Override
+			public Long createValue(Long key) {
+				return key;
+			}
+			
+			@Override
+			public long getTimeToLive() {
+				return TimeUnit.DAYS.toMillis(1L);
+			}
+		});
+		keys = new Long[keySpace];
+		for (int i = 0; i < keySpace; i++) {
+			keys[i] = (long) i;
+			latch.get(keys[i]);
+		}
+	}
+	
+	private CacheProvider<Long, SimpleFuture<Long, Long, RuntimeException>> createProvider() {
+		switch (provider) {
+			case CONCURRENT_MAP:
+				return new ConcurrentMapProviderAdapter<>(provider);
+			case BOUNDED:
+				return new BoundedConcurrentMapProviderAdapter<>(provider, keySpace * 2L);
+			case EHCACHE:
+				return createEhCache();
+			case NEAR_EHCACHE:
+				return new NearCacheProviderAdapter<>(createEhCache(), 4096);
+			default:
+				throw new IllegalArgumentException("Unknown provider: " + provider);
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private CacheProvider<Long, SimpleFuture<Long, Long, RuntimeException>> createEhCache() {
+		cacheManager = CacheManagerBuilder.newCacheManagerBuilder().build(true);
+		Class<SimpleFuture<Long, Long, RuntimeException>> valueClass = (Class) SimpleFuture.class;
+		return new EhCacheProviderAdapter<>(provider, cacheManager.createCache(provider,
+				CacheConfigurationBuilder.newCacheConfigurationBuilder(Long.class, valueClass,
+						ResourcePoolsBuilder.heap(keySpace * 2L))));
+	}
+	
+	@TearDown
+	public void tearDown() {
+		latch.stop();
+		if (cacheManager != null) {
+			cacheManager.close();
+		}
+	}
+}
@@ -0,0 +1,434 @@
+package com.nikondsl.cache.benchmark;
+
+import com.nikondsl.cache.CacheProvider;
+import com.nikondsl.cache.LatencyHistogram;
+import com.nikondsl.cache.SimpleCacheStatistics;
+import com.nikondsl.cache.SimpleFuture;
+import com.nikondsl.cache.SingleCalculationLatch;
+import com.nikondsl.cache.ValueProvider;
+import com.nikondsl.cache.adapter.BoundedConcurrentMapProviderAdapter;
+import com.nikondsl.cache.adapter.ConcurrentMapProviderAdapter;
+import com.nikondsl.cache.adapter.EhCacheProviderAdapter;
+import com.nikondsl.cache.adapter.NearCacheProviderAdapter;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load test of {@link SingleCalculationLatch} over any {@link CacheProvider}: keys are requested by a
+ * {@link KeyDistribution}, each miss costs a configured load time and each request a configured read time.
+ * Threads either send requests as fast as they can (closed loop) or at a fixed total rate (open loop).
+ * In open loop latency is measured from the time when request was meant to be sent, so a stall delays all
+ * requests behind it like it does in production (coordinated omission is corrected), service time
+ * is reported as well. Requests which are still due when test ends are recorded with the time they waited.
+ * Run it with name=value arguments, for example:
+ *
+ * java -cp cache-benchmarks/target/benchmarks.jar com.nikondsl.cache.benchmark.LoadGenerator
+ *     provider=ehcache distribution=zipfian keys=1000000 capacity=100000 rate=200000 threads=16 missCost=2000
+ */
+public class LoadGenerator {
+	public static final String FIXED = "fixed";
+	public static final String EXPONENTIAL = "exponential";
+	private static final long SPIN_THRESHOLD = TimeUnit.MICROSECONDS.toNanos(50L);
+	private static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9, 99.99};
+	private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p999", "p9999"};
+	
+	private String distribution = KeyDistribution.ZIPFIAN;
+	private long keySpace = 100_000L;
+	private int threads = 4;
+	private long rate;
+	private long timeToLive = TimeUnit.MINUTES.toMillis(1L);
+	private long missCost = 1_000L;
+	private String missCostDistribution = FIXED;
+	private long readCost;
+	private int valueSize = 1024;
+	private long warmup = 5L;
+	private long duration = 30L;
+	
+	/**
+	 * Sets distribution of keys (see {@link KeyDistribution#create}).
+	 */
+	public void setDistribution(String distribution) {
+		KeyDistribution.create(distribution, 1L);
+		this.distribution = distribution;
+	}
+	
+	public void setKeySpace(long keySpace) {
+		if (keySpace <= 0) {
+			throw new IllegalArgumentException("Key space should be positive");
+		}
+		this.keySpace = keySpace;
+	}
+	
+	public void setThreads(int threads) {
+		if (threads <= 0) {
+			throw new IllegalArgumentException("Number of threads should be positive");
+		}
+		this.threads = threads;
+	}
+	
+	/**
+	 * Sets total number of requests per second of all threads, 0 means that threads don't wait between requests.
+	 */
+	public void setRate(long rate) {
+		if (rate < 0) {
+			throw new IllegalArgumentException("Rate cannot be negative");
+		}
+		this.rate = rate;
+	}
+	
+	/**
+	 * Sets time to live of values in milliseconds.
+	 */
+	public void setTimeToLive(long timeToLive) {
+		if (timeToLive <= 0) {
+			throw new IllegalArgumentException("Time to live should be positive");
+		}
+		this.timeToLive = timeToLive;
+	}
+	
+	/**
+	 * Sets time of calculating a value on miss in microseconds, it's a mean time for exponential distribution.
+	 */
+	public void setMissCost(long missCost) {
+		if (missCost < 0) {
+			throw new IllegalArgumentException("Miss cost cannot be negative");
+		}
+		this.missCost = missCost;
+	}
+	
+	/**
+	 * Sets distribution of miss cost: "fixed" or "exponential", the latter has a long tail like remote calls do.
+	 */
+	public void setMissCostDistribution(String missCostDistribution) {
+		if (!FIXED.equals(missCostDistribution) && !EXPONENTIAL.equals(missCostDistribution)) {
+			throw new IllegalArgumentException("Unknown miss cost distribution: " + missCostDistribution);
+		}
+		this.missCostDistribution = missCostDistribution;
+	}
+	
+	/**
+	 * Sets CPU time which caller spends on each read value in microseconds.
+	 */
+	public void setReadCost(long readCost) {
+		if (readCost < 0) {
+			throw new IllegalArgumentException("Read cost cannot be negative");
+		}
+		this.readCost = readCost;
+	}
+	
+	public void setValueSize(int valueSize) {
+		if (valueSize < 0) {
+			throw new IllegalArgumentException("Value size cannot be negative");
+		}
+		this.valueSize = valueSize;
+	}
+	
+	/**
+	 * Sets time in seconds which isn't measured, it fills cache.
+	 */
+	public void setWarmup(long warmup) {
+		if (warmup < 0) {
+			throw new IllegalArgumentException("Warmup cannot be negative");
+		}
+		this.warmup = warmup;
+	}
+	
+	/**
+	 * Sets measured time in seconds.
+	 */
+	public void setDuration(long duration) {
+		if (duration <= 0) {
+			throw new IllegalArgumentException("Duration should be positive");
+		}
+		this.duration = duration;
+	}
+	
+	/**
+	 * Runs load test over given cache, latch is stopped at the end, cache is left as is.
+	 */
+	public Result run(CacheProvider<Long, SimpleFuture<Long, byte[], RuntimeException>> cache) throws InterruptedException {
+		SimpleCacheStatistics<Long, byte[], RuntimeException> statistics = new SimpleCacheStatistics<>();
+		SingleCalculationLatch<Long, byte[], RuntimeException> latch =
+				new SingleCalculationLatch<>(cache, new CostlyValueProvider(), statistics);
+		KeyDistribution keys = KeyDistribution.create(distribution, keySpace);
+		Measurement measurement = new Measurement();
+		long start = System.nanoTime();
+		long measureFrom = start + TimeUnit.SECONDS.toNanos(warmup);
+		long end = measureFrom + TimeUnit.SECONDS.toNanos(duration);
+		long interval = rate > 0 ? Math.max(1L, TimeUnit.SECONDS.toNanos(threads) / rate) : 0L;
+		
+		List<Thread> workers = new ArrayList<>();
+		for (int i = 0; i < threads; i++) {
+			//open loop threads are shifted, so requests are spread evenly
+			long first = start + interval * i / threads;
+			Thread worker = new Thread(() -> generate(latch, keys, measurement, first, interval, measureFrom, end),
+					"load-generator-" + i);
+			worker.setDaemon(true);
+			workers.add(worker);
+		}
+		try {
+			workers.forEach(Thread::start);
+			sleepUntil(measureFrom);
+			SimpleCacheStatistics.Snapshot before = statistics.snapshot();
+			sleepUntil(end);
+			SimpleCacheStatistics.Snapshot after = statistics.snapshot();
+			for (Thread worker : workers) {
+				worker.join();
+			}
+			return new Result(measurement, after.getHits() - before.getHits(), after.getMisses() - before.getMisses(),
+					TimeUnit.SECONDS.toNanos(duration));
+		} finally {
+			latch.stop();
+		}
+	}
+	
+	private void generate(SingleCalculationLatch<Long, byte[], RuntimeException> latch, KeyDistribution keys,
+						  Measurement measurement, long first, long interval, long measureFrom, long end) {
+		long readNanos = TimeUnit.MICROSECONDS.toNanos(readCost);
+		long intended = first;
+		while (true) {
+			if (interval > 0) {
+				waitUntil(intended);
+			}
+			long started = System.nanoTime();
+			if (started - end >= 0) {
+				break;
+			}
+			if (interval == 0) {
+				intended = started;
+			}
+			try {
+				latch.get(keys.next());
+				waitUntil(System.nanoTime() + readNanos);
+			} catch (RuntimeException ex) {
+				measurement.errors.increment();
+			}
+			long finished = System.nanoTime();
+			if (intended - measureFrom >= 0) {
+				measurement.responseTime.record(finished - intended);
+				measurement.serviceTime.record(finished - started);
+			}
+			if (started - measureFrom >= 0) {
+				measurement.requests.increment();
+			}
+			intended += interval;
+		}
+		if (interval > 0) {
+			//requests which should have been sent already waited at least till now
+			long now = System.nanoTime();
+			for (; intended - end < 0; intended += interval) {
+				if (intended - measureFrom >= 0) {
+					measurement.responseTime.record(now - intended);
+					measurement.backlog.increment();
+				}
+			}
+		}
+	}
+	
+	private static void waitUntil(long deadline) {
+		long remaining;
+		while ((remaining = deadline - System.nanoTime()) > 0) {
+			if (remaining > SPIN_THRESHOLD) {
+				LockSupport.parkNanos(remaining - SPIN_THRESHOLD);
+			}
+		}
+	}
+	
+	private static void sleepUntil(long deadline) throws InterruptedException {
+		long remaining;
+		while ((remaining = deadline - System.nanoTime()) > 0) {
+			TimeUnit.NANOSECONDS.sleep(remaining);
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return "distribution: " + distribution + ", keys: " + keySpace + ", threads: " + threads + ", rate: " +
+				(rate > 0 ? rate + "/s" : "closed loop") + ", ttl: " + timeToLive + " ms, miss cost: " + missCost +
+				" us (" + missCostDistribution + "), read cost: " + readCost + " us, value: " + valueSize +
+				" bytes, warmup: " + warmup + " s, duration: " + duration + " s";
+	}
+	
+	/**
+	 * Calculates values of configured size, spending configured time per miss.
+	 */
+	private class CostlyValueProvider implements ValueProvider<Long, byte[], RuntimeException> {
+		@Override
+		public byte[] createValue(Long key) {
+			long cost = TimeUnit.MICROSECONDS.toNanos(missCost);
+			if (EXPONENTIAL.equals(missCostDistribution)) {
+				cost = (long) (-Math.log(1.0 - ThreadLocalRandom.current().nextDouble()) * cost);
+			}
+			waitUntil(System.nanoTime() + cost);
+			return new byte[valueSize];
+		}
+		
+		@Override
+		public long getTimeToLive() {
+			return timeToLive;
+		}
+	}
+	
+	private static class Measurement {
+		final LatencyHistogram responseTime = new LatencyHistogram();
+		final LatencyHistogram serviceTime = new LatencyHistogram();
+		final LongAdder requests = new LongAdder();
+		final LongAdder backlog = new LongAdder();
+		final LongAdder errors = new LongAdder();
+	}
+	
+	/**
+	 * Outcome of measured part of load test.
+	 */
+	public static class Result {
+		private final LatencyHistogram.Snapshot responseTime;
+		private final LatencyHistogram.Snapshot serviceTime;
+		private final long requests;
+		private final long backlog;
+		private final long errors;
+		private final long hits;
+		private final long misses;
+		private final long nanos;
+		
+		Result(Measurement measurement, long hits, long misses, long nanos) {
+			this.responseTime = measurement.responseTime.snapshot();
+			this.serviceTime = measurement.serviceTime.snapshot();
+			this.requests = measurement.requests.sum();
+			this.backlog = measurement.backlog.sum();
+			this.errors = measurement.errors.sum();
+			this.hits = hits;
+			this.misses = misses;
+			this.nanos = nanos;
+		}
+		
+		/**
+		 * Returns requests per second which were sent during measured time, including late ones.
+		 */
+		public double getThroughput() {
+			return requests * 1e9 / nanos;
+		}
+		
+		/**
+		 * Returns hits per request in percents.
+		 */
+		public double getHitRatio() {
+			return hits + misses == 0 ? 0.0 : 100.0 * hits / (hits + misses);
+		}
+		
+		/**
+		 * Returns latency from the time when request was meant to be sent, it's the same as service time
+		 * in closed loop.
+		 */
+		public LatencyHistogram.Snapshot getResponseTime() {
+			return responseTime;
+		}
+		
+		/**
+		 * Returns latency from the time when request was actually sent.
+		 */
+		public LatencyHistogram.Snapshot getServiceTime() {
+			return serviceTime;
+		}
+		
+		/**
+		 * Returns number of requests which were due but weren't sent because load generator fell behind.
+		 */
+		public long getBacklog() {
+			return backlog;
+		}
+		
+		public long getErrors() {
+			return errors;
+		}
+		
+		@Override
+		public String toString() {
+			return String.format("throughput: %.0f req/s, hit ratio: %.2f %%, requests: %d, backlog: %d, errors: %d%n" +
+					"response time (us) %s%nservice time (us)  %s", getThroughput(), getHitRatio(), requests, backlog,
+					errors, percentiles(responseTime), percentiles(serviceTime));
+		}
+		
+		private static String percentiles(LatencyHistogram.Snapshot snapshot) {
+			StringBuilder result = new StringBuilder();
+			for (int i = 0; i < PERCENTILES.length; i++) {
+				result.append(String.format("%s: %.1f, ", PERCENTILE_NAMES[i], snapshot.getValueAtPercentile(PERCENTILES[i]) / 1e3));
+			}
+			return result.append(String.format("max: %.1f", snapshot.getMax() / 1e3)).toString();
+		}
+	}
+	
+	/**
+	 * Runs load test over a provider given by "provider" argument (see {@link LatchState}) and prints results.
+	 * Other arguments are names of setters without "set": keySpace may be given as "keys", "capacity" limits
+	 * number of elements in bounded providers, it's equal to key space by default.
+	 */
+	public static void main(String[] args) throws Exception {
+		LoadGenerator generator = new LoadGenerator();
+		String provider = LatchState.CONCURRENT_MAP;
+		long capacity = 0L;
+		for (String arg : args) {
+			int separator = arg.indexOf('=');
+			if (separator <= 0) {
+				throw new IllegalArgumentException("Argument should be name=value: " + arg);
+			}
+			String name = arg.substring(0, separator);
+			String value = arg.substring(separator + 1);
+			switch (name) {
+				case "provider": provider = value; break;
+				case "capacity": capacity = Long.parseLong(value); break;
+				case "distribution": generator.setDistribution(value); break;
+				case "keys": case "keySpace": generator.setKeySpace(Long.parseLong(value)); break;
+				case "threads": generator.setThreads(Integer.parseInt(value)); break;
+				case "rate": generator.setRate(Long.parseLong(value)); break;
+				case "ttl": case "timeToLive": generator.setTimeToLive(Long.parseLong(value)); break;
+				case "missCost": generator.setMissCost(Long.parseLong(value)); break;
+				case "missCostDistribution": generator.setMissCostDistribution(value); break;
+				case "readCost": generator.setReadCost(Long.parseLong(value)); break;
+				case "valueSize": generator.setValueSize(Integer.parseInt(value)); break;
+				case "warmup": generator.setWarmup(Long.parseLong(value)); break;
+				case "duration": generator.setDuration(Long.parseLong(value)); break;
+				default: throw new IllegalArgumentException("Unknown argument: " + name);
+			}
+		}
+		if (capacity <= 0) {
+			capacity = generator.keySpace;
+		}
+		List<Closeable> resources = new ArrayList<>();
+		try {
+			CacheProvider<Long, SimpleFuture<Long, byte[], RuntimeException>> cache =
+					createProvider(provider, capacity, resources);
+			System.out.println("provider: " + provider + ", capacity: " + capacity + ", " + generator);
+			System.out.println(generator.run(cache));
+		} finally {
+			for (Closeable resource : resources) {
+				resource.close();
+			}
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static CacheProvider<Long, SimpleFuture<Long, byte[], RuntimeException>> createProvider(
+			String provider, long capacity, List<Closeable> resources) {
+		switch (provider) {
+			case LatchState.CONCURRENT_MAP:
+				return new ConcurrentMapProviderAdapter<>(provider);
+			case LatchState.BOUNDED:
+				return new BoundedConcurrentMapProviderAdapter<>(provider, capacity);
+			case LatchState.EHCACHE:
+			case LatchState.NEAR_EHCACHE:
+				Class<SimpleFuture<Long, byte[], RuntimeException>> valueClass = (Class) SimpleFuture.class;
+				EhCacheProviderAdapter<Long, SimpleFuture<Long, byte[], RuntimeException>> ehCache =
+						EhCacheProviderAdapter.builder(provider, Long.class, valueClass).heap(capacity).build();
+				resources.add(ehCache);
+				return LatchState.EHCACHE.equals(provider) ? ehCache : new NearCacheProviderAdapter<>(ehCache, 4096);
+			default:
+				throw new IllegalArgumentException("Unknown provider: " + provider);
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package com.nikondsl.cache.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmarks for SingleCalculationLatch.get with different workloads. Both throughput and sampled
+ * latency (percentiles) are reported, run it via {@link BenchmarkRunner} to get allocation rates too.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SingleCalculationLatchBenchmark {
+	private static final int SEQUENCE_LENGTH = 1 << 16;
+	private static final int SEQUENCE_MASK = SEQUENCE_LENGTH - 1;
+	private static final AtomicLong MISS_KEYS = new AtomicLong(Long.MAX_VALUE / 2);
+	
+	@State(Scope.Thread)
+	public static class ThreadState {
+		int index;
+		int[] uniform;
+		int[] zipfian;
+		
+		@Setup
+		public void setUp(LatchState latch) {
+			Random random = new Random(Thread.currentThread().getId());
+			uniform = new int[SEQUENCE_LENGTH];
+			for (int i = 0; i < SEQUENCE_LENGTH; i++) {
+				uniform[i] = random.nextInt(latch.keySpace);
+			}
+			//keys which are out of key space are missing in cache
+			zipfian = new ZipfianGenerator(latch.keySpace * 2L, ZipfianGenerator.DEFAULT_SKEW, random)
+					.sequence(SEQUENCE_LENGTH);
+		}
+		
+		int next() {
+			return index++ & SEQUENCE_MASK;
+		}
+	}
+	
+	/**
+	 * All keys are in cache.
+	 */
+	@Benchmark
+	public Long hit(LatchState state, ThreadState thread) {
+		return state.latch.get(state.keys[thread.uniform[thread.next()]]);
+	}
+	
+	/**
+	 * Every key is new, so a new value is calculated each time. Key is removed afterwards to keep
+	 * cache size stable, so removal cost is included.
+	 */
+	@Benchmark
+	public Long miss(LatchState state) {
+		Long key = MISS_KEYS.incrementAndGet();
+		Long result = state.latch.get(key);
+		state.cache.remove(key);
+		return result;
+	}
+	
+	/**
+	 * Zipfian distributed keys over twice larger key space than cache has, misses are removed
+	 * to keep hit ratio stable.
+	 */
+	@Benchmark
+	public Long zipfian(LatchState state, ThreadState thread) {
+		int rank = thread.zipfian[thread.next()];
+		if (rank < state.keySpace) {
+			return state.latch.get(state.keys[rank]);
+		}
+		Long key = (long) rank;
+		Long result = state.latch.get(key);
+		state.cache.remove(key);
+		return result;
+	}
+	
+	@Benchmark
+	@Threads(1)
+	public Long hotKey1Thread(LatchState state) {
+		return state.latch.get(state.keys[0]);
+	}
+	
+	@Benchmark
+	@Threads(4)
+	public Long hotKey4Threads(LatchState state) {
+		return state.latch.get(state.keys[0]);
+	}
+	
+	@Benchmark
+	@Threads(16)
+	public Long hotKey16Threads(LatchState state) {
+		return state.latch.get(state.keys[0]);
+	}
+	
+	@Benchmark
+	@Threads(64)
+	public Long hotKey64Threads(LatchState state) {
+		return state.latch.get(state.keys[0]);
+	}
+}
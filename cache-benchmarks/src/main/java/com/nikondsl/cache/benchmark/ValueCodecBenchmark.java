@@ -0,0 +1,99 @@
+package com.nikondsl.cache.benchmark;
+
+import com.nikondsl.cache.codec.ValueCodec;
+import com.nikondsl.cache.codec.ValueCodecs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares codecs of values: a built-in codec for the type of value against Java serialization, which is
+ * used when there is no codec. Values are encoded into and decoded from direct memory, like off-heap
+ * storages do. Run it via {@link BenchmarkRunner} to compare allocation rates too, for example:
+ *
+ * java -jar cache-benchmarks/target/benchmarks.jar ValueCodecBenchmark -p type=string
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ValueCodecBenchmark {
+	public static final String BUILT_IN = "built-in";
+	public static final String JAVA = "java";
+	
+	@Param({"string", "long-array", "bytes"})
+	public String type;
+	
+	@Param({BUILT_IN, JAVA})
+	public String codec;
+	
+	@Param({"256"})
+	public int size;
+	
+	private ValueCodec<Object> valueCodec;
+	private Object value;
+	private ByteBuffer buffer;
+	private int encodedSize;
+	
+	@Setup
+	public void setUp() {
+		Random random = new Random(42L);
+		switch (type) {
+			case "string":
+				char[] chars = new char[size];
+				for (int i = 0; i < size; i++) {
+					chars[i] = (char) ('a' + random.nextInt(26));
+				}
+				value = new String(chars);
+				break;
+			case "long-array":
+				value = random.longs(size / Long.BYTES).toArray();
+				break;
+			case "bytes":
+				byte[] bytes = new byte[size];
+				random.nextBytes(bytes);
+				value = bytes;
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown type: " + type);
+		}
+		valueCodec = BUILT_IN.equals(codec)
+				? (ValueCodec<Object>) ValueCodecs.forClass(value.getClass())
+				: ValueCodecs.serializable();
+		encodedSize = valueCodec.sizeOf(value);
+		buffer = ByteBuffer.allocateDirect(encodedSize * 2);
+		encode();
+		if (!Arrays.deepEquals(new Object[] {value}, new Object[] {decode()})) {
+			throw new IllegalStateException("Codec " + codec + " doesn't keep " + type);
+		}
+	}
+	
+	@Benchmark
+	public int encode() {
+		buffer.clear();
+		valueCodec.encode(value, buffer);
+		return buffer.position();
+	}
+	
+	@Benchmark
+	public Object decode() {
+		buffer.clear();
+		buffer.limit(encodedSize);
+		return valueCodec.decode(buffer);
+	}
+}
@@ -0,0 +1,70 @@
+package com.nikondsl.cache.benchmark;
+
+import java.util.Random;
+
+/**
+ * Generates ranks in [0, items) with Zipfian distribution, the smaller rank the more popular it is.
+ * Algorithm is taken from "Quickly Generating Billion-Record Synthetic Databases" (Gray et al.),
+ * the same one which is used by YCSB.
+ */
+public class ZipfianGenerator {
+	public static final double DEFAULT_SKEW = 0.99;
+	
+	private final long items;
+	private final double theta;
+	private final double zetan;
+	private final double alpha;
+	private final double eta;
+	private final Random random;
+	
+	public ZipfianGenerator(long items) {
+		this(items, DEFAULT_SKEW, new Random());
+	}
+	
+	public ZipfianGenerator(long items, double theta, Random random) {
+		if (items <= 0) {
+			throw new IllegalArgumentException("Number of items should be positive");
+		}
+		this.items = items;
+		this.theta = theta;
+		this.random = random;
+		this.zetan = zeta(items, theta);
+		double zeta2 = zeta(2, theta);
+		this.alpha = 1.0 / (1.0 - theta);
+		this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta2 / zetan);
+	}
+	
+	private static double zeta(long n, double theta) {
+		double sum = 0;
+		for (long i = 0; i < n; i++) {
+			sum += 1 / Math.pow(i + 1, theta);
+		}
+		return sum;
+	}
+	
+	public long next() {
+		double u = random.nextDouble();
+		double uz = u * zetan;
+		if (uz < 1.0) {
+			return 0;
+		}
+		if (uz < 1.0 + Math.pow(0.5, theta)) {
+			return 1;
+		}
+		long rank = (long) (items * Math.pow(eta * u - eta + 1, alpha));
+		return Math.min(rank, items - 1);
+	}
+	
+	/**
+	 * Pre-generates a sequence of ranks, so sampling does not disturb measurements.
+	 * @param length number of ranks to generate.
+	 * @return array of ranks.
+	 */
+	public int[] sequence(int length) {
+		int[] result = new int[length];
+		for (int i = 0; i < length; i++) {
+			result[i] = (int) next();
+		}
+		return result;
+	}
+}
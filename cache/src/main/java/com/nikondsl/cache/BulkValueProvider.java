@@ -0,0 +1,30 @@
+package com.nikondsl.cache;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Factory which is able to calculate several values at once, e.g. with a single request to a backend.
+ * It's used by {@link SingleCalculationLatch#getAll} for keys which are not in cache.
+ * @param <K> class for specifying keys.
+ * @param <V> class for specifying values.
+ * @param <E> class for specifying exception if occurs during value creation.
+ */
+@ApiReference(since ="1.1.0")
+public interface BulkValueProvider<K, V, E extends Throwable> extends ValueProvider<K, V, E> {
+	/**
+	 * This factory should return created elements which are associated with given keys.
+	 * @param keys which are not in cache.
+	 * @return constructed values by keys, missing keys are cached with null values.
+	 * @throws E if values cannot be created.
+	 */
+	@ApiReference(since ="1.1.0")
+	Map<K, V> createValues(Set<K> keys) throws E;
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	default V createValue(K key) throws E {
+		return createValues(Collections.singleton(key)).get(key);
+	}
+}
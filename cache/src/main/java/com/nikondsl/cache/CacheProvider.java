@@ -2,7 +2,10 @@ package com.nikondsl.cache;
 
 import org.ehcache.Cache;
 
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 /**
@@ -57,10 +60,83 @@ public interface CacheProvider<K, V> {
 	@ApiReference(since ="1.0.0")
 	V remove(K key);
 	
+	/**
+	 * Deletes from cache only if key is still mapped to given value. Providers which have such an atomic
+	 * operation should override it, by default value is compared by identity and then key is removed.
+	 * @param key which is used as a cache key.
+	 * @param value which is expected to be stored.
+	 * @return true if value is removed.
+	 */
+	@ApiReference(since ="1.1.0")
+	default boolean remove(K key, V value) {
+		if (value == null || get(key) != value) {
+			return false;
+		}
+		remove(key);
+		return true;
+	}
+	
+	/**
+	 * Returns values of several keys at once. Providers which can look keys up in one call should override it,
+	 * by default keys are looked up one by one.
+	 * @param keys keys which are used as cache keys.
+	 * @return values of keys which are in cache, absent keys are not included.
+	 */
+	@ApiReference(since ="1.1.0")
+	default Map<K, V> getAll(Set<? extends K> keys) {
+		Map<K, V> result = new HashMap<>();
+		for (K key : keys) {
+			V value = get(key);
+			if (value != null) {
+				result.put(key, value);
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Puts several values into cache at once, by default one by one.
+	 * @param entries keys and values for cache.
+	 */
+	@ApiReference(since ="1.1.0")
+	default void putAll(Map<? extends K, ? extends V> entries) {
+		entries.forEach(this::put);
+	}
+	
+	/**
+	 * Deletes several keys from cache at once, by default one by one.
+	 * @param keys keys which are used as cache keys.
+	 */
+	@ApiReference(since ="1.1.0")
+	default void removeAll(Set<? extends K> keys) {
+		for (K key : keys) {
+			remove(key);
+		}
+	}
+	
 	/**
 	 * Returns all entries which are stored in cache for further deletion.
 	 * @return entries in cache.
 	 */
 	@ApiReference(since ="1.0.0")
 	void forEach(Consumer<Cache.Entry<K, V>> consumer);
+	
+	/**
+	 * Called by latch each time value of a stored element is calculated or refreshed, so provider
+	 * may keep it in another form (i.e. off heap). Nothing is done by default.
+	 * @param key which is used as a cache key.
+	 * @param value stored element.
+	 */
+	@ApiReference(since ="1.1.0")
+	default void loaded(K key, V value) {
+	}
+	
+	/**
+	 * Sets listener which is called when provider evicts an element by itself, i.e. because cache is full.
+	 * Providers which never evict elements may ignore it.
+	 * @param listener receives key and value of evicted element.
+	 */
+	@ApiReference(since ="1.1.0")
+	default void setEvictionListener(BiConsumer<K, V> listener) {
+	}
 }
@@ -16,6 +16,87 @@ public interface CacheStatistics<K, E extends Exception> {
 	@ApiReference(since ="1.0.1")
 	void miss(K key);
 	
+	/**
+	 * Called each time when value is returned, but it's older than refresh time, so it's being refreshed
+	 * (see {@link ValueProvider#getTimeToRefresh()}).
+	 * @param key
+	 */
+	@ApiReference(since ="1.1.0")
+	default void staleServed(K key) {
+	}
+	
+	/**
+	 * Called each time when the last calculated value is returned because calculation of a new one failed
+	 * (see {@link ValueProvider#isServingStaleOnError()}).
+	 * @param key
+	 */
+	@ApiReference(since ="1.1.0")
+	default void staleOnError(K key) {
+	}
+	
+	/**
+	 * Called each time when the last calculated value is returned because a new one isn't calculated in time
+	 * (see {@link SingleCalculationLatch#get(Object, long, java.util.concurrent.TimeUnit)}).
+	 * @param key
+	 */
+	@ApiReference(since ="1.1.0")
+	default void staleOnTimeout(K key) {
+	}
+	
+	/**
+	 * Called each time when value is being refreshed in background.
+	 * @param key
+	 */
+	@ApiReference(since ="1.1.0")
+	default void refresh(K key) {
+	}
+	
+	/**
+	 * Called each time when calculation of a value is finished, successfully or not.
+	 * @param key
+	 * @param nanos time of calculation in nanoseconds.
+	 */
+	@ApiReference(since ="1.1.0")
+	default void loadTime(K key, long nanos) {
+	}
+	
+	/**
+	 * Called each time when caller had to wait for a value which was being calculated by another thread.
+	 * @param key
+	 * @param nanos time of waiting in nanoseconds.
+	 */
+	@ApiReference(since ="1.1.0")
+	default void waitTime(K key, long nanos) {
+	}
+	
+	/**
+	 * Called each time when element is evicted because heap is short (see {@link MemoryPressureController}),
+	 * {@link #remove} is called for it as well.
+	 * @param key
+	 */
+	@ApiReference(since ="1.1.0")
+	default void memoryPressureEviction(K key) {
+	}
+	
+	/**
+	 * Called each time when an idle value is compressed (see {@link SingleCalculationLatch#setCompression}).
+	 * @param key
+	 * @param originalBytes size of encoded value.
+	 * @param compressedBytes size of compressed value.
+	 */
+	@ApiReference(since ="1.1.0")
+	default void compressed(K key, int originalBytes, int compressedBytes) {
+	}
+	
+	/**
+	 * Called each time when a compressed value is read back.
+	 * @param key
+	 * @param nanos time of decompression and decoding in nanoseconds.
+	 */
+	@ApiReference(since ="1.1.0")
+	default void decompressed(K key, long nanos) {
+	}
+	
 	/**
 	 * Called each time when element is meant to be evicted/removed.
 	 * @param key is a key for which remove event is fired
@@ -0,0 +1,71 @@
+package com.nikondsl.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ticker which is updated by a background thread with given resolution, so reading time is just a volatile read.
+ * It suits caches which are read much more often than resolution and whose time to live is much longer than it.
+ * NOTE: ticker should be stopped when it's not used anymore.
+ */
+@ApiReference(since ="1.1.0")
+public class CoarseTicker implements Ticker {
+	private static Logger LOG = LoggerFactory.getLogger(CoarseTicker.class);
+	
+	private final Ticker source;
+	private final long resolution;
+	private final Thread updater;
+	private volatile long time;
+	private volatile boolean stop = false;
+	
+	/**
+	 * Creates ticker which is updated with given resolution from {@link Ticker#system()}.
+	 * @param resolution period between updates.
+	 * @param unit unit of resolution.
+	 */
+	@ApiReference(since ="1.1.0")
+	public CoarseTicker(long resolution, TimeUnit unit) {
+		this(Ticker.system(), resolution, unit);
+	}
+	
+	CoarseTicker(Ticker source, long resolution, TimeUnit unit) {
+		if (resolution <= 0) {
+			throw new IllegalArgumentException("Resolution should be positive");
+		}
+		if (unit == null) {
+			throw new IllegalArgumentException("Unit of resolution is required");
+		}
+		this.source = source;
+		this.resolution = unit.toNanos(resolution);
+		this.time = source.read();
+		updater = new Thread(this::update, "Coarse ticker thread");
+		updater.setDaemon(true);
+		updater.start();
+		LOG.info("Coarse ticker with resolution {} ns is started", this.resolution);
+	}
+	
+	private void update() {
+		while (!stop) {
+			LockSupport.parkNanos(this, resolution);
+			time = source.read();
+		}
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public long read() {
+		return time;
+	}
+	
+	/**
+	 * Stops background thread, time is not updated anymore.
+	 */
+	@ApiReference(since ="1.1.0")
+	public void stop() {
+		stop = true;
+		LockSupport.unpark(updater);
+	}
+}
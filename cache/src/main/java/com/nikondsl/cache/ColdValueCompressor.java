@@ -0,0 +1,75 @@
+package com.nikondsl.cache;
+
+import com.nikondsl.cache.codec.ValueCodec;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses values which aren't read for a while: value is encoded by a codec and deflated, so it takes
+ * a byte array instead of an object graph till the next read. Small values and values which don't shrink
+ * enough are kept as is.
+ */
+class ColdValueCompressor<K, V> {
+	static final int MIN_SIZE = 256;
+	
+	private final ValueCodec<V> codec;
+	private final long idleNanos;
+	private final CacheStatistics<K, ?> statistics;
+	
+	ColdValueCompressor(ValueCodec<V> codec, long idleNanos, CacheStatistics<K, ?> statistics) {
+		this.codec = codec;
+		this.idleNanos = idleNanos;
+		this.statistics = statistics;
+	}
+	
+	long getIdleNanos() {
+		return idleNanos;
+	}
+	
+	/**
+	 * Compresses value by deflater of the current pass.
+	 * @return supplier decompressing value, or null if compression saves less than a quarter of encoded size.
+	 */
+	Supplier<V> compress(K key, V value, Deflater deflater) {
+		byte[] encoded = codec.toBytes(value);
+		if (encoded.length < MIN_SIZE) {
+			return null;
+		}
+		byte[] buffer = new byte[encoded.length - encoded.length / 4];
+		deflater.reset();
+		deflater.setInput(encoded);
+		deflater.finish();
+		int length = deflater.deflate(buffer);
+		if (!deflater.finished()) {
+			return null;
+		}
+		byte[] compressed = Arrays.copyOf(buffer, length);
+		statistics.compressed(key, encoded.length, compressed.length);
+		int originalLength = encoded.length;
+		return () -> decompress(key, compressed, originalLength);
+	}
+	
+	private V decompress(K key, byte[] compressed, int originalLength) {
+		long start = System.nanoTime();
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(compressed);
+			byte[] encoded = new byte[originalLength];
+			int length = inflater.inflate(encoded);
+			if (length != originalLength || !inflater.finished()) {
+				throw new IllegalStateException("Compressed value of '" + key + "' is broken");
+			}
+			V value = codec.fromBytes(encoded);
+			statistics.decompressed(key, System.nanoTime() - start);
+			return value;
+		} catch (DataFormatException ex) {
+			throw new IllegalStateException("Compressed value of '" + key + "' is broken", ex);
+		} finally {
+			inflater.end();
+		}
+	}
+}
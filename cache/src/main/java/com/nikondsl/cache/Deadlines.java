@@ -0,0 +1,25 @@
+package com.nikondsl.cache;
+
+/**
+ * Arithmetic of expiration times, which is shared by latches and value providers.
+ */
+@ApiReference(since ="1.1.0")
+public final class Deadlines {
+	private Deadlines() {
+	}
+	
+	/**
+	 * Adds duration to time, saturating on overflow, so Long.MAX_VALUE may be used as "never".
+	 * @param time start time, e.g. of a ticker or of a clock.
+	 * @param duration duration in the same units.
+	 * @return time plus duration, or Long.MAX_VALUE (Long.MIN_VALUE) if it overflows.
+	 */
+	@ApiReference(since ="1.1.0")
+	public static long deadline(long time, long duration) {
+		long result = time + duration;
+		if (((time ^ result) & (duration ^ result)) < 0) {
+			return duration > 0 ? Long.MAX_VALUE : Long.MIN_VALUE;
+		}
+		return result;
+	}
+}
@@ -0,0 +1,125 @@
+package com.nikondsl.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Histogram of latencies in nanoseconds with logarithmic buckets, each power of two is split into 32 linear
+ * sub-buckets, so any recorded value is reported with relative error below 3.2% (like HdrHistogram with
+ * 1.5 significant digits). Values below 32 ns are kept exactly.
+ * Recording is lock free and doesn't allocate memory.
+ */
+@ApiReference(since ="1.1.0")
+public class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+	
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+	
+	/**
+	 * Records a single value, negative values are recorded as zero.
+	 * @param nanos latency in nanoseconds.
+	 */
+	@ApiReference(since ="1.1.0")
+	public void record(long nanos) {
+		long value = Math.max(nanos, 0L);
+		counts.incrementAndGet(indexOf(value));
+		max.accumulate(value);
+	}
+	
+	/**
+	 * Returns copy of current counts, which may be used for calculation of percentiles.
+	 * NOTE: values which are recorded concurrently may be or may be not in snapshot.
+	 * @return snapshot of histogram.
+	 */
+	@ApiReference(since ="1.1.0")
+	public Snapshot snapshot() {
+		long[] copy = new long[BUCKETS];
+		long count = 0L;
+		for (int i = 0; i < BUCKETS; i++) {
+			copy[i] = counts.get(i);
+			count += copy[i];
+		}
+		return new Snapshot(copy, count, max.get());
+	}
+	
+	static int indexOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+	
+	/**
+	 * Returns the highest value which is recorded into bucket with given index.
+	 */
+	static long highestValueOf(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+		return lowest + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+	
+	/**
+	 * Immutable copy of histogram.
+	 */
+	@ApiReference(since ="1.1.0")
+	public static class Snapshot {
+		private final long[] counts;
+		private final long count;
+		private final long max;
+		
+		Snapshot(long[] counts, long count, long max) {
+			this.counts = counts;
+			this.count = count;
+			this.max = max;
+		}
+		
+		@ApiReference(since ="1.1.0")
+		public long getCount() {
+			return count;
+		}
+		
+		@ApiReference(since ="1.1.0")
+		public long getMax() {
+			return max;
+		}
+		
+		/**
+		 * Returns value which is not less than given percentage of recorded values.
+		 * @param percentile from 0 to 100, i.e. 99.9 for p999.
+		 * @return value in nanoseconds or 0 if nothing is recorded.
+		 */
+		@ApiReference(since ="1.1.0")
+		public long getValueAtPercentile(double percentile) {
+			if (percentile < 0.0 || percentile > 100.0) {
+				throw new IllegalArgumentException("Percentile should be between 0 and 100");
+			}
+			if (count == 0L) {
+				return 0L;
+			}
+			long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * count));
+			long seen = 0L;
+			for (int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if (seen >= rank) {
+					return Math.min(highestValueOf(i), max);
+				}
+			}
+			return max;
+		}
+		
+		@Override
+		@ApiReference(since ="1.1.0")
+		public String toString() {
+			return "p50: " + getValueAtPercentile(50.0) + " ns, p99: " + getValueAtPercentile(99.0) +
+					" ns, p999: " + getValueAtPercentile(99.9) + " ns, max: " + max + " ns, count: " + count;
+		}
+	}
+}
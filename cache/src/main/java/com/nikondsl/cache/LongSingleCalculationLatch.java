@@ -0,0 +1,604 @@
+package com.nikondsl.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+
+import static com.nikondsl.cache.Deadlines.deadline;
+import static com.nikondsl.cache.ErrorType.CREATE;
+import static com.nikondsl.cache.ErrorType.REMOVE;
+
+/**
+ * Latch for caches which are keyed by long IDs. Elements are kept in a segmented open-addressing table of
+ * primitive keys: a key, a value and an expiration time take a slot of three arrays, so there is no boxed key,
+ * future or map node per element. A hit is an optimistic read of a segment and allocates nothing.
+ * Like {@link SingleCalculationLatch}, a value is calculated by one thread while others wait for it, it lives
+ * for {@link ValueProvider#expireAfterCreate} and a failure is kept for error time to live. Typical usage will be
+ * like below;
+ *
+ * ValueProvider&lt;Long, V, E&gt; valueProvider = ...
+ * LongSingleCalculationLatch&lt;V, E&gt; latch = new LongSingleCalculationLatch&lt;&gt;(valueProvider);
+ * ...
+ * latch.get(id);
+ *
+ * NOTE: values are kept by strong references, refresh isn't supported. Keys are boxed only when a value is
+ * calculated or veto is asked, hits are given to statistics without a key unless statistics is a subclass
+ * of {@link SimpleCacheStatistics} which may need it.
+ * @param <V> class for values.
+ * @param <E> class for exceptions of value provider.
+ */
+@ApiReference(since ="1.1.0")
+public class LongSingleCalculationLatch<V, E extends Exception> {
+	private static Logger LOG = LoggerFactory.getLogger(LongSingleCalculationLatch.class);
+	private static final long DEFAULT_SLEEP_DELETE = 30_000L;
+	private static final int SEGMENTS =
+			Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 4 - 1) << 1;
+	private static final Object TOMBSTONE = new Object();
+	private static final Object NULL = new Object();
+	
+	private final Segment[] segments = new Segment[SEGMENTS];
+	private final ValueProvider<Long, V, E> valueProvider;
+	private final SimpleCacheStatistics<Long, V, E> statistics;
+	private final MaintenanceScheduler scheduler;
+	private final Ticker ticker;
+	private final boolean keyedHits;
+	private volatile CachingVeto<Long, V> veto;
+	private volatile ScheduledFuture<?> maintenance;
+	private volatile boolean stop;
+	private volatile long sleepBeforeDelete = DEFAULT_SLEEP_DELETE;
+	
+	@ApiReference(since ="1.1.0")
+	public LongSingleCalculationLatch(ValueProvider<Long, V, E> valueProvider) {
+		this(valueProvider, new SimpleCacheStatistics<>(), MaintenanceScheduler.shared(), Ticker.system());
+	}
+	
+	/**
+	 * Creates latch which maintenance work is run by given scheduler and which values expire by given ticker.
+	 */
+	@ApiReference(since ="1.1.0")
+	public LongSingleCalculationLatch(ValueProvider<Long, V, E> valueProvider,
+									  SimpleCacheStatistics<Long, V, E> statistics,
+									  MaintenanceScheduler scheduler,
+									  Ticker ticker) {
+		Objects.requireNonNull(valueProvider,"ValueProvider should be provided");
+		Objects.requireNonNull(statistics,"Statistics should be provided");
+		Objects.requireNonNull(scheduler,"Scheduler should be provided");
+		Objects.requireNonNull(ticker,"Ticker should be provided");
+		this.valueProvider = valueProvider;
+		this.statistics = statistics;
+		this.scheduler = scheduler;
+		this.ticker = ticker;
+		this.keyedHits = statistics.getClass() != SimpleCacheStatistics.class;
+		for (int i = 0; i < segments.length; i++) {
+			segments[i] = new Segment();
+		}
+		scheduleMaintenance();
+	}
+	
+	/**
+	 * Returns a calculated value if it's presented or calculates it and returns.
+	 * @param key key for caching.
+	 * @return value in cache if presented or a new value.
+	 * @throws E if value cannot be calculated, or the last calculation failed and error time to live isn't over.
+	 */
+	@ApiReference(since ="1.1.0")
+	public V get(long key) throws E {
+		int hash = spread(key);
+		Segment segment = segments[hash & (segments.length - 1)];
+		for (;;) {
+			Object found;
+			long expiresAt;
+			long stamp = segment.lock.tryOptimisticRead();
+			//arrays may be replaced meanwhile, so they are read once and checked against each other
+			Object[] values = segment.values;
+			long[] deadlines = segment.expiresAt;
+			int index = Segment.indexOf(segment.keys, values, key, hash);
+			found = index < 0 ? null : values[index];
+			expiresAt = index < 0 || index >= deadlines.length ? 0L : deadlines[index];
+			if (!segment.lock.validate(stamp)) {
+				stamp = segment.lock.readLock();
+				try {
+					index = segment.indexOf(key, hash);
+					found = index < 0 ? null : segment.values[index];
+					expiresAt = index < 0 ? 0L : segment.expiresAt[index];
+				} finally {
+					segment.lock.unlockRead(stamp);
+				}
+			}
+			if (found instanceof Loading) {
+				Loading other = (Loading) found;
+				if (!other.isDone()) {
+					other.await(key, statistics);
+					continue;
+				}
+				//calculation is abandoned by an error, so the slot is taken over
+			} else {
+				boolean expired = found == null || ticker.read() > expiresAt;
+				if (found instanceof Failure) {
+					if (!expired) {
+						throw (E) ((Failure) found).exception;
+					}
+				} else if (found != null && (!expired || isExpireVetoed(key, found))) {
+					if (keyedHits) {
+						statistics.hit(key);
+					} else {
+						statistics.hit();
+					}
+					return found == NULL ? null : (V) found;
+				}
+			}
+			Loading loading = segment.startLoading(key, hash, found);
+			if (loading != null) {
+				return load(segment, key, hash, loading);
+			}
+		}
+	}
+	
+	private boolean isExpireVetoed(long key, Object found) {
+		CachingVeto<Long, V> currentVeto = veto;
+		return currentVeto != null && !currentVeto.expireAllowed(key, found == NULL ? null : (V) found);
+	}
+	
+	/**
+	 * Calculates value of a slot which is moved into loading state by current thread.
+	 */
+	private V load(Segment segment, long key, int hash, Loading loading) throws E {
+		Long boxed = key;
+		long started = System.nanoTime();
+		try {
+			V created = valueProvider.createValue(boxed);
+			statistics.loadTime(boxed, System.nanoTime() - started);
+			long timeToLive = TimeUnit.MILLISECONDS.toNanos(valueProvider.expireAfterCreate(boxed, created));
+			CachingVeto<Long, V> currentVeto = veto;
+			if (currentVeto != null && !currentVeto.putInCasheAllowed(boxed, created)) {
+				LOG.debug("Adding '{}' into long cache vetoed.", key);
+				segment.finish(key, hash, loading, TOMBSTONE, 0L);
+			} else {
+				Object stored = created == null ? NULL : created;
+				segment.finish(key, hash, loading, stored, deadline(ticker.read(), timeToLive));
+			}
+			statistics.miss(boxed);
+			return created;
+		} catch (Exception ex) {
+			statistics.loadTime(boxed, System.nanoTime() - started);
+			int failures = loading.failures + 1;
+			long timeToLive = TimeUnit.MILLISECONDS.toNanos(SimpleFuture.errorTimeToLive(valueProvider, failures));
+			segment.finish(key, hash, loading, new Failure(ex, failures),
+					deadline(ticker.read(), timeToLive));
+			statistics.error((E) ex, boxed, CREATE);
+			throw ex;
+		} finally {
+			loading.done();
+		}
+	}
+	
+	/**
+	 * Returns number of elements, including expired ones which are not removed yet.
+	 */
+	@ApiReference(since ="1.1.0")
+	public long size() {
+		long size = 0L;
+		for (Segment segment : segments) {
+			size += segment.size;
+		}
+		return size;
+	}
+	
+	/**
+	 * Removes elements which expiration time has passed, unless veto keeps them. Only keys which are due are
+	 * visited (see {@link Segment#pollExpired}), so cost doesn't depend on cache size, and veto is asked
+	 * without holding lock of a segment.
+	 */
+	void removeAllExpired() {
+		long now = ticker.read();
+		long removed = 0L;
+		for (Segment segment : segments) {
+			removed += removeExpired(segment, now);
+		}
+		statistics.setTotalSize(size());
+		LOG.debug("{} expired elements are removed from long cache", removed);
+	}
+	
+	private long removeExpired(Segment segment, long now) {
+		Expired expired;
+		long stamp = segment.lock.writeLock();
+		try {
+			expired = segment.pollExpired(now);
+		} finally {
+			segment.lock.unlockWrite(stamp);
+		}
+		if (expired.size == 0) {
+			return 0L;
+		}
+		CachingVeto<Long, V> currentVeto = veto;
+		boolean[] allowed = new boolean[expired.size];
+		for (int i = 0; i < expired.size; i++) {
+			Object value = expired.values[i];
+			try {
+				allowed[i] = currentVeto == null || value instanceof Failure
+						|| currentVeto.removeAllowed(expired.keys[i], value == NULL ? null : (V) value);
+			} catch (RuntimeException ex) {
+				LOG.error("Could not remove element '{}' from long cache", expired.keys[i], ex);
+				statistics.error((E) ex, expired.keys[i], REMOVE);
+			}
+		}
+		long removed = 0L;
+		long recheckAt = now + TimeUnit.MILLISECONDS.toNanos(sleepBeforeDelete);
+		stamp = segment.lock.writeLock();
+		try {
+			for (int i = 0; i < expired.size; i++) {
+				long key = expired.keys[i];
+				int index = segment.indexOf(key, spread(key));
+				//element may be calculated again meanwhile, then it's left as is
+				if (index < 0 || segment.values[index] != expired.values[i]
+						|| segment.expiresAt[index] != expired.deadlines[i]) {
+					continue;
+				}
+				if (allowed[i]) {
+					segment.remove(index);
+					statistics.remove(key);
+					removed++;
+				} else {
+					//removing is vetoed, element is checked again later
+					segment.schedule(key, recheckAt);
+				}
+			}
+			segment.purgeTombstones();
+		} finally {
+			segment.lock.unlockWrite(stamp);
+		}
+		return removed;
+	}
+	
+	void maintain() {
+		if (stop) {
+			return;
+		}
+		try {
+			removeAllExpired();
+		} catch (RuntimeException ex) {
+			LOG.error("Maintenance of long cache failed", ex);
+		} finally {
+			scheduleMaintenance();
+		}
+	}
+	
+	private void scheduleMaintenance() {
+		if (stop) {
+			return;
+		}
+		maintenance = scheduler.schedule(this::maintain, sleepBeforeDelete, TimeUnit.MILLISECONDS);
+		if (stop) {
+			maintenance.cancel(false);
+		}
+	}
+	
+	@ApiReference(since ="1.1.0")
+	public void stop() {
+		this.stop = true;
+		ScheduledFuture<?> current = maintenance;
+		if (current != null) {
+			current.cancel(false);
+		}
+		LOG.info("Final long cache ratio: {} %, {}/{}/{}/{} (hit/miss/error/removed)",
+				statistics.ratio(),
+				statistics.getHits(), statistics.getMisses(), statistics.getErrors(),
+				statistics.getRemoves());
+	}
+	
+	@ApiReference(since ="1.1.0")
+	public void setVeto(final CachingVeto<Long, V> veto) {
+		if (veto == null) {
+			throw new IllegalArgumentException("Veto cannot be null");
+		}
+		this.veto = veto;
+	}
+	
+	@ApiReference(since ="1.1.0")
+	public void setSleepBeforeDelete(final long sleepBeforeDelete) {
+		if (sleepBeforeDelete <= 0) {
+			return;
+		}
+		this.sleepBeforeDelete = sleepBeforeDelete;
+	}
+	
+	/**
+	 * Mixes bits of a key (finalizer of MurmurHash3), so sequential IDs are spread over segments and slots.
+	 */
+	static int spread(long key) {
+		key = (key ^ (key >>> 33)) * 0xff51afd7ed558ccdL;
+		key = (key ^ (key >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return (int) (key ^ (key >>> 33));
+	}
+	
+	/**
+	 * Part of table with linear probing. Arrays are replaced only under write lock, readers take an optimistic
+	 * stamp and read again under read lock if the stamp is broken. Removed slots are marked by a tombstone,
+	 * so probing goes on through them, the table is rebuilt when tombstones take too many slots.
+	 * Keys are also kept in buckets by their expiration time (about a second per bucket), so expired keys
+	 * are found without scanning the table. A key isn't taken out of its bucket when it's calculated again,
+	 * it's just checked against its slot when the bucket is due.
+	 */
+	static final class Segment {
+		private static final int INITIAL_CAPACITY = 16;
+		private static final int DEADLINE_SHIFT = 30;
+		
+		final StampedLock lock = new StampedLock();
+		long[] keys = new long[INITIAL_CAPACITY];
+		Object[] values = new Object[INITIAL_CAPACITY];
+		long[] expiresAt = new long[INITIAL_CAPACITY];
+		volatile int size;
+		int tombstones;
+		private final TreeMap<Long, Keys> deadlines = new TreeMap<>();
+		
+		int indexOf(long key, int hash) {
+			return indexOf(keys, values, key, hash);
+		}
+		
+		/**
+		 * Returns index of slot with given key or -1. It may be called without lock, so it's ready for arrays
+		 * of different tables and it never loops more than capacity.
+		 */
+		static int indexOf(long[] currentKeys, Object[] currentValues, long key, int hash) {
+			int capacity = Math.min(currentKeys.length, currentValues.length);
+			int mask = capacity - 1;
+			for (int i = 0, index = (hash >>> 16 ^ hash) & mask; i < capacity; i++, index = (index + 1) & mask) {
+				Object value = currentValues[index];
+				if (value == null) {
+					return -1;
+				}
+				if (value != TOMBSTONE && currentKeys[index] == key) {
+					return index;
+				}
+			}
+			return -1;
+		}
+		
+		/**
+		 * Puts a loading marker into slot of a key, if slot still keeps what caller has seen.
+		 * @return marker which caller should finish, or null if slot is changed by another thread.
+		 */
+		Loading startLoading(long key, int hash, Object seen) {
+			long stamp = lock.writeLock();
+			try {
+				int index = indexOf(key, hash);
+				Object current = index < 0 ? null : values[index];
+				if (current != seen) {
+					return null;
+				}
+				Loading loading = new Loading(seen instanceof Failure ? ((Failure) seen).failures : 0);
+				if (index >= 0) {
+					values[index] = loading;
+				} else {
+					insert(key, hash, loading);
+				}
+				return loading;
+			} finally {
+				lock.unlockWrite(stamp);
+			}
+		}
+		
+		/**
+		 * Replaces loading marker by a value, a failure or a tombstone.
+		 */
+		void finish(long key, int hash, Loading loading, Object result, long deadline) {
+			long stamp = lock.writeLock();
+			try {
+				int index = indexOf(key, hash);
+				if (index < 0 || values[index] != loading) {
+					return;
+				}
+				if (result == TOMBSTONE) {
+					remove(index);
+				} else {
+					values[index] = result;
+					expiresAt[index] = deadline;
+					schedule(key, deadline);
+				}
+			} finally {
+				lock.unlockWrite(stamp);
+			}
+		}
+		
+		/**
+		 * Marks slot as removed, it's called under write lock.
+		 */
+		void remove(int index) {
+			values[index] = TOMBSTONE;
+			size--;
+			tombstones++;
+		}
+		
+		/**
+		 * Puts key into bucket of given time, it's called under write lock.
+		 */
+		void schedule(long key, long deadline) {
+			if (deadline == Long.MAX_VALUE) {
+				return;
+			}
+			deadlines.computeIfAbsent(deadline >> DEADLINE_SHIFT, tick -> new Keys()).add(key);
+		}
+		
+		/**
+		 * Takes keys out of buckets which time has come and returns elements of them which are expired, keys which
+		 * are not expired yet are put back. It's called under write lock.
+		 */
+		Expired pollExpired(long now) {
+			Expired expired = new Expired();
+			long nowTick = now >> DEADLINE_SHIFT;
+			Keys notYet = new Keys();
+			for (Map.Entry<Long, Keys> bucket = deadlines.firstEntry(); bucket != null && bucket.getKey() <= nowTick;
+				 bucket = deadlines.firstEntry()) {
+				deadlines.pollFirstEntry();
+				Keys due = bucket.getValue();
+				for (int i = 0; i < due.size; i++) {
+					long key = due.keys[i];
+					int index = indexOf(key, spread(key));
+					Object value = index < 0 ? null : values[index];
+					if (value == null || value instanceof Loading) {
+						continue;
+					}
+					long deadline = expiresAt[index];
+					if (now > deadline) {
+						expired.add(key, value, deadline);
+					} else if (deadline >> DEADLINE_SHIFT <= nowTick) {
+						//key is due in the current bucket, which is taken out as well
+						notYet.add(key);
+					}
+				}
+			}
+			for (int i = 0; i < notYet.size; i++) {
+				schedule(notYet.keys[i], now);
+			}
+			return expired;
+		}
+		
+		/**
+		 * Rebuilds table if tombstones take more than a quarter of it, it's called under write lock.
+		 */
+		void purgeTombstones() {
+			if (tombstones > values.length / 4) {
+				resize(values.length);
+			}
+		}
+		
+		private void insert(long key, int hash, Object value) {
+			if ((size + tombstones + 1) * 4L > values.length * 3L) {
+				resize((size + 1) * 2 > values.length ? values.length << 1 : values.length);
+			}
+			int mask = values.length - 1;
+			int index = (hash >>> 16 ^ hash) & mask;
+			while (values[index] != null && values[index] != TOMBSTONE) {
+				index = (index + 1) & mask;
+			}
+			if (values[index] == TOMBSTONE) {
+				tombstones--;
+			}
+			keys[index] = key;
+			values[index] = value;
+			size++;
+		}
+		
+		/**
+		 * Rebuilds table without tombstones. New arrays are filled first and published at once.
+		 */
+		private void resize(int capacity) {
+			long[] newKeys = new long[capacity];
+			Object[] newValues = new Object[capacity];
+			long[] newExpiresAt = new long[capacity];
+			int mask = capacity - 1;
+			for (int i = 0; i < values.length; i++) {
+				Object value = values[i];
+				if (value == null || value == TOMBSTONE) {
+					continue;
+				}
+				int hash = spread(keys[i]);
+				int index = (hash >>> 16 ^ hash) & mask;
+				while (newValues[index] != null) {
+					index = (index + 1) & mask;
+				}
+				newKeys[index] = keys[i];
+				newValues[index] = value;
+				newExpiresAt[index] = expiresAt[i];
+			}
+			keys = newKeys;
+			values = newValues;
+			expiresAt = newExpiresAt;
+			tombstones = 0;
+		}
+	}
+	
+	/**
+	 * Growable array of keys of a bucket.
+	 */
+	static final class Keys {
+		long[] keys = new long[4];
+		int size;
+		
+		void add(long key) {
+			if (size == keys.length) {
+				keys = Arrays.copyOf(keys, size * 2);
+			}
+			keys[size++] = key;
+		}
+	}
+	
+	/**
+	 * Expired elements of a segment, which are removed if veto allows it and they are not changed meanwhile.
+	 */
+	static final class Expired {
+		long[] keys = new long[4];
+		Object[] values = new Object[4];
+		long[] deadlines = new long[4];
+		int size;
+		
+		void add(long key, Object value, long deadline) {
+			if (size == keys.length) {
+				keys = Arrays.copyOf(keys, size * 2);
+				values = Arrays.copyOf(values, size * 2);
+				deadlines = Arrays.copyOf(deadlines, size * 2);
+			}
+			keys[size] = key;
+			values[size] = value;
+			deadlines[size] = deadline;
+			size++;
+		}
+	}
+	
+	/**
+	 * Marker of a slot whose value is being calculated, other threads wait on it.
+	 */
+	static final class Loading {
+		final int failures;
+		private volatile boolean done;
+		
+		Loading(int failures) {
+			this.failures = failures;
+		}
+		
+		boolean isDone() {
+			return done;
+		}
+		
+		synchronized void done() {
+			done = true;
+			notifyAll();
+		}
+		
+		synchronized void await(long key, SimpleCacheStatistics<Long, ?, ?> statistics) {
+			long started = System.nanoTime();
+			boolean interrupted = false;
+			while (!done) {
+				try {
+					wait();
+				} catch (InterruptedException ex) {
+					interrupted = true;
+				}
+			}
+			statistics.waitTime(key, System.nanoTime() - started);
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	/**
+	 * Exception of the last calculation, which is kept till error time to live is over.
+	 */
+	static final class Failure {
+		final Exception exception;
+		final int failures;
+		
+		Failure(Exception exception, int failures) {
+			this.exception = exception;
+			this.failures = failures;
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package com.nikondsl.cache;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs maintenance work (removing expired elements, reacting on memory pressure, logging statistics)
+ * of caches. A single scheduler is shared by all latches by default, so there is no thread per cache.
+ */
+@ApiReference(since ="1.1.0")
+public interface MaintenanceScheduler {
+	/**
+	 * Runs task once after given delay.
+	 * @param task maintenance work of a cache.
+	 * @param delay delay before running.
+	 * @param unit unit of delay.
+	 * @return future which may be used for cancellation.
+	 */
+	@ApiReference(since ="1.1.0")
+	ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit);
+	
+	/**
+	 * Returns scheduler which is shared by all latches which are not given their own one.
+	 * Number of its threads may be set by "com.nikondsl.cache.maintenance.threads" system property, 1 by default.
+	 * @return shared scheduler.
+	 */
+	@ApiReference(since ="1.1.0")
+	static MaintenanceScheduler shared() {
+		return SharedMaintenanceScheduler.Holder.SHARED;
+	}
+}
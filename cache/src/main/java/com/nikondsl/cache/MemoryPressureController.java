@@ -0,0 +1,191 @@
+package com.nikondsl.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Watches usage of heap after garbage collections and tells caches which part of their elements should be evicted.
+ * Eviction starts when usage of a heap pool after collection exceeds high watermark (see collection usage
+ * threshold of {@link MemoryPoolMXBean}) and it goes on after each collection till usage drops below target.
+ * The part to evict grows with usage: (usage - target) / (1 - target), so caches give back only as much
+ * as is needed instead of being cleared.
+ * NOTE: listeners are called on a notification thread of JMX, they should pass work to another thread.
+ */
+@ApiReference(since ="1.1.0")
+public class MemoryPressureController {
+	private static Logger LOG = LoggerFactory.getLogger(MemoryPressureController.class);
+	private static final String GC_NOTIFICATION = "com.sun.management.gc.notification";
+	
+	private volatile double highWatermark = 0.85;
+	private volatile double target = 0.7;
+	private volatile boolean underPressure;
+	private final List<DoubleConsumer> listeners = new CopyOnWriteArrayList<>();
+	private final List<MemoryPoolMXBean> pools = new ArrayList<>();
+	private final List<MemoryPoolMXBean> ownThresholds = new ArrayList<>();
+	private final NotificationListener notificationListener = (notification, handback) -> {
+		String type = notification.getType();
+		if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(type)
+				|| GC_NOTIFICATION.equals(type) && underPressure) {
+			check();
+		}
+	};
+	
+	/**
+	 * Returns controller which watches heap of this JVM, latches use it by default.
+	 * @return shared controller.
+	 */
+	@ApiReference(since ="1.1.0")
+	public static MemoryPressureController shared() {
+		return Holder.SHARED;
+	}
+	
+	/**
+	 * Subscribes on heap pools which support collection usage thresholds and on garbage collectors.
+	 * A threshold is set only if it isn't set by anyone else, it's moved when high watermark is changed.
+	 */
+	@ApiReference(since ="1.1.0")
+	public synchronized void install() {
+		if (!pools.isEmpty()) {
+			return;
+		}
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported()) {
+				pools.add(pool);
+			}
+		}
+		setThresholds();
+		((NotificationEmitter) ManagementFactory.getMemoryMXBean())
+				.addNotificationListener(notificationListener, null, null);
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			if (collector instanceof NotificationEmitter) {
+				((NotificationEmitter) collector).addNotificationListener(notificationListener, null, null);
+			}
+		}
+		LOG.info("Memory pressure is watched in {} heap pool(s)", pools.size());
+	}
+	
+	private synchronized void setThresholds() {
+		for (MemoryPoolMXBean pool : pools) {
+			long max = pool.getUsage().getMax();
+			if (max > 0 && (pool.getCollectionUsageThreshold() == 0 || ownThresholds.contains(pool))) {
+				pool.setCollectionUsageThreshold((long) (max * highWatermark));
+				if (!ownThresholds.contains(pool)) {
+					ownThresholds.add(pool);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Adds listener which is given a part of elements to evict, from 0 (exclusive) to 1.
+	 */
+	@ApiReference(since ="1.1.0")
+	public void addListener(DoubleConsumer listener) {
+		if (listener == null) {
+			throw new IllegalArgumentException("Listener cannot be null");
+		}
+		listeners.add(listener);
+	}
+	
+	@ApiReference(since ="1.1.0")
+	public void removeListener(DoubleConsumer listener) {
+		listeners.remove(listener);
+	}
+	
+	/**
+	 * Sets usage of heap after collection (0.85 by default) which starts eviction.
+	 * @param highWatermark part of maximum size of a pool.
+	 */
+	@ApiReference(since ="1.1.0")
+	public void setHighWatermark(double highWatermark) {
+		if (highWatermark <= target || highWatermark > 1.0) {
+			throw new IllegalArgumentException("High watermark should be above target and not above 1");
+		}
+		this.highWatermark = highWatermark;
+		setThresholds();
+	}
+	
+	/**
+	 * Sets usage of heap after collection (0.7 by default) which stops eviction.
+	 * @param target part of maximum size of a pool.
+	 */
+	@ApiReference(since ="1.1.0")
+	public void setTarget(double target) {
+		if (target <= 0.0 || target >= highWatermark) {
+			throw new IllegalArgumentException("Target should be positive and below high watermark");
+		}
+		this.target = target;
+	}
+	
+	@ApiReference(since ="1.1.0")
+	public boolean isUnderPressure() {
+		return underPressure;
+	}
+	
+	/**
+	 * Reads usage of the most used heap pool after the last collection.
+	 */
+	void check() {
+		double usage = 0.0;
+		for (MemoryPoolMXBean pool : pools) {
+			MemoryUsage collected = pool.getCollectionUsage();
+			if (collected != null && collected.getMax() > 0) {
+				usage = Math.max(usage, (double) collected.getUsed() / collected.getMax());
+			}
+		}
+		evaluate(usage);
+	}
+	
+	/**
+	 * Decides which part of elements should be evicted by given usage of heap and tells it to listeners.
+	 * @param usage used part of heap after collection.
+	 */
+	void evaluate(double usage) {
+		if (usage >= highWatermark) {
+			underPressure = true;
+		} else if (usage < target) {
+			if (underPressure) {
+				LOG.info("Memory pressure is over, heap usage after collection is {} %", (int) (usage * 100));
+			}
+			underPressure = false;
+		}
+		if (!underPressure) {
+			return;
+		}
+		double part = Math.min(1.0, (usage - target) / (1.0 - target));
+		LOG.info("Heap usage after collection is {} %, {} % of cached elements are to be evicted",
+				(int) (usage * 100), (int) Math.ceil(part * 100));
+		for (DoubleConsumer listener : listeners) {
+			try {
+				listener.accept(part);
+			} catch (RuntimeException ex) {
+				LOG.error("Memory pressure listener failed", ex);
+			}
+		}
+	}
+	
+	static class Holder {
+		static final MemoryPressureController SHARED = new MemoryPressureController();
+		
+		static {
+			try {
+				SHARED.install();
+			} catch (RuntimeException ex) {
+				LOG.warn("Memory pressure cannot be watched", ex);
+			}
+		}
+	}
+}
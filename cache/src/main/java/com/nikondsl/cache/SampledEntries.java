@@ -0,0 +1,82 @@
+package com.nikondsl.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Entries of cache in an array, so a random sample of them is taken without visiting the whole cache,
+ * i.e. for choosing elements to evict. Each entry keeps its slot in its handle, a removed entry is replaced
+ * by the last one, so adding and removing don't depend on cache size.
+ * NOTE: all methods are synchronized, entries are added only when a new element is put into cache and removed
+ * when it's taken out.
+ * @param <K> class for keys.
+ * @param <V> class for values.
+ */
+class SampledEntries<K, V> {
+	private Handle<K, V>[] entries = new Handle[16];
+	private int size;
+	
+	/**
+	 * Adds entry.
+	 * @return handle which should be passed on removing of the entry.
+	 */
+	synchronized Handle<K, V> add(K key, V value) {
+		if (size == entries.length) {
+			entries = Arrays.copyOf(entries, size * 2);
+		}
+		Handle<K, V> handle = new Handle<>(key, value, size);
+		entries[size++] = handle;
+		return handle;
+	}
+	
+	/**
+	 * Removes entry, removing it twice does nothing.
+	 */
+	synchronized void remove(Handle<K, V> handle) {
+		if (handle == null || handle.index < 0) {
+			return;
+		}
+		Handle<K, V> last = entries[--size];
+		entries[handle.index] = last;
+		last.index = handle.index;
+		entries[size] = null;
+		handle.index = -1;
+		if (size > 16 && size < entries.length / 4) {
+			entries = Arrays.copyOf(entries, entries.length / 2);
+		}
+	}
+	
+	/**
+	 * Returns given number of random entries, the same entry may be returned more than once.
+	 * If there are not more entries than that, all of them are returned.
+	 */
+	synchronized List<Handle<K, V>> sample(int count) {
+		if (size <= count) {
+			return new ArrayList<>(Arrays.asList(entries).subList(0, size));
+		}
+		List<Handle<K, V>> sample = new ArrayList<>(count);
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		for (int i = 0; i < count; i++) {
+			sample.add(entries[random.nextInt(size)]);
+		}
+		return sample;
+	}
+	
+	synchronized int size() {
+		return size;
+	}
+	
+	static class Handle<K, V> {
+		final K key;
+		final V value;
+		int index;
+		
+		Handle(K key, V value, int index) {
+			this.key = key;
+			this.value = value;
+			this.index = index;
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package com.nikondsl.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor of background calculations which is shared by all latches which are not given their own one
+ * (see {@link SingleCalculationLatch#setLoadExecutor}), so number of load threads doesn't grow with number of caches.
+ * Its daemon threads are started on demand and stop when idle, a blocking value provider doesn't take threads
+ * of common fork-join pool. Number of threads may be set by "com.nikondsl.cache.load.threads" system property,
+ * one per CPU but at least two by default.
+ */
+class SharedLoadExecutor {
+	static final String THREADS_PROPERTY = "com.nikondsl.cache.load.threads";
+	private static Logger LOG = LoggerFactory.getLogger(SharedLoadExecutor.class);
+	
+	private SharedLoadExecutor() {
+	}
+	
+	static Executor shared() {
+		return Holder.SHARED;
+	}
+	
+	private static ThreadPoolExecutor newExecutor(int threads) {
+		if (threads <= 0) {
+			throw new IllegalArgumentException("Number of threads should be positive");
+		}
+		AtomicInteger count = new AtomicInteger();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 1L, TimeUnit.MINUTES,
+				new LinkedBlockingQueue<>(), task -> {
+					Thread thread = new Thread(task, "Cache load thread #" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		executor.allowCoreThreadTimeOut(true);
+		LOG.info("Shared cache load executor with {} thread(s) is created", threads);
+		return executor;
+	}
+	
+	static class Holder {
+		static final ThreadPoolExecutor SHARED = newExecutor(Integer.getInteger(THREADS_PROPERTY,
+				Math.max(2, Runtime.getRuntime().availableProcessors())));
+	}
+}
@@ -0,0 +1,60 @@
+package com.nikondsl.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Maintenance scheduler on top of a small pool of daemon threads, which may be shared by any number of latches.
+ */
+@ApiReference(since ="1.1.0")
+public class SharedMaintenanceScheduler implements MaintenanceScheduler {
+	static final String THREADS_PROPERTY = "com.nikondsl.cache.maintenance.threads";
+	private static Logger LOG = LoggerFactory.getLogger(SharedMaintenanceScheduler.class);
+	private static final AtomicInteger SCHEDULERS = new AtomicInteger();
+	
+	private final ScheduledThreadPoolExecutor executor;
+	
+	/**
+	 * Creates scheduler with given number of threads.
+	 * @param threads number of maintenance threads.
+	 */
+	@ApiReference(since ="1.1.0")
+	public SharedMaintenanceScheduler(int threads) {
+		if (threads <= 0) {
+			throw new IllegalArgumentException("Number of threads should be positive");
+		}
+		int number = SCHEDULERS.incrementAndGet();
+		AtomicInteger count = new AtomicInteger();
+		executor = new ScheduledThreadPoolExecutor(threads, task -> {
+			Thread thread = new Thread(task, "Cache maintenance thread #" + number + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.setRemoveOnCancelPolicy(true);
+		LOG.info("Cache maintenance scheduler #{} with {} thread(s) is created", number, threads);
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit) {
+		return executor.schedule(task, delay, unit);
+	}
+	
+	/**
+	 * Stops all maintenance threads, scheduled tasks are not run anymore.
+	 */
+	@ApiReference(since ="1.1.0")
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+	
+	static class Holder {
+		static final SharedMaintenanceScheduler SHARED =
+				new SharedMaintenanceScheduler(Integer.getInteger(THREADS_PROPERTY, 1));
+	}
+}
@@ -1,77 +1,376 @@
 package com.nikondsl.cache;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Statistics which is cheap to update from many threads: counters are striped (see {@link LongAdder}),
+ * so hits from different cores don't fight for the same cache line. Load and wait times are kept
+ * in {@link LatencyHistogram}s, use {@link #snapshot()} for reading all values at once.
+ */
 @ApiReference(since ="1.0.0")
 public class SimpleCacheStatistics<K, V, E extends Exception> implements CacheStatistics<K, E> {
-	private AtomicInteger hits = new AtomicInteger();
-	private AtomicInteger misses = new AtomicInteger();
-	private AtomicInteger errors = new AtomicInteger();
-	private AtomicInteger removes = new AtomicInteger();
-	private AtomicInteger totalInCache = new AtomicInteger();
-	private AtomicInteger maxHold = new AtomicInteger();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private final LongAdder removes = new LongAdder();
+	private final LongAdder refreshes = new LongAdder();
+	private final LongAdder staleServed = new LongAdder();
+	private final LongAdder staleOnError = new LongAdder();
+	private final LongAdder staleOnTimeout = new LongAdder();
+	private final LongAdder memoryPressureEvictions = new LongAdder();
+	private final LongAdder compressions = new LongAdder();
+	private final LongAdder originalBytes = new LongAdder();
+	private final LongAdder compressedBytes = new LongAdder();
+	private volatile long totalInCache;
+	private volatile long totalWeight;
+	private final LongAccumulator maxHold = new LongAccumulator(Math::max, 0L);
+	private final LatencyHistogram loadLatency = new LatencyHistogram();
+	private final LatencyHistogram waitLatency = new LatencyHistogram();
+	private final LatencyHistogram decompressLatency = new LatencyHistogram();
 	
 	@Override
 	@ApiReference(since ="1.0.0")
 	public void hit(K key) {
-		hits.incrementAndGet();
+		hits.increment();
+	}
+	
+	/**
+	 * Counts a hit of a cache which doesn't box its keys, e.g. {@link LongSingleCalculationLatch}.
+	 */
+	@ApiReference(since ="1.1.0")
+	public void hit() {
+		hits.increment();
 	}
 	
 	@Override
 	@ApiReference(since ="1.0.0")
 	public void miss(K key) {
-		misses.incrementAndGet();
+		misses.increment();
 	}
 	
 	@Override
 	@ApiReference(since ="1.0.0")
 	public void remove(K key) {
-		removes.incrementAndGet();
+		removes.increment();
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public void staleServed(K key) {
+		staleServed.increment();
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public void staleOnError(K key) {
+		staleOnError.increment();
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public void staleOnTimeout(K key) {
+		staleOnTimeout.increment();
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public void refresh(K key) {
+		refreshes.increment();
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public void memoryPressureEviction(K key) {
+		memoryPressureEvictions.increment();
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public void compressed(K key, int originalBytes, int compressedBytes) {
+		compressions.increment();
+		this.originalBytes.add(originalBytes);
+		this.compressedBytes.add(compressedBytes);
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public void decompressed(K key, long nanos) {
+		decompressLatency.record(nanos);
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public void loadTime(K key, long nanos) {
+		loadLatency.record(nanos);
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public void waitTime(K key, long nanos) {
+		waitLatency.record(nanos);
+	}
+	
+	public long getHits() {
+		return this.hits.sum();
+	}
+	
+	public long getMisses() {
+		return this.misses.sum();
+	}
+	
+	public long getErrors() {
+		return this.errors.sum();
+	}
+	
+	public long getRemoves() {
+		return removes.sum();
 	}
 	
-	public int getHits() {
-		return this.hits.get();
+	public long getRefreshes() {
+		return refreshes.sum();
 	}
 	
-	public int getMisses() {
-		return this.misses.get();
+	public long getStaleServed() {
+		return staleServed.sum();
 	}
 	
-	public int getErrors() {
-		return this.errors.get();
+	@ApiReference(since ="1.1.0")
+	public long getStaleOnError() {
+		return staleOnError.sum();
 	}
 	
-	public int getRemoves() {
-		return removes.get();
+	@ApiReference(since ="1.1.0")
+	public long getStaleOnTimeout() {
+		return staleOnTimeout.sum();
 	}
 	
-	public void setTotalSize(int size) {
-		this.totalInCache.set(size);
+	public long getMemoryPressureEvictions() {
+		return memoryPressureEvictions.sum();
+	}
+	
+	public long getCompressions() {
+		return compressions.sum();
+	}
+	
+	/**
+	 * Returns how many times compressed values are smaller than encoded ones, 0 if nothing is compressed.
+	 */
+	@ApiReference(since ="1.1.0")
+	public double getCompressionRatio() {
+		return compressionRatio(originalBytes.sum(), compressedBytes.sum());
+	}
+	
+	private static double compressionRatio(long originalBytes, long compressedBytes) {
+		return compressedBytes == 0 ? 0.0 : (double) originalBytes / compressedBytes;
+	}
+	
+	public void setTotalSize(long size) {
+		this.totalInCache = size;
+	}
+	
+	/**
+	 * Sets total weight of calculated values (see {@link Weigher}).
+	 */
+	public void setTotalWeight(long weight) {
+		this.totalWeight = weight;
 	}
 	
 	public void setMaxHold(int count) {
-		if (count > maxHold.get()) {
-			maxHold.set(count);
-		}
+		maxHold.accumulate(count);
 	}
 	
 	public int ratio() {
-		int sum = getHits() + getMisses() + getErrors();
+		return ratio(getHits(), getMisses(), getErrors());
+	}
+	
+	private static int ratio(long hits, long misses, long errors) {
+		long sum = hits + misses + errors;
 		if (sum == 0) return 0;
-		return (int) (100.0 * getHits() / sum);
+		return (int) (100.0 * hits / sum);
+	}
+	
+	/**
+	 * Returns all counters and latency histograms, each of them is read once.
+	 * @return current values.
+	 */
+	@ApiReference(since ="1.1.0")
+	public Snapshot snapshot() {
+		return new Snapshot(getHits(), getMisses(), getErrors(), getRemoves(), getRefreshes(), getStaleServed(),
+				getStaleOnError(), getStaleOnTimeout(), getMemoryPressureEvictions(), totalInCache, totalWeight, maxHold.get(), loadLatency.snapshot(), waitLatency.snapshot(),
+				getCompressions(), originalBytes.sum(), compressedBytes.sum(), decompressLatency.snapshot());
 	}
 	
 	@Override
 	@ApiReference(since ="1.0.0")
 	public String toString() {
-		return "ratio: "+ratio()+" %, "+getHits()+"/"+getMisses()+"/"+getErrors()+"/"+getRemoves()+"/"+totalInCache.get()+
-				"/"+maxHold.get()+
-				" (hit/miss/error/removed/total/max_hold)";
+		return snapshot().toString();
 	}
 	
 	@Override
 	@ApiReference(since ="1.0.0")
 	public void error(E ex, K key, ErrorType remove) {
-		errors.incrementAndGet();
+		errors.increment();
+	}
+	
+	/**
+	 * Values of statistics at some moment.
+	 */
+	@ApiReference(since ="1.1.0")
+	public static class Snapshot {
+		private final long hits;
+		private final long misses;
+		private final long errors;
+		private final long removes;
+		private final long refreshes;
+		private final long staleServed;
+		private final long staleOnError;
+		private final long staleOnTimeout;
+		private final long memoryPressureEvictions;
+		private final long totalInCache;
+		private final long totalWeight;
+		private final long maxHold;
+		private final LatencyHistogram.Snapshot loadLatency;
+		private final LatencyHistogram.Snapshot waitLatency;
+		private final long compressions;
+		private final long originalBytes;
+		private final long compressedBytes;
+		private final LatencyHistogram.Snapshot decompressLatency;
+		
+		Snapshot(long hits, long misses, long errors, long removes, long refreshes, long staleServed,
+				 long staleOnError, long staleOnTimeout, long memoryPressureEvictions, long totalInCache, long totalWeight, long maxHold,
+				 LatencyHistogram.Snapshot loadLatency, LatencyHistogram.Snapshot waitLatency,
+				 long compressions, long originalBytes, long compressedBytes, LatencyHistogram.Snapshot decompressLatency) {
+			this.hits = hits;
+			this.misses = misses;
+			this.errors = errors;
+			this.removes = removes;
+			this.refreshes = refreshes;
+			this.staleServed = staleServed;
+			this.staleOnError = staleOnError;
+			this.staleOnTimeout = staleOnTimeout;
+			this.memoryPressureEvictions = memoryPressureEvictions;
+			this.totalInCache = totalInCache;
+			this.totalWeight = totalWeight;
+			this.maxHold = maxHold;
+			this.loadLatency = loadLatency;
+			this.waitLatency = waitLatency;
+			this.compressions = compressions;
+			this.originalBytes = originalBytes;
+			this.compressedBytes = compressedBytes;
+			this.decompressLatency = decompressLatency;
+		}
+		
+		public long getHits() {
+			return hits;
+		}
+		
+		public long getMisses() {
+			return misses;
+		}
+		
+		public long getErrors() {
+			return errors;
+		}
+		
+		public long getRemoves() {
+			return removes;
+		}
+		
+		public long getRefreshes() {
+			return refreshes;
+		}
+		
+		/**
+		 * Returns number of values which were returned while they were older than refresh time.
+		 */
+		public long getStaleServed() {
+			return staleServed;
+		}
+		
+		/**
+		 * Returns number of the last calculated values which were returned because calculation failed.
+		 */
+		public long getStaleOnError() {
+			return staleOnError;
+		}
+		
+		/**
+		 * Returns number of the last calculated values which were returned because calculation took too long.
+		 */
+		public long getStaleOnTimeout() {
+			return staleOnTimeout;
+		}
+		
+		/**
+		 * Returns number of elements which were evicted because heap was short.
+		 */
+		public long getMemoryPressureEvictions() {
+			return memoryPressureEvictions;
+		}
+		
+		public long getTotalInCache() {
+			return totalInCache;
+		}
+		
+		/**
+		 * Returns total weight of calculated values, 0 if weigher isn't set.
+		 */
+		public long getTotalWeight() {
+			return totalWeight;
+		}
+		
+		public long getMaxHold() {
+			return maxHold;
+		}
+		
+		/**
+		 * Returns times of value calculations, including failed ones.
+		 */
+		public LatencyHistogram.Snapshot getLoadLatency() {
+			return loadLatency;
+		}
+		
+		/**
+		 * Returns times which callers spent waiting for values calculated by other threads.
+		 */
+		public LatencyHistogram.Snapshot getWaitLatency() {
+			return waitLatency;
+		}
+		
+		/**
+		 * Returns number of idle values which were compressed.
+		 */
+		public long getCompressions() {
+			return compressions;
+		}
+		
+		/**
+		 * Returns how many times compressed values are smaller than encoded ones, 0 if nothing is compressed.
+		 */
+		public double getCompressionRatio() {
+			return SimpleCacheStatistics.compressionRatio(originalBytes, compressedBytes);
+		}
+		
+		/**
+		 * Returns times of reading compressed values back.
+		 */
+		public LatencyHistogram.Snapshot getDecompressLatency() {
+			return decompressLatency;
+		}
+		
+		public int ratio() {
+			return SimpleCacheStatistics.ratio(hits, misses, errors);
+		}
+		
+		@Override
+		public String toString() {
+			return "ratio: "+ratio()+" %, "+hits+"/"+misses+"/"+errors+"/"+removes+"/"+totalInCache+"/"+totalWeight+
+					"/"+maxHold+"/"+refreshes+"/"+staleServed+"/"+staleOnError+"/"+staleOnTimeout+
+					"/"+memoryPressureEvictions+" (hit/miss/error/removed/total/total_weight/max_hold/refresh/stale_served/"+
+					"stale_on_error/stale_on_timeout/memory_evicted), load {"+loadLatency+
+					"}, wait {"+waitLatency+"}, compressed "+compressions+" (ratio "+String.format("%.2f", getCompressionRatio())+
+					"), decompress {"+decompressLatency+"}";
+		}
 	}
 }
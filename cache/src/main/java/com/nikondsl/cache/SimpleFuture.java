@@ -1,34 +1,92 @@
 package com.nikondsl.cache;
 
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
+import static com.nikondsl.cache.Deadlines.deadline;
 import static com.nikondsl.cache.ErrorType.CREATE;
 
 /**
  * Cache will use this future for managing creating values.
+ * Future is a small state machine: EMPTY -> LOADING -> DONE/FAILED -> EXPIRED, where only a thread which
+ * moved it into LOADING calculates a value. Reading of a calculated and not expired value is just a volatile
+ * read, other threads are parked only while value is being calculated.
+ * If refresh is enabled (see {@link ValueProvider#getTimeToRefresh()}) a value which is older than refresh time
+ * is moved DONE -> REFRESHING -> DONE, while it's being recalculated in background callers get the current value.
+ * Expiration and refresh times are kept in nanoseconds of a {@link Ticker}.
  * @param <K> class for specifying key.
  * @param <V> class for specifying value.
  * @param <E> class for specifying exception.
  */
 @ApiReference(since ="1.0.0")
 public class SimpleFuture<K, V, E extends Exception> {
-	private volatile long createdTime = System.currentTimeMillis();
+	static final int EMPTY = 0;
+	static final int LOADING = 1;
+	static final int DONE = 2;
+	static final int FAILED = 3;
+	static final int EXPIRED = 4;
+	static final int REFRESHING = 5;
+	private static final long ACCESS_RESOLUTION = TimeUnit.MILLISECONDS.toNanos(1L);
+	
+	private static final AtomicIntegerFieldUpdater<SimpleFuture> STATE =
+			AtomicIntegerFieldUpdater.newUpdater(SimpleFuture.class, "state");
+	private static final AtomicReferenceFieldUpdater<SimpleFuture, Waiter> WAITERS =
+			AtomicReferenceFieldUpdater.newUpdater(SimpleFuture.class, Waiter.class, "waiters");
+	private static final AtomicReferenceFieldUpdater<SimpleFuture, CompletableFuture> PROMISE =
+			AtomicReferenceFieldUpdater.newUpdater(SimpleFuture.class, CompletableFuture.class, "promise");
+	private static final AtomicIntegerFieldUpdater<SimpleFuture> WEIGHT =
+			AtomicIntegerFieldUpdater.newUpdater(SimpleFuture.class, "weight");
+	private static final AtomicReferenceFieldUpdater<SimpleFuture, Reference> VALUE =
+			AtomicReferenceFieldUpdater.newUpdater(SimpleFuture.class, Reference.class, "value");
+	
+	private volatile int state = EMPTY;
+	private volatile long expiresAt;
+	private volatile long refreshAt = Long.MAX_VALUE;
 	private volatile Reference<V> value;
 	private volatile E exception;
-	private volatile boolean done = false;
+	private volatile int failures;
+	private volatile Waiter waiters;
+	private volatile CompletableFuture<V> promise;
 	private final ValueProvider<K, V, E> valueProvider;
-	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final TimerWheel<K> timerWheel;
+	private final Ticker ticker;
+	private final BiConsumer<K, SimpleFuture<K, V, E>> loadedListener;
+	private volatile TimerWheel.Node<K> timerNode;
+	private volatile SampledEntries.Handle<K, SimpleFuture<K, V, E>> sampleHandle;
+	private volatile long loadTime;
+	private volatile int weight;
+	private long accessedAt;
 	
 	public SimpleFuture(ValueProvider<K, V, E> valueProvider) {
+		this(valueProvider, null, Ticker.system(), null);
+	}
+	
+	/**
+	 * Creates future which schedules its expiration in a timer wheel each time a new value is created.
+	 * @param loadedListener is called each time a new value is calculated or refreshed, may be null.
+	 */
+	SimpleFuture(ValueProvider<K, V, E> valueProvider, TimerWheel<K> timerWheel, Ticker ticker,
+				 BiConsumer<K, SimpleFuture<K, V, E>> loadedListener) {
 		if (valueProvider == null) {
 			throw new IllegalArgumentException("No value provider presented");
 		}
 		this.valueProvider = valueProvider;
+		this.timerWheel = timerWheel;
+		this.ticker = ticker;
+		this.loadedListener = loadedListener;
 	}
 	
 	/**
 	 * Returns a calculated value if it's presented or calculates it and returns.
-	 * NOTE: synchronization here is needed to provide access to calculation for only single thread.
+	 * NOTE: only a thread which moves future into LOADING state calculates a value, others are waiting for it.
 	 * @param key key for caching.
 	 * @param veto
 	 * @param statistics
@@ -37,91 +95,632 @@ public class SimpleFuture<K, V, E extends Exception> {
 	 */
 	@ApiReference(since ="1.0.0")
 	public V get(K key, CachingVeto<K, V> veto, SimpleCacheStatistics<K, V, E> statistics) throws E {
+		return get(key, veto, statistics, null);
+	}
+	
+	/**
+	 * Returns a calculated value if it's presented or calculates it and returns.
+	 * If value is older than refresh time it's still returned, but it's recalculated in background.
+	 * @param key key for caching.
+	 * @param veto
+	 * @param statistics
+	 * @param refreshExecutor is used for recalculation of values which need refresh, null disables refreshing.
+	 * @return value in cashe if presented or calculates new value and returns it.
+	 * @throws E
+	 */
+	@ApiReference(since ="1.1.0")
+	public V get(K key, CachingVeto<K, V> veto, SimpleCacheStatistics<K, V, E> statistics,
+				 Executor refreshExecutor) throws E {
 		if (key == null) {
 			throw new IllegalArgumentException("Key is required, nulls are not supported.");
 		}
-		if (exception != null) {
-			throw exception;
+		for (;;) {
+			int current = state;
+			//ticker is read once per attempt, a hit doesn't pay for it more than once
+			long now = ticker.read();
+			if (current == FAILED && !isExpired(now)) {
+				Reference<V> stale = staleOnError();
+				if (stale == null) {
+					throw exception;
+				}
+				statistics.staleOnError(key);
+				return stale.getValue();
+			}
+			if (current == LOADING) {
+				awaitLoading(key, statistics);
+				continue;
+			}
+			if (isUsable(key, veto, now)) {
+				statistics.hit(key);
+				recordAccess(now);
+				V result = value.getValue();
+				refreshIfNeeded(key, statistics, refreshExecutor, now);
+				return result;
+			}
+			if (current == REFRESHING) {
+				awaitLoading(key, statistics);
+				continue;
+			}
+			if (STATE.compareAndSet(this, current, LOADING)) {
+				try {
+					constructValue(key, statistics);
+				} catch (Exception ex) {
+					Reference<V> stale = staleOnError();
+					if (stale == null) {
+						throw ex;
+					}
+					statistics.staleOnError(key);
+					return stale.getValue();
+				}
+				return value.getValue();
+			}
 		}
-		if (getInReadLock(key, veto)) {
-			statistics.hit(key);
-			return value.getValue();
+	}
+	
+	/**
+	 * Returns a calculated value if it's presented, otherwise returns a future which is completed when value is
+	 * calculated. All callers which come while value is being calculated share the same future.
+	 * NOTE: if value is presented, completed future is returned without switching to another thread.
+	 * @param key key for caching.
+	 * @param veto
+	 * @param statistics
+	 * @param executor is used for calculation if it's not started yet.
+	 * @return future with value.
+	 */
+	@ApiReference(since ="1.1.0")
+	public CompletableFuture<V> getAsync(K key, CachingVeto<K, V> veto, SimpleCacheStatistics<K, V, E> statistics,
+										 Executor executor) {
+		if (key == null) {
+			throw new IllegalArgumentException("Key is required, nulls are not supported.");
 		}
-		lock.writeLock().lock();
-		try {
-			if (getInReadLock(key, veto)) {
+		for (;;) {
+			int current = state;
+			//ticker is read once per attempt, a hit doesn't pay for it more than once
+			long now = ticker.read();
+			if (current == FAILED && !isExpired(now)) {
+				Reference<V> stale = staleOnError();
+				if (stale != null) {
+					statistics.staleOnError(key);
+					return CompletableFuture.completedFuture(stale.getValue());
+				}
+				CompletableFuture<V> failed = new CompletableFuture<>();
+				failed.completeExceptionally(exception);
+				return failed;
+			}
+			if (current == LOADING) {
+				CompletableFuture<V> shared = promise();
+				if (shared != null) {
+					return shared;
+				}
+				continue;
+			}
+			if (isUsable(key, veto, now)) {
 				statistics.hit(key);
-				return value.getValue();
+				recordAccess(now);
+				CompletableFuture<V> result = CompletableFuture.completedFuture(value.getValue());
+				refreshIfNeeded(key, statistics, executor, now);
+				return result;
+			}
+			if (current == REFRESHING) {
+				CompletableFuture<V> shared = promise();
+				if (shared != null) {
+					return shared;
+				}
+				continue;
+			}
+			if (STATE.compareAndSet(this, current, LOADING)) {
+				CompletableFuture<V> result = promise();
+				try {
+					executor.execute(() -> {
+						try {
+							constructValue(key, statistics);
+						} catch (Exception ignored) {
+							//future is completed exceptionally already
+						}
+					});
+				} catch (RejectedExecutionException ex) {
+					result.completeExceptionally(ex);
+					complete(EMPTY);
+				}
+				return result;
 			}
-			constructValue(key, statistics);
-			statistics.setMaxHold(lock.getReadLockCount());
-			done = true;
-			return value.getValue();
-		} finally {
-			lock.writeLock().unlock();
 		}
 	}
 	
-	private boolean getInReadLock(K key, CachingVeto<K, V> veto) {
-		lock.readLock().lock();
-		try {
-			boolean expired = isExpired() && (veto == null || value == null || veto.expireAllowed(key, value.getValue()));
-			if (isDone() && !expired) {
-				return true;
+	/**
+	 * Returns a future which is shared by all callers waiting for the current calculation.
+	 * @return future or null if calculation is already finished and caller should look at the state again.
+	 */
+	private CompletableFuture<V> promise() {
+		CompletableFuture<V> current = promise;
+		if (current == null) {
+			CompletableFuture<V> created = new CompletableFuture<>();
+			current = PROMISE.compareAndSet(this, null, created) ? created : promise;
+			if (current == null) {
+				return null;
 			}
+		}
+		int currentState = state;
+		if (currentState != LOADING && currentState != REFRESHING) {
+			//calculation may be finished before future was published, so complete it here
+			PROMISE.compareAndSet(this, current, null);
+			completePromise(current, currentState);
+			return current.isCompletedExceptionally() && currentState != FAILED ? null : current;
+		}
+		return current;
+	}
+	
+	private void completePromise(CompletableFuture<V> shared, int newState) {
+		Reference<V> calculated = value;
+		if ((newState == DONE || newState == EXPIRED) && calculated != null) {
+			shared.complete(calculated.getValue());
+		} else if (newState == FAILED && staleOnError() != null) {
+			shared.complete(staleOnError().getValue());
+		} else if (newState == FAILED) {
+			shared.completeExceptionally(exception);
+		} else {
+			shared.completeExceptionally(new IllegalStateException("Value was not calculated"));
+		}
+	}
+	
+	/**
+	 * Starts recalculation in background if value is older than refresh time. Only one caller starts it,
+	 * others keep getting current value till it's replaced.
+	 */
+	private void refreshIfNeeded(K key, SimpleCacheStatistics<K, V, E> statistics, Executor refreshExecutor,
+								 long now) {
+		if (refreshExecutor == null || !needsRefresh(now)) {
+			return;
+		}
+		statistics.staleServed(key);
+		if (!STATE.compareAndSet(this, DONE, REFRESHING)) {
+			return;
+		}
+		statistics.refresh(key);
+		try {
+			refreshExecutor.execute(() -> refresh(key, statistics));
+		} catch (RejectedExecutionException ex) {
+			complete(DONE);
+		}
+	}
+	
+	/**
+	 * Recalculates value of a future in REFRESHING state. If calculation fails, previous value is kept
+	 * till it's expired, and the next refresh is delayed by error time to live, which grows with each
+	 * consecutive failure, so a failing backend isn't called on each hit.
+	 */
+	private void refresh(K key, SimpleCacheStatistics<K, V, E> statistics) {
+		long started = System.nanoTime();
+		boolean refreshed = false;
+		try {
+			setCreated(key, valueProvider.createValue(key));
+			exception = null;
+			failures = 0;
+			refreshed = true;
+		} catch (Exception ex) {
+			failures++;
+			refreshAt = deadline(ticker.read(), TimeUnit.MILLISECONDS.toNanos(errorTimeToLive(valueProvider, failures)));
+			statistics.error((E) ex, key, CREATE);
 		} finally {
-			lock.readLock().unlock();
+			recordLoadTime(key, System.nanoTime() - started, statistics);
+			complete(DONE);
+		}
+		if (refreshed) {
+			notifyLoaded(key);
+		}
+	}
+	
+	/**
+	 * Returns whether value is older than refresh time, but it's not expired yet.
+	 */
+	boolean needsRefresh(long now) {
+		return now > refreshAt;
+	}
+	
+	private boolean isUsable(K key, CachingVeto<K, V> veto, long now) {
+		boolean expired = isExpired(now) && (veto == null || value == null || veto.expireAllowed(key, value.getValue()));
+		return isDone() && !expired;
+	}
+	
+	/**
+	 * Parks current thread while value is being calculated by another thread.
+	 */
+	private void awaitLoading(K key, SimpleCacheStatistics<K, V, E> statistics) {
+		long started = System.nanoTime();
+		Waiter node = new Waiter(Thread.currentThread());
+		Waiter head;
+		do {
+			head = waiters;
+			node.next = head;
+		} while (!WAITERS.compareAndSet(this, head, node));
+		boolean interrupted = false;
+		while (state == LOADING || state == REFRESHING) {
+			LockSupport.park(this);
+			if (Thread.interrupted()) {
+				interrupted = true;
+			}
 		}
-		return false;
+		node.thread = null;
+		statistics.waitTime(key, System.nanoTime() - started);
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Moves future out of LOADING state and wakes up all waiting threads.
+	 * @param newState state after calculation.
+	 * @return number of threads which were waiting for calculation.
+	 */
+	private int complete(int newState) {
+		state = newState;
+		CompletableFuture<V> shared = PROMISE.getAndSet(this, null);
+		if (shared != null) {
+			completePromise(shared, newState);
+		}
+		int released = 0;
+		for (Waiter node = WAITERS.getAndSet(this, null); node != null; node = node.next) {
+			Thread thread = node.thread;
+			if (thread != null) {
+				node.thread = null;
+				LockSupport.unpark(thread);
+				released++;
+			}
+		}
+		return released;
 	}
 	
 	@ApiReference(since ="1.0.0")
 	public boolean isDone() {
-		return done;
+		int current = state;
+		return current == DONE || current == REFRESHING;
 	}
 	
 	/**
-	 * Creates a new value for a given key.
+	 * Returns whether the last calculation failed, exception is kept till error time to live is over
+	 * (see {@link ValueProvider#getErrorTimeToLive()}).
+	 */
+	@ApiReference(since ="1.1.0")
+	public boolean isFailed() {
+		return state == FAILED;
+	}
+	
+	/**
+	 * Marks calculated value as expired, so the next caller will calculate it again.
+	 * @return true if value was calculated and now is marked as expired.
+	 */
+	@ApiReference(since ="1.1.0")
+	public boolean expire() {
+		return STATE.compareAndSet(this, DONE, EXPIRED);
+	}
+	
+	/**
+	 * Creates a new value for a given key. Future should be in LOADING state, i.e. it's called only
+	 * by a thread which is responsible for calculation.
 	 * @param key for caching.
 	 * @param statistics
 	 * @throws E if any exception occurs.
 	 */
 	@ApiReference(since ="1.0.0")
 	void constructValue(K key, SimpleCacheStatistics statistics) throws E {
-		createdTime = System.currentTimeMillis();
+		long started = System.nanoTime();
 		try{
-			setValue(valueProvider.createValue(key));
-			statistics.miss(key);
+			V created = valueProvider.createValue(key);
+			recordLoadTime(key, System.nanoTime() - started, statistics);
+			loaded(key, created, statistics);
 		} catch (Exception exception) {
-			this.exception = (E) exception;
-			statistics.error(exception, key, CREATE);
+			recordLoadTime(key, System.nanoTime() - started, statistics);
+			failed(key, (E) exception, statistics);
 			throw exception;
+		} finally {
+			abandon();
+		}
+	}
+	
+	/**
+	 * Tries to move future into LOADING state, so caller becomes responsible for calculation and should
+	 * finish it by calling {@link #loaded}, {@link #failed} or {@link #abandon}.
+	 * @param key for caching.
+	 * @param veto
+	 * @return true if caller should calculate value, false if value is in cache or is being calculated already.
+	 */
+	boolean startLoading(K key, CachingVeto<K, V> veto) {
+		for (;;) {
+			int current = state;
+			long now = ticker.read();
+			if (current == LOADING || current == REFRESHING || current == FAILED && !isExpired(now)
+					|| isUsable(key, veto, now)) {
+				return false;
+			}
+			if (STATE.compareAndSet(this, current, LOADING)) {
+				return true;
+			}
+		}
+	}
+	
+	/**
+	 * Finishes calculation with a new value.
+	 */
+	void loaded(K key, V created, SimpleCacheStatistics statistics) {
+		setCreated(key, created);
+		exception = null;
+		failures = 0;
+		statistics.setMaxHold(complete(DONE));
+		statistics.miss(key);
+		notifyLoaded(key);
+	}
+	
+	private void notifyLoaded(K key) {
+		if (loadedListener != null) {
+			loadedListener.accept(key, this);
+		}
+	}
+	
+	/**
+	 * Moves calculated value out of heap: value is given to a store, which returns a supplier reading it back
+	 * on each access. Supplier may return null if value is lost, like a cleared soft reference.
+	 * @param store keeps value somewhere else, returns null if value cannot be stored.
+	 * @return true if value is replaced by the supplier, false if value is not calculated, it's moved already
+	 * or it's replaced by another thread meanwhile.
+	 */
+	@ApiReference(since ="1.1.0")
+	public boolean offload(Function<V, Supplier<V>> store) {
+		Reference<V> current = value;
+		if (!isDone() || current == null || current instanceof SuppliedReference) {
+			return false;
+		}
+		V calculated = current.getValue();
+		if (calculated == null) {
+			return false;
+		}
+		Supplier<V> stored = store.apply(calculated);
+		return stored != null && VALUE.compareAndSet(this, current, new SuppliedReference<>(stored));
+	}
+	
+	/**
+	 * Replaces calculated value by its compressed form, the first read decompresses it and keeps the result
+	 * as usual (see {@link ValueProvider#getReferenceType()}).
+	 * @param compressor returns a supplier decompressing the value, or null if value isn't worth compressing.
+	 * @return true if value is compressed.
+	 */
+	boolean compress(Function<V, Supplier<V>> compressor) {
+		Reference<V> current = value;
+		if (!isDone() || current == null || current instanceof SuppliedReference || current instanceof CompressedReference) {
+			return false;
+		}
+		V calculated = current.getValue();
+		if (calculated == null) {
+			return false;
+		}
+		Supplier<V> compressed = compressor.apply(calculated);
+		return compressed != null && VALUE.compareAndSet(this, current, new CompressedReference<>(this, compressed));
+	}
+	
+	/**
+	 * Returns true if value is calculated and it isn't read for given time.
+	 */
+	boolean isIdle(long now, long idleNanos) {
+		return isDone() && now - accessedAt >= idleNanos;
+	}
+	
+	/**
+	 * Finishes calculation with an exception.
+	 */
+	void failed(K key, E exception, SimpleCacheStatistics statistics) {
+		failures++;
+		setFailedTime(key);
+		this.exception = exception;
+		complete(FAILED);
+		statistics.error(exception, key, CREATE);
+	}
+	
+	/**
+	 * Returns future into EMPTY state if calculation is not finished (i.e. Error was thrown),
+	 * so the next caller will try again.
+	 */
+	void abandon() {
+		if (state == LOADING) {
+			complete(EMPTY);
 		}
 	}
 	
+	/**
+	 * Returns whether nobody calculates a value and there is no value to serve, i.e. the caller which created
+	 * future didn't start calculation, calculation was abandoned or value was marked as expired.
+	 */
+	boolean isAbandoned() {
+		int current = state;
+		return current == EMPTY || current == EXPIRED;
+	}
+	
 	@ApiReference(since ="1.0.0")
 	public boolean isExpired() {
+		return isExpired(ticker.read());
+	}
+	
+	/**
+	 * @param now current time of ticker.
+	 */
+	boolean isExpired(long now) {
 		if (isDone() || exception != null) {
-			long remain = System.currentTimeMillis() - createdTime;
-			return remain > valueProvider.getTimeToLive();
+			return now > expiresAt;
 		}
 		return true;
 	}
 	
+	/**
+	 * Returns time when value expires, it's calculated once, when value is created.
+	 * @return time of {@link Ticker} in nanoseconds.
+	 */
+	@ApiReference(since ="1.1.0")
+	public long getExpiresAt() {
+		return expiresAt;
+	}
+	
+	/**
+	 * Stores newly created value and calculates its expiration and refresh times.
+	 */
+	private void setCreated(K key, V created) {
+		long now = ticker.read();
+		long timeToLive = TimeUnit.MILLISECONDS.toNanos(valueProvider.expireAfterCreate(key, created));
+		long timeToRefresh = TimeUnit.MILLISECONDS.toNanos(valueProvider.getTimeToRefresh());
+		expiresAt = deadline(now, timeToLive);
+		refreshAt = timeToRefresh > 0 && timeToRefresh < timeToLive ? deadline(now, timeToRefresh) : Long.MAX_VALUE;
+		setValue(created);
+		accessedAt = now;
+		scheduleExpiration(key, expiresAt);
+	}
+	
+	/**
+	 * Remembers time of the last read. Field is plain and it's written at most once per millisecond,
+	 * so hits don't make cores fight for its cache line, approximate time is enough for choosing victims.
+	 */
+	private void recordAccess(long now) {
+		if (now - accessedAt > ACCESS_RESOLUTION) {
+			accessedAt = now;
+		}
+	}
+	
+	/**
+	 * Tells statistics how long a value was calculated and remembers it as a cost of calculating it again.
+	 */
+	void recordLoadTime(K key, long nanos, SimpleCacheStatistics statistics) {
+		loadTime = nanos;
+		statistics.loadTime(key, nanos);
+	}
+	
+	/**
+	 * Replaces weight of calculated value which is counted in total weight of cache.
+	 * @return previous weight.
+	 */
+	int swapWeight(int newWeight) {
+		return WEIGHT.getAndSet(this, newWeight);
+	}
+	
+	int getWeight() {
+		return weight;
+	}
+	
+	/**
+	 * Returns how valuable calculated value is to keep on eviction: time of calculating it
+	 * per time it wasn't read, values which are cold or cheap to calculate again have less weight.
+	 * @param now current time of ticker.
+	 */
+	double getRetentionWeight(long now) {
+		return (loadTime + 1.0) / (Math.max(0L, now - accessedAt) + 1.0);
+	}
+	
+	/**
+	 * Puts future into timer wheel (if any), so it's checked for expiration at given time.
+	 * @param key for caching.
+	 * @param deadline time when future should be checked.
+	 */
+	void scheduleExpiration(K key, long deadline) {
+		if (timerWheel != null) {
+			timerNode = timerWheel.schedule(timerNode, key, deadline);
+		}
+	}
+	
+	/**
+	 * Removes future from timer wheel (if any), i.e. when it's removed from cache.
+	 */
+	void descheduleExpiration() {
+		if (timerWheel != null) {
+			timerWheel.deschedule(timerNode);
+		}
+	}
+	
+	/**
+	 * Sets handle of this future in sample of cache entries, it's used for removing future from the sample.
+	 */
+	void setSampleHandle(SampledEntries.Handle<K, SimpleFuture<K, V, E>> sampleHandle) {
+		this.sampleHandle = sampleHandle;
+	}
+	
+	SampledEntries.Handle<K, SimpleFuture<K, V, E>> getSampleHandle() {
+		return sampleHandle;
+	}
+	
+	/**
+	 * Calculates time till the next attempt to create a value, it's doubled after each consecutive failure.
+	 */
+	private void setFailedTime(K key) {
+		long now = ticker.read();
+		expiresAt = deadline(now, TimeUnit.MILLISECONDS.toNanos(errorTimeToLive(valueProvider, failures)));
+		refreshAt = Long.MAX_VALUE;
+		if (key != null) {
+			scheduleExpiration(key, expiresAt);
+		}
+	}
+	
+	/**
+	 * Returns error time to live in milliseconds after given number of consecutive failures.
+	 */
+	static long errorTimeToLive(ValueProvider<?, ?, ?> valueProvider, int failures) {
+		long maxTimeToLive = valueProvider.getMaxErrorTimeToLive();
+		long timeToLive = Math.max(0L, valueProvider.getErrorTimeToLive());
+		for (int i = 1; i < failures && timeToLive < maxTimeToLive; i++) {
+			timeToLive *= 2;
+		}
+		return Math.min(timeToLive, maxTimeToLive);
+	}
+	
+	/**
+	 * Returns time till which expired future should stay in cache, so the next calculation is done by it:
+	 * a failed future keeps count of consecutive failures (see {@link #errorTimeToLive}) and its stale value,
+	 * a value which is served on errors is kept as well. Both are kept for max error time to live after expiration.
+	 * @return time of {@link Ticker} in nanoseconds, Long.MIN_VALUE if future isn't kept after expiration.
+	 */
+	long getRetainedUntil() {
+		if (state == FAILED || isDone() && valueProvider.isServingStaleOnError()) {
+			return deadline(expiresAt, TimeUnit.MILLISECONDS.toNanos(valueProvider.getMaxErrorTimeToLive()));
+		}
+		return Long.MIN_VALUE;
+	}
+	
+	/**
+	 * Returns the last calculated value if it should be returned instead of an exception.
+	 */
+	private Reference<V> staleOnError() {
+		return valueProvider.isServingStaleOnError() ? value : null;
+	}
+	
+	/**
+	 * Returns current value without calculating it, i.e. null if value isn't calculated.
+	 */
+	V getNow() {
+		Reference<V> current = value;
+		return current == null ? null : current.getValue();
+	}
+	
 	void setException(final E exception) {
+		failures++;
+		setFailedTime(null);
 		this.exception = exception;
+		complete(FAILED);
 	}
 	
 	void setValue(V value) {
+		this.value = newReference(value);
+	}
+	
+	private Reference<V> newReference(V value) {
 		switch (valueProvider.getReferenceType()) {
 			case STRONG:
-				this.value = new StrongReference<>(value);
-				return;
+				return new StrongReference<>(value);
 			case WEAK:
-				this.value = new WeakReference<>(value);
-				return;
+				return new WeakReference<>(value);
 			default:
-				this.value = new SoftReference<>(value);
+				return new SoftReference<>(value);
+		}
+	}
+	
+	static class Waiter {
+		volatile Thread thread;
+		Waiter next;
+		
+		Waiter(Thread thread) {
+			this.thread = thread;
 		}
 	}
 	
@@ -155,6 +754,42 @@ public class SimpleFuture<K, V, E extends Exception> {
 		}
 	}
 	
+	static class SuppliedReference<T> implements Reference<T> {
+		private final Supplier<T> value;
+		
+		SuppliedReference(Supplier<T> value) {
+			this.value = value;
+		}
+		
+		@Override
+		public T getValue() {
+			return value.get();
+		}
+	}
+	
+	/**
+	 * Compressed value, which is put back into its future after the first decompression. Concurrent readers
+	 * may decompress it twice, the first one wins.
+	 */
+	static class CompressedReference<T> implements Reference<T> {
+		private final SimpleFuture<?, T, ?> owner;
+		private final Supplier<T> value;
+		
+		CompressedReference(SimpleFuture<?, T, ?> owner, Supplier<T> value) {
+			this.owner = owner;
+			this.value = value;
+		}
+		
+		@Override
+		public T getValue() {
+			T decompressed = value.get();
+			if (decompressed != null) {
+				VALUE.compareAndSet(owner, this, owner.newReference(decompressed));
+			}
+			return decompressed;
+		}
+	}
+	
 	static class WeakReference<T> implements Reference<T> {
 		private java.lang.ref.WeakReference<T> value;
 		
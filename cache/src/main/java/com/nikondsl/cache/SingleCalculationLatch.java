@@ -1,20 +1,36 @@
 package com.nikondsl.cache;
 
+import com.nikondsl.cache.codec.ValueCodec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.lang.ref.Reference;
-import java.lang.ref.SoftReference;
-import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleConsumer;
+import java.util.function.Supplier;
+import java.util.zip.Deflater;
 
+import static com.nikondsl.cache.Deadlines.deadline;
 import static com.nikondsl.cache.ErrorType.REMOVE;
 
 /**
- * com.nikondsl.Main class for providing cache features and latching.  Typical usage will be like below;
+ * Main class for providing cache features and latching.  Typical usage will be like below;
  *
  * CacheProvider cacheProvider = ...
  * ValueProvider valueProvider = ...
@@ -22,6 +38,10 @@ import static com.nikondsl.cache.ErrorType.REMOVE;
  * latch.setSleepBeforeDelete(5_000);
  * ...
  * latch.get(key);
+ * ...
+ * latch.setLoadExecutor(executor);
+ * latch.getAsync(key).thenAccept(...);
+ * latch.get(key, 100, TimeUnit.MILLISECONDS, () -> defaultValue);
  *
  * @param <K> class for specifying keys.
  * @param <V> class for specifying values.
@@ -29,105 +49,286 @@ import static com.nikondsl.cache.ErrorType.REMOVE;
  */
 @ApiReference(since ="1.0.0")
 public class SingleCalculationLatch<K, V, E extends Exception> {
-	private static final String INTERRUPTION_DETECTED_STOPPING_CACHE = "Interruption detected. Stopping cache '{}'...";
 	private static Logger LOG = LoggerFactory.getLogger(SingleCalculationLatch.class);
 	private static long DEFAULT_SLEEP_DELETE = 30_000L;
+	private static long FIRST_MAINTENANCE_DELAY = 1_000L;
+	private static final int EVICTION_SAMPLE = 16;
 	
 	private CacheProvider<K, SimpleFuture<K, V, E>> cache;
 	private ValueProvider<K, V, E> valueProvider;
 	private SimpleCacheStatistics<K, V, E> statistics;
 	private volatile CachingVeto<K, V> veto;
+	private final Ticker ticker;
+	private final TimerWheel<K> timerWheel;
+	private final SampledEntries<K, SimpleFuture<K, V, E>> entries = new SampledEntries<>();
+	private volatile Executor loadExecutor = SharedLoadExecutor.shared();
 	
+	private final MaintenanceScheduler scheduler;
+	private volatile ScheduledFuture<?> maintenance;
 	private volatile boolean stop = false;
 	private volatile long sleepBeforeDelete = DEFAULT_SLEEP_DELETE;
-	private final AtomicReference<Reference<Object>> flagOutOfMemory = new AtomicReference<>();
-	
-	private void setUpFlagOutOfMemory() {
-		if (valueProvider.getReferenceType() == ReferenceType.WEAK) {
-			flagOutOfMemory.set(new WeakReference<>(new Object()));
-		} else {
-			flagOutOfMemory.set(new SoftReference(new Object()));
-		}
-	}
+	private volatile MemoryPressureController memoryPressure;
+	private final DoubleConsumer memoryPressureListener = this::onMemoryPressure;
+	private volatile Weigher<K, V> weigher;
+	private volatile long maximumWeight = Long.MAX_VALUE;
+	private final AtomicLong totalWeight = new AtomicLong();
+	private final LongAdder size = new LongAdder();
+	private final AtomicBoolean weightEvictionScheduled = new AtomicBoolean();
+	private volatile ColdValueCompressor<K, V> compressor;
+	private long nextCompressionAt;
 	
-	private boolean isAboutOutOfMemory() {
-		if (valueProvider.getReferenceType() == ReferenceType.STRONG) {
-			return false;
+	/**
+	 * Maintenance work which is run by scheduler: removes expired elements and compresses idle ones.
+	 * It schedules itself again, so a new value of sleepBeforeDelete is used for the next run.
+	 */
+	void maintain() {
+		if (stop) {
+			return;
 		}
-		if (flagOutOfMemory.get().get() == null) {
-			setUpFlagOutOfMemory();
-			return true;
+		try {
+			removeAllExpired();
+			if (compressor != null && ticker.read() - nextCompressionAt >= 0) {
+				compressIdle();
+			}
+		} catch (RuntimeException ex) {
+			LOG.error("Maintenance of cache '{}' failed", cache.getName(), ex);
+		} finally {
+			scheduleMaintenance(sleepBeforeDelete);
 		}
-		return false;
 	}
 	
-	private Thread cleaner = new Thread(() -> {
-		try {
-			TimeUnit.SECONDS.sleep(1);
-		} catch (InterruptedException e) {
-			stop = true;
-			Thread.currentThread().interrupt();
-			LOG.info(INTERRUPTION_DETECTED_STOPPING_CACHE, cache.getName());
+	private void scheduleMaintenance(long delay) {
+		if (stop) {
 			return;
 		}
-		LOG.info("Cache '{}' cleaner thread has started", cache.getName());
-		while (!stop) {
-			LOG.info(String.valueOf(statistics));
-			try {
-				if (!isAboutOutOfMemory()) {
-					TimeUnit.MILLISECONDS.sleep(sleepBeforeDelete);
-				} else {
-					LOG.info("OutOfMemory warning event fired. Clearing cache '{}'...", cache.getName());
-					//clear all, except busy
-					cache.forEach(entry -> {
-						try {
-							if (entry.getValue().isDone()) {
-								removeElement(entry.getKey(), entry.getValue(), false);
-							}
-						} catch (Exception ex) {
-							LOG.error("Could not remove element '{}' from cache '{}'", entry.getKey(), cache.getName(), ex);
-							statistics.error((E) ex, entry.getKey(), REMOVE);
-						}
-					});
-					LOG.info("Cache '{}' is cleared.", cache.getName());
-					setUpFlagOutOfMemory();
-				}
-			} catch (InterruptedException e) {
-				stop = true;
-				Thread.currentThread().interrupt();
-				LOG.info(INTERRUPTION_DETECTED_STOPPING_CACHE, cache.getName());
-				break;
-			}
-			removeAllExpired();
+		maintenance = scheduler.schedule(this::maintain, delay, TimeUnit.MILLISECONDS);
+		if (stop) {
+			maintenance.cancel(false);
 		}
-		LOG.info("Cache '{}' cleaner thread has stopped", cache.getName());
-	});
+	}
 	
+	/**
+	 * Removes elements which expiration time has passed. Only keys which are due are visited (see {@link TimerWheel}),
+	 * so cost doesn't depend on cache size.
+	 */
 	void removeAllExpired() {
 		LOG.debug("Running clearing expired elements from cache: '{}'", cache.getName());
-		final AtomicInteger count = new AtomicInteger();
-		cache.forEach(entry -> {
+		long now = ticker.read();
+		List<K> due = timerWheel.advance(now);
+		Map<K, SimpleFuture<K, V, E>> values = cache.getAll(new HashSet<>(due));
+		for (K key : due) {
+			SimpleFuture<K, V, E> value = values.get(key);
+			if (value == null) {
+				continue;
+			}
 			try {
-				removeElement(entry.getKey(), entry.getValue(), true);
+				long retainedUntil = value.getRetainedUntil();
+				if (now <= retainedUntil) {
+					//failure count and stale value are kept, the next caller retries by the same future
+					value.scheduleExpiration(key, deadline(retainedUntil, 1L));
+					continue;
+				}
+				if (value.isAbandoned()) {
+					//e.g. the caller failed before calculation started, nothing is left to wait for or to serve
+					if (cache.remove(key, value)) {
+						removed(key, value);
+					}
+					continue;
+				}
+				if (!removeElement(key, value) && (!(value.isDone() || value.isFailed()) || value.isExpired())) {
+					//value is still being calculated or removing is vetoed, check it again later
+					value.scheduleExpiration(key, now + TimeUnit.MILLISECONDS.toNanos(sleepBeforeDelete));
+				}
 			} catch (Exception ex) {
-				LOG.error("Could not remove element '{}' from cache '{}'", entry.getKey(), cache.getName(), ex);
-				statistics.error((E) ex, entry.getKey(), REMOVE);
+				LOG.error("Could not remove element '{}' from cache '{}'", key, cache.getName(), ex);
+				statistics.error((E) ex, key, REMOVE);
 			}
-			count.incrementAndGet();
-		});
-		statistics.setTotalSize(count.get());
-		LOG.info(statistics.toString());
+		}
+		statistics.setTotalSize(size.sum());
+		//only counters are logged, full statistics with histograms is taken by snapshot()
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Cache '{}' ratio: {} %, {}/{}/{}/{}/{} (hit/miss/error/removed/total)",
+					cache.getName(), statistics.ratio(), statistics.getHits(), statistics.getMisses(),
+					statistics.getErrors(), statistics.getRemoves(), size.sum());
+		}
+	}
+	
+	/**
+	 * Compresses values which aren't read for idle time (see {@link #setCompression}). All elements are visited,
+	 * so maintenance does it at most twice per idle time.
+	 * @return number of compressed values.
+	 */
+	int compressIdle() {
+		ColdValueCompressor<K, V> currentCompressor = compressor;
+		if (currentCompressor == null) {
+			return 0;
+		}
+		long now = ticker.read();
+		nextCompressionAt = now + currentCompressor.getIdleNanos() / 2;
+		AtomicLong compressed = new AtomicLong();
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			cache.forEach(entry -> {
+				SimpleFuture<K, V, E> future = entry.getValue();
+				if (future.isIdle(now, currentCompressor.getIdleNanos()) &&
+						future.compress(value -> currentCompressor.compress(entry.getKey(), value, deflater))) {
+					compressed.incrementAndGet();
+				}
+			});
+		} finally {
+			deflater.end();
+		}
+		LOG.debug("{} idle elements are compressed in cache '{}'", compressed.get(), cache.getName());
+		return compressed.intValue();
+	}
+	
+	/**
+	 * Moves eviction from notification thread of memory pressure controller to maintenance scheduler.
+	 */
+	private void onMemoryPressure(double part) {
+		scheduler.schedule(() -> relieveMemoryPressure(part), 0L, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Evicts given part of calculated elements, ones which are the cheapest to keep out first: cold ones and ones
+	 * which are calculated quickly (see {@link SimpleFuture#getRetentionWeight}). Veto may keep an element.
+	 * Each element is chosen from a random sample, so cache isn't copied while memory is short.
+	 * @param part part of elements to evict, from 0 to 1.
+	 */
+	void relieveMemoryPressure(double part) {
+		if (stop) {
+			return;
+		}
+		int total = entries.size();
+		int toEvict = (int) Math.min(total, Math.ceil(total * part));
+		int evicted = 0;
+		for (int failures = 0; evicted < toEvict && failures < EVICTION_SAMPLE; ) {
+			K key = evictSampled(false);
+			if (key != null) {
+				statistics.memoryPressureEviction(key);
+				evicted++;
+				failures = 0;
+			} else {
+				failures++;
+			}
+		}
+		LOG.info("{} of {} elements are evicted from cache '{}' on memory pressure",
+				evicted, total, cache.getName());
 	}
 	
-	private void removeElement(K key, SimpleFuture<K, V, E> value, boolean checkVeto) throws E {
-		if (key == null || !value.isDone() || !value.isExpired()) {
+	/**
+	 * Evicts elements till their total weight isn't above maximum weight, ones which keep the least value
+	 * per unit of weight go first. Each element is chosen from a random sample, so cost is proportional
+	 * to number of evicted elements, not to cache size.
+	 */
+	void evictToMaximumWeight() {
+		weightEvictionScheduled.set(false);
+		if (stop || totalWeight.get() <= maximumWeight) {
 			return;
 		}
-		if (veto == null || checkVeto && veto.removeAllowed(key, value.get(key, veto, statistics))) {
-			cache.remove(key);
-			statistics.remove(key);
+		int evicted = 0;
+		for (int failures = 0; totalWeight.get() > maximumWeight && failures < EVICTION_SAMPLE; ) {
+			if (evictSampled(true) != null) {
+				evicted++;
+				failures = 0;
+			} else {
+				failures++;
+			}
+		}
+		LOG.debug("{} elements are evicted from cache '{}', total weight is {}",
+				evicted, cache.getName(), totalWeight.get());
+	}
+	
+	/**
+	 * Evicts the least valuable calculated element of a random sample (see {@link SampledEntries}).
+	 * @param perWeight whether value is divided by weight of element.
+	 * @return key of evicted element or null if none is evicted, i.e. all of them are being calculated or vetoed.
+	 */
+	private K evictSampled(boolean perWeight) {
+		long now = ticker.read();
+		SampledEntries.Handle<K, SimpleFuture<K, V, E>> victim = null;
+		double victimRetention = Double.POSITIVE_INFINITY;
+		for (SampledEntries.Handle<K, SimpleFuture<K, V, E>> candidate : entries.sample(EVICTION_SAMPLE)) {
+			SimpleFuture<K, V, E> future = candidate.value;
+			if (!(future.isDone() || future.isFailed())) {
+				continue;
+			}
+			double retention = future.getRetentionWeight(now);
+			if (perWeight) {
+				retention /= Math.max(1, future.getWeight());
+			}
+			if (victim == null || retention < victimRetention) {
+				victim = candidate;
+				victimRetention = retention;
+			}
+		}
+		return victim != null && evict(victim.key, victim.value) ? victim.key : null;
+	}
+	
+	private boolean evict(K key, SimpleFuture<K, V, E> future) {
+		CachingVeto<K, V> currentVeto = veto;
+		if (currentVeto != null && !currentVeto.removeAllowed(key, future.getNow())) {
+			return false;
+		}
+		if (!cache.remove(key, future)) {
+			return false;
+		}
+		removed(key, future);
+		return true;
+	}
+	
+	/**
+	 * Forgets element which is taken out of cache.
+	 */
+	private void removed(K key, SimpleFuture<K, V, E> future) {
+		future.descheduleExpiration();
+		entries.remove(future.getSampleHandle());
+		size.decrement();
+		addWeight(-future.swapWeight(0));
+		statistics.remove(key);
+	}
+	
+	/**
+	 * Weighs just calculated value (if weigher is set) and passes it to cache provider.
+	 */
+	private void loaded(K key, SimpleFuture<K, V, E> future) {
+		Weigher<K, V> currentWeigher = weigher;
+		if (currentWeigher != null) {
+			int weight = Math.max(0, currentWeigher.weigh(key, future.getNow()));
+			long total = addWeight(weight - future.swapWeight(weight));
+			if (cache.get(key) != future) {
+				//future is removed meanwhile, its weight shouldn't be counted
+				addWeight(-future.swapWeight(0));
+			} else if (total > maximumWeight && weightEvictionScheduled.compareAndSet(false, true)) {
+				scheduler.schedule(this::evictToMaximumWeight, 0L, TimeUnit.MILLISECONDS);
+			}
+		}
+		cache.loaded(key, future);
+	}
+	
+	private long addWeight(long delta) {
+		if (delta == 0) {
+			return totalWeight.get();
+		}
+		long total = totalWeight.addAndGet(delta);
+		statistics.setTotalWeight(total);
+		return total;
+	}
+	
+	private boolean removeElement(K key, SimpleFuture<K, V, E> value) {
+		if (key == null || !(value.isDone() || value.isFailed()) || !value.isExpired()) {
+			return false;
+		}
+		//current value is given to veto as is, asking future for it may calculate it again or rethrow an error
+		if (veto == null || veto.removeAllowed(key, value.getNow())) {
+			//another future of the same key is left as is, this one is forgotten only once
+			if (cache.remove(key, value)) {
+				removed(key, value);
+			}
 			LOG.trace("Element with key: '{}' is removed from cache: '{}'", key, cache.getName());
+			return true;
 		}
+		return false;
 	}
 	
 	@ApiReference(since ="1.0.0")
@@ -140,26 +341,55 @@ public class SingleCalculationLatch<K, V, E extends Exception> {
 	public SingleCalculationLatch(CacheProvider<K, SimpleFuture<K, V, E>> cache,
 								  ValueProvider<K, V, E> valueProvider,
 								  SimpleCacheStatistics<K, V, E> statistics) {
+		this(cache, valueProvider, statistics, MaintenanceScheduler.shared());
+	}
+	
+	/**
+	 * Creates latch which maintenance work is run by given scheduler.
+	 */
+	@ApiReference(since ="1.1.0")
+	public SingleCalculationLatch(CacheProvider<K, SimpleFuture<K, V, E>> cache,
+								  ValueProvider<K, V, E> valueProvider,
+								  SimpleCacheStatistics<K, V, E> statistics,
+								  MaintenanceScheduler scheduler) {
+		this(cache, valueProvider, statistics, scheduler, Ticker.system());
+	}
+	
+	/**
+	 * Creates latch which maintenance work is run by given scheduler and which values expire by given ticker,
+	 * i.e. {@link CoarseTicker} makes reading of cached values cheaper.
+	 */
+	@ApiReference(since ="1.1.0")
+	public SingleCalculationLatch(CacheProvider<K, SimpleFuture<K, V, E>> cache,
+								  ValueProvider<K, V, E> valueProvider,
+								  SimpleCacheStatistics<K, V, E> statistics,
+								  MaintenanceScheduler scheduler,
+								  Ticker ticker) {
 		Objects.requireNonNull(cache,"Cache should be provided");
 		Objects.requireNonNull(valueProvider,"ValueProvider should be provided");
 		Objects.requireNonNull(statistics,"Statistics should be provided");
+		Objects.requireNonNull(scheduler,"Scheduler should be provided");
+		Objects.requireNonNull(ticker,"Ticker should be provided");
 		this.cache = cache;
 		this.valueProvider = valueProvider;
-		setUpFlagOutOfMemory();
-		cleaner.setName("Cleaner thread for cache: '" + cache.getName() +"'");
-		cleaner.start();
 		this.statistics = statistics;
+		this.scheduler = scheduler;
+		this.ticker = ticker;
+		this.timerWheel = new TimerWheel<>(ticker.read());
+		this.nextCompressionAt = ticker.read();
+		cache.setEvictionListener(this::removed);
+		setMemoryPressureController(MemoryPressureController.shared());
+		scheduleMaintenance(FIRST_MAINTENANCE_DELAY);
+		LOG.info("Cache '{}' maintenance is scheduled", cache.getName());
 	}
 	
 	@ApiReference(since ="1.0.0")
 	public V get(K key) throws E {
-		SimpleFuture<K, V, E> newFuture = new SimpleFuture<> (valueProvider);
-		SimpleFuture<K, V, E> future = cache.putIfAbsent(key, newFuture);
+		SimpleFuture<K, V, E> future = cache.get(key);
 		if (future == null) {
-			LOG.trace("New cache item is being created and put into cache: {} with key: {}", cache.getName(), key);
-			future = newFuture;
+			future = putNewFuture(key);
 		}
-		V result = future.get(key, veto, statistics);
+		V result = future.get(key, veto, statistics, loadExecutor);
 		if (veto != null && !veto.putInCasheAllowed(key, result)) {
 			LOG.debug("Adding '{}' into cache '{}' vetoed.", key, cache.getName());
 			future.setValue(null);
@@ -167,10 +397,234 @@ public class SingleCalculationLatch<K, V, E extends Exception> {
 		return result;
 	}
 	
+	/**
+	 * Returns values for all given keys. Keys which are in cache are returned as is, keys which are being
+	 * calculated by other threads are waited for, and all other keys are calculated at once
+	 * if value provider is {@link BulkValueProvider}, or one by one otherwise.
+	 * @param keys keys for caching.
+	 * @return values by keys in the same order as keys are iterated.
+	 * @throws E if any value cannot be calculated.
+	 */
+	@ApiReference(since ="1.1.0")
+	public Map<K, V> getAll(Collection<K> keys) throws E {
+		Set<K> uniqueKeys = new LinkedHashSet<>();
+		for (K key : keys) {
+			if (key == null) {
+				throw new IllegalArgumentException("Key is required, nulls are not supported.");
+			}
+			uniqueKeys.add(key);
+		}
+		//all keys are looked up at once, since it's one call for providers which support bulk operations
+		Map<K, SimpleFuture<K, V, E>> cached = cache.getAll(uniqueKeys);
+		Map<K, SimpleFuture<K, V, E>> futures = new LinkedHashMap<>();
+		Map<K, SimpleFuture<K, V, E>> toLoad = new LinkedHashMap<>();
+		for (K key : uniqueKeys) {
+			SimpleFuture<K, V, E> future = cached.get(key);
+			if (future == null) {
+				future = putNewFuture(key);
+			}
+			futures.put(key, future);
+			if (future.startLoading(key, veto)) {
+				toLoad.put(key, future);
+			}
+		}
+		Map<K, V> loaded = toLoad.isEmpty() ? Collections.emptyMap() : loadAll(toLoad);
+		Map<K, V> result = new LinkedHashMap<>();
+		for (Map.Entry<K, SimpleFuture<K, V, E>> entry : futures.entrySet()) {
+			K key = entry.getKey();
+			SimpleFuture<K, V, E> future = entry.getValue();
+			V value = toLoad.containsKey(key) ? loaded.get(key) : future.get(key, veto, statistics, loadExecutor);
+			if (veto != null && !veto.putInCasheAllowed(key, value)) {
+				LOG.debug("Adding '{}' into cache '{}' vetoed.", key, cache.getName());
+				future.setValue(null);
+			}
+			result.put(key, value);
+		}
+		return result;
+	}
+	
+	/**
+	 * Calculates values for futures which are in LOADING state and owned by current thread.
+	 */
+	private Map<K, V> loadAll(Map<K, SimpleFuture<K, V, E>> toLoad) throws E {
+		LOG.trace("{} new cache items are being created for cache: {}", toLoad.size(), cache.getName());
+		Map<K, V> loaded = new LinkedHashMap<>();
+		K current = null;
+		long started = System.nanoTime();
+		try {
+			if (valueProvider instanceof BulkValueProvider) {
+				Map<K, V> created = ((BulkValueProvider<K, V, E>) valueProvider)
+						.createValues(Collections.unmodifiableSet(toLoad.keySet()));
+				long loadTime = System.nanoTime() - started;
+				for (Map.Entry<K, SimpleFuture<K, V, E>> entry : toLoad.entrySet()) {
+					V value = created == null ? null : created.get(entry.getKey());
+					entry.getValue().recordLoadTime(entry.getKey(), loadTime, statistics);
+					entry.getValue().loaded(entry.getKey(), value, statistics);
+					loaded.put(entry.getKey(), value);
+				}
+			} else {
+				for (Map.Entry<K, SimpleFuture<K, V, E>> entry : toLoad.entrySet()) {
+					current = entry.getKey();
+					started = System.nanoTime();
+					V value = valueProvider.createValue(current);
+					entry.getValue().recordLoadTime(current, System.nanoTime() - started, statistics);
+					entry.getValue().loaded(current, value, statistics);
+					loaded.put(current, value);
+				}
+			}
+			return loaded;
+		} catch (Exception ex) {
+			long loadTime = System.nanoTime() - started;
+			for (Map.Entry<K, SimpleFuture<K, V, E>> entry : toLoad.entrySet()) {
+				if (current == null || current.equals(entry.getKey())) {
+					entry.getValue().recordLoadTime(entry.getKey(), loadTime, statistics);
+					entry.getValue().failed(entry.getKey(), (E) ex, statistics);
+				}
+			}
+			throw ex;
+		} finally {
+			toLoad.values().forEach(SimpleFuture::abandon);
+		}
+	}
+	
+	/**
+	 * Returns value without blocking a caller. Value is calculated in load executor, all callers which come
+	 * for the same key while it's being calculated share the same future.
+	 * @param key key for caching.
+	 * @return future which is already completed if value is in cache.
+	 */
+	@ApiReference(since ="1.1.0")
+	public CompletableFuture<V> getAsync(K key) {
+		SimpleFuture<K, V, E> future = cache.get(key);
+		if (future == null) {
+			future = putNewFuture(key);
+		}
+		return getAsync(key, future);
+	}
+	
+	/**
+	 * Returns value, waiting for it at most given time. If value isn't calculated in time, the last calculated
+	 * value is returned if there is one (e.g. expired one which is being calculated again), otherwise
+	 * {@link TimeoutException} is thrown. Calculation isn't cancelled, so later callers get its value.
+	 * NOTE: value is calculated in load executor (see {@link #setLoadExecutor(Executor)}), interruption of
+	 * waiting is handled as a timeout, interrupted status is kept.
+	 * @param key key for caching.
+	 * @param timeout maximum time of waiting.
+	 * @param unit unit of timeout.
+	 * @return value in cache, a new value or the last calculated value.
+	 * @throws E if value cannot be calculated.
+	 * @throws TimeoutException if value isn't calculated in time and there is no previous value.
+	 */
+	@ApiReference(since ="1.1.0")
+	public V get(K key, long timeout, TimeUnit unit) throws E, TimeoutException {
+		if (key == null) {
+			throw new IllegalArgumentException("Key is required, nulls are not supported.");
+		}
+		SimpleFuture<K, V, E> future = cache.get(key);
+		if (future == null) {
+			future = putNewFuture(key);
+		}
+		CompletableFuture<V> result = getAsync(key, future);
+		try {
+			return result.get(timeout, unit);
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw (E) cause;
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			return stale(key, future, new TimeoutException("Waiting for '" + key + "' is interrupted"));
+		} catch (TimeoutException ex) {
+			return stale(key, future, ex);
+		}
+	}
+	
+	/**
+	 * Returns value like {@link #get(Object, long, TimeUnit)}, but instead of throwing {@link TimeoutException}
+	 * it returns a value of given fallback, which isn't cached.
+	 * @param key key for caching.
+	 * @param timeout maximum time of waiting.
+	 * @param unit unit of timeout.
+	 * @param fallback supplier of a value if there is no value in time.
+	 * @return value in cache, a new value, the last calculated value or value of fallback.
+	 * @throws E if value cannot be calculated.
+	 */
+	@ApiReference(since ="1.1.0")
+	public V get(K key, long timeout, TimeUnit unit, Supplier<? extends V> fallback) throws E {
+		if (fallback == null) {
+			throw new IllegalArgumentException("Fallback cannot be null");
+		}
+		try {
+			return get(key, timeout, unit);
+		} catch (TimeoutException ex) {
+			LOG.debug("Value for '{}' isn't calculated in {} {}, fallback is used", key, timeout, unit);
+			return fallback.get();
+		}
+	}
+	
+	private V stale(K key, SimpleFuture<K, V, E> future, TimeoutException ex) throws TimeoutException {
+		V previous = future.getNow();
+		if (previous == null) {
+			throw ex;
+		}
+		statistics.staleOnTimeout(key);
+		return previous;
+	}
+	
+	private CompletableFuture<V> getAsync(K key, SimpleFuture<K, V, E> future) {
+		CompletableFuture<V> result = future.getAsync(key, veto, statistics, loadExecutor);
+		CachingVeto<K, V> currentVeto = veto;
+		if (currentVeto == null) {
+			return result;
+		}
+		SimpleFuture<K, V, E> calculated = future;
+		return result.thenApply(value -> {
+			if (!currentVeto.putInCasheAllowed(key, value)) {
+				LOG.debug("Adding '{}' into cache '{}' vetoed.", key, cache.getName());
+				calculated.setValue(null);
+			}
+			return value;
+		});
+	}
+	
+	/**
+	 * Creates a new future for a key which is not in cache yet. Allocation happens only here,
+	 * so hits which find a future in cache do not create any garbage.
+	 * @param key key for caching.
+	 * @return future which is stored in cache for given key.
+	 */
+	private SimpleFuture<K, V, E> putNewFuture(K key) {
+		SimpleFuture<K, V, E> newFuture = new SimpleFuture<> (valueProvider, timerWheel, ticker, this::loaded);
+		//each future is checked by maintenance, even if its calculation never starts; it's scheduled before it's
+		//published, so expiration scheduled by calculation isn't overwritten
+		newFuture.scheduleExpiration(key, deadline(ticker.read(),
+				TimeUnit.MILLISECONDS.toNanos(sleepBeforeDelete)));
+		newFuture.setSampleHandle(entries.add(key, newFuture));
+		SimpleFuture<K, V, E> future = cache.putIfAbsent(key, newFuture);
+		if (future != null) {
+			newFuture.descheduleExpiration();
+			entries.remove(newFuture.getSampleHandle());
+		} else {
+			size.increment();
+			LOG.trace("New cache item is being created and put into cache: {} with key: {}", cache.getName(), key);
+			future = newFuture;
+		}
+		return future;
+	}
+	
 	@ApiReference(since ="1.0.0")
 	public void stop() {
 		this.stop = true;
-		cleaner.interrupt();
+		memoryPressure.removeListener(memoryPressureListener);
+		ScheduledFuture<?> current = maintenance;
+		if (current != null) {
+			current.cancel(false);
+		}
 		LOG.info("Final cache '{}' ratio: {} %, {}/{}/{}/{} (hit/miss/error/removed)",
 				cache.getName(),
 				statistics.ratio(),
@@ -187,6 +641,101 @@ public class SingleCalculationLatch<K, V, E extends Exception> {
 		this.veto = veto;
 	}
 	
+	/**
+	 * Sets executor which calculates values requested by {@link #getAsync(Object)} and refreshes values in background
+	 * (see {@link ValueProvider#getTimeToRefresh()}). By default a pool of daemon threads is shared by all latches,
+	 * one thread per CPU but at least two or as set by "com.nikondsl.cache.load.threads" system property. A cache which
+	 * needs isolation from slow value providers of other caches should be given its own executor.
+	 * Given executor isn't shut down by latch.
+	 * @param loadExecutor executor for calculations.
+	 */
+	@ApiReference(since ="1.1.0")
+	public void setLoadExecutor(final Executor loadExecutor) {
+		if (loadExecutor == null) {
+			throw new IllegalArgumentException("Load executor cannot be null");
+		}
+		LOG.debug("Load executor {} is set for cache '{}'", loadExecutor, cache.getName());
+		this.loadExecutor = loadExecutor;
+	}
+	
+	/**
+	 * Sets controller which tells which part of elements should be evicted on memory pressure,
+	 * {@link MemoryPressureController#shared()} is used by default.
+	 * @param memoryPressure controller of memory pressure.
+	 */
+	@ApiReference(since ="1.1.0")
+	public synchronized void setMemoryPressureController(final MemoryPressureController memoryPressure) {
+		if (memoryPressure == null) {
+			throw new IllegalArgumentException("Memory pressure controller cannot be null");
+		}
+		if (this.memoryPressure != null) {
+			this.memoryPressure.removeListener(memoryPressureListener);
+		}
+		this.memoryPressure = memoryPressure;
+		if (!stop) {
+			memoryPressure.addListener(memoryPressureListener);
+		}
+	}
+	
+	/**
+	 * Sets weigher of calculated values, so total weight of cache is tracked (see {@link #setMaximumWeight(long)}).
+	 * Values which are calculated before weigher is set weigh nothing.
+	 * @param weigher weigher of values.
+	 */
+	@ApiReference(since ="1.1.0")
+	public void setWeigher(final Weigher<K, V> weigher) {
+		if (weigher == null) {
+			throw new IllegalArgumentException("Weigher cannot be null");
+		}
+		this.weigher = weigher;
+	}
+	
+	/**
+	 * Sets maximum total weight of calculated values, when it's exceeded elements which keep the least value
+	 * per unit of weight (cold, cheap to calculate and heavy ones) are evicted in background.
+	 * NOTE: weigher should be set as well, total weight may exceed maximum for a short time.
+	 * @param maximumWeight maximum total weight.
+	 */
+	@ApiReference(since ="1.1.0")
+	public void setMaximumWeight(final long maximumWeight) {
+		if (maximumWeight < 0) {
+			throw new IllegalArgumentException("Maximum weight cannot be negative");
+		}
+		this.maximumWeight = maximumWeight;
+		if (totalWeight.get() > maximumWeight && weightEvictionScheduled.compareAndSet(false, true)) {
+			scheduler.schedule(this::evictToMaximumWeight, 0L, TimeUnit.MILLISECONDS);
+		}
+	}
+	
+	/**
+	 * Returns total weight of calculated values in cache (see {@link #setWeigher(Weigher)}).
+	 */
+	@ApiReference(since ="1.1.0")
+	public long getTotalWeight() {
+		return totalWeight.get();
+	}
+	
+	/**
+	 * Enables compression of values which aren't read for given time: maintenance encodes them by codec and deflates,
+	 * the next read decompresses them transparently. It pays off for big values which are read rarely,
+	 * see compression ratio and decompression time in {@link SimpleCacheStatistics}.
+	 * NOTE: idle values are found by maintenance, so they are compressed not earlier than in sleepBeforeDelete.
+	 * @param codec codec of values, or null for disabling compression.
+	 * @param idleTime time without reads after which value is compressed.
+	 * @param unit unit of idle time.
+	 */
+	@ApiReference(since ="1.1.0")
+	public void setCompression(final ValueCodec<V> codec, final long idleTime, final TimeUnit unit) {
+		if (codec == null) {
+			this.compressor = null;
+			return;
+		}
+		if (idleTime <= 0) {
+			throw new IllegalArgumentException("Idle time should be positive");
+		}
+		this.compressor = new ColdValueCompressor<>(codec, unit.toNanos(idleTime), statistics);
+	}
+	
 	@ApiReference(since ="1.0.0")
 	public void setSleepBeforeDelete(final long sleepBeforeDelete) {
 		if (sleepBeforeDelete <= 0) {
@@ -0,0 +1,34 @@
+package com.nikondsl.cache;
+
+/**
+ * Source of time for expiration and refreshing of values. Only differences between readings are meaningful,
+ * so it's not related to wall clock time.
+ */
+@ApiReference(since ="1.1.0")
+@FunctionalInterface
+public interface Ticker {
+	/**
+	 * Returns current time.
+	 * @return nanoseconds since some fixed but arbitrary moment.
+	 */
+	@ApiReference(since ="1.1.0")
+	long read();
+	
+	/**
+	 * Returns ticker on top of {@link System#nanoTime()}, which is used by default.
+	 * @return high resolution ticker.
+	 */
+	@ApiReference(since ="1.1.0")
+	static Ticker system() {
+		return SystemTicker.INSTANCE;
+	}
+	
+	enum SystemTicker implements Ticker {
+		INSTANCE;
+		
+		@Override
+		public long read() {
+			return System.nanoTime();
+		}
+	}
+}
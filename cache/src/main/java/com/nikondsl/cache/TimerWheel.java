@@ -0,0 +1,175 @@
+package com.nikondsl.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel which keeps keys by expiration time, so expired keys are found without
+ * scanning the whole cache. Time is in nanoseconds of a {@link Ticker} and it's split into buckets with growing
+ * spans (67 ms, 4.3 s, 4.6 min, 4.9 h, 3.3 days),
+ * each advance visits only buckets which time has passed and moves not yet expired keys down to finer buckets.
+ * Cost of an advance is proportional to number of expired keys, not to cache size.
+ * NOTE: all methods are synchronized, wheel is updated only when a value is created and by cleaner.
+ * @param <K> class for keys.
+ */
+class TimerWheel<K> {
+	private static final int[] BUCKETS = {64, 64, 64, 16, 1};
+	private static final long[] SPANS = {
+			1L << 26, // 67 ms
+			1L << 32, // 4.3 s
+			1L << 38, // 4.6 min
+			1L << 44, // 4.9 h
+			1L << 48, // 3.3 days
+			1L << 48
+	};
+	private static final long[] SHIFT = {26, 32, 38, 44, 48};
+	
+	private final Node<K>[][] wheel;
+	private long time;
+	private int size;
+	
+	TimerWheel(long currentTime) {
+		wheel = new Node[BUCKETS.length][];
+		for (int i = 0; i < wheel.length; i++) {
+			wheel[i] = new Node[BUCKETS[i]];
+			for (int j = 0; j < wheel[i].length; j++) {
+				wheel[i][j] = new Sentinel<>();
+			}
+		}
+		time = currentTime;
+	}
+	
+	/**
+	 * Schedules key for expiration, node is reused if key was scheduled before.
+	 * @param node which was returned previously or null.
+	 * @param key for scheduling.
+	 * @param deadline time of expiration, Long.MAX_VALUE means that key never expires.
+	 * @return node which should be passed on the next scheduling of the same entry.
+	 */
+	synchronized Node<K> schedule(Node<K> node, K key, long deadline) {
+		if (node == null) {
+			node = new Node<>(key);
+		} else {
+			unlink(node);
+		}
+		if (deadline != Long.MAX_VALUE) {
+			node.deadline = deadline;
+			link(findBucket(deadline), node);
+		}
+		return node;
+	}
+	
+	/**
+	 * Removes node from the wheel, i.e. entry is removed from cache.
+	 */
+	synchronized void deschedule(Node<K> node) {
+		if (node != null) {
+			unlink(node);
+		}
+	}
+	
+	/**
+	 * Moves wheel to the given time.
+	 * @param currentTime current time.
+	 * @return keys which deadlines have passed.
+	 */
+	synchronized List<K> advance(long currentTime) {
+		List<K> expired = new ArrayList<>();
+		long previousTime = time;
+		time = currentTime;
+		for (int i = 0; i < SHIFT.length; i++) {
+			long previousTicks = previousTime >> SHIFT[i];
+			long currentTicks = currentTime >> SHIFT[i];
+			if (currentTicks - previousTicks <= 0L) {
+				break;
+			}
+			expire(i, previousTicks, currentTicks, expired);
+		}
+		return expired;
+	}
+	
+	private void expire(int index, long previousTicks, long currentTicks, List<K> expired) {
+		Node<K>[] timerWheel = wheel[index];
+		int mask = timerWheel.length - 1;
+		int steps = (int) Math.min(1 + currentTicks - previousTicks, timerWheel.length);
+		int start = (int) (previousTicks & mask);
+		int end = start + steps;
+		for (int i = start; i < end; i++) {
+			Node<K> sentinel = timerWheel[i & mask];
+			Node<K> node = sentinel.next;
+			sentinel.prev = sentinel;
+			sentinel.next = sentinel;
+			while (node != sentinel) {
+				Node<K> next = node.next;
+				node.prev = null;
+				node.next = null;
+				size--;
+				if (node.deadline - time > 0L) {
+					link(findBucket(node.deadline), node);
+				} else {
+					expired.add(node.key);
+				}
+				node = next;
+			}
+		}
+	}
+	
+	private Node<K> findBucket(long deadline) {
+		long duration = deadline - time;
+		int last = wheel.length - 1;
+		for (int i = 0; i < last; i++) {
+			if (duration < SPANS[i + 1]) {
+				//already expired keys go into the current bucket, so they are found on the next advance
+				long ticks = Math.max(deadline, time) >> SHIFT[i];
+				int index = (int) (ticks & (wheel[i].length - 1));
+				return wheel[i][index];
+			}
+		}
+		return wheel[last][0];
+	}
+	
+	private void link(Node<K> sentinel, Node<K> node) {
+		node.prev = sentinel.prev;
+		node.next = sentinel;
+		sentinel.prev.next = node;
+		sentinel.prev = node;
+		size++;
+	}
+	
+	private void unlink(Node<K> node) {
+		if (node.next == null) {
+			return;
+		}
+		node.next.prev = node.prev;
+		node.prev.next = node.next;
+		node.next = null;
+		node.prev = null;
+		size--;
+	}
+	
+	/**
+	 * Returns number of scheduled keys.
+	 */
+	synchronized int size() {
+		return size;
+	}
+	
+	static class Node<K> {
+		final K key;
+		long deadline;
+		Node<K> prev;
+		Node<K> next;
+		
+		Node(K key) {
+			this.key = key;
+		}
+	}
+	
+	static class Sentinel<K> extends Node<K> {
+		Sentinel() {
+			super(null);
+			prev = this;
+			next = this;
+		}
+	}
+}
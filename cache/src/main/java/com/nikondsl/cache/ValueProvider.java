@@ -28,6 +28,56 @@ public interface ValueProvider<K, V, E extends Throwable> {
 		return TimeUnit.SECONDS.toMillis(1L);
 	}
 	
+	/**
+	 * TimeToLive for a particular created element, e.g. when value carries its own freshness. It's called once,
+	 * when value is created, so it doesn't add any cost to cache hits.
+	 * @param key of created element.
+	 * @param value created element.
+	 * @return milliseconds till element in cache is not expired, {@link #getTimeToLive()} by default.
+	 */
+	@ApiReference(since ="1.1.0")
+	default long expireAfterCreate(K key, V value) {
+		return getTimeToLive();
+	}
+	
+	/**
+	 * Time after which value is refreshed in background, while it's being refreshed callers get the current value.
+	 * Callers have to wait for a new value only after {@link #getTimeToLive()}. Refreshing is disabled by default.
+	 * @return milliseconds after creation when value should be refreshed, 0 or not less than time to live disables it.
+	 */
+	@ApiReference(since ="1.1.0")
+	default long getTimeToRefresh() {
+		return 0L;
+	}
+	
+	/**
+	 * Time for which an exception of {@link #createValue} is kept, so a failing backend isn't asked by every caller.
+	 * It's doubled after each consecutive failure of the same key, up to {@link #getMaxErrorTimeToLive()}.
+	 * @return milliseconds till the next attempt, time to live but not more than a second by default.
+	 */
+	@ApiReference(since ="1.1.0")
+	default long getErrorTimeToLive() {
+		return Math.min(getTimeToLive(), TimeUnit.SECONDS.toMillis(1L));
+	}
+	
+	/**
+	 * Limit for growing of error time to live after consecutive failures.
+	 * @return milliseconds, time to live but not more than a minute by default.
+	 */
+	@ApiReference(since ="1.1.0")
+	default long getMaxErrorTimeToLive() {
+		return Math.max(getErrorTimeToLive(), Math.min(getTimeToLive(), TimeUnit.MINUTES.toMillis(1L)));
+	}
+	
+	/**
+	 * Whether the last calculated value is returned instead of an exception while error time to live isn't over.
+	 * Callers get an exception only if there is no value yet. Disabled by default.
+	 */
+	@ApiReference(since ="1.1.0")
+	default boolean isServingStaleOnError() {
+		return false;
+	}
+	
 	@ApiReference(since ="1.0.0")
 	default ReferenceType getReferenceType() {
 		return ReferenceType.STRONG;
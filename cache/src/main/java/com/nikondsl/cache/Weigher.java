@@ -0,0 +1,35 @@
+package com.nikondsl.cache;
+
+/**
+ * Calculates weight of a cached value, e.g. its approximate size in bytes, so capacity of a cache is limited
+ * by total weight instead of number of elements (see {@link SingleCalculationLatch#setMaximumWeight(long)}).
+ * Weight is calculated once, when value is calculated or refreshed.
+ * @param <K> class for keys.
+ * @param <V> class for values.
+ */
+@ApiReference(since ="1.1.0")
+@FunctionalInterface
+public interface Weigher<K, V> {
+	/**
+	 * Returns weight of a value.
+	 * @param key key of value.
+	 * @param value calculated value, may be null.
+	 * @return weight, not negative.
+	 */
+	@ApiReference(since ="1.1.0")
+	int weigh(K key, V value);
+	
+	/**
+	 * Returns weigher of futures for cache providers, which weighs calculated values by given weigher.
+	 * A future without a value weighs nothing.
+	 * @param weigher weigher of values.
+	 * @return weigher of futures.
+	 */
+	@ApiReference(since ="1.1.0")
+	static <K, V, E extends Exception> Weigher<K, SimpleFuture<K, V, E>> ofFutures(Weigher<K, V> weigher) {
+		if (weigher == null) {
+			throw new IllegalArgumentException("Weigher cannot be null");
+		}
+		return (key, future) -> future.isDone() ? weigher.weigh(key, future.getNow()) : 0;
+	}
+}
@@ -0,0 +1,474 @@
+package com.nikondsl.cache.adapter;
+
+import com.nikondsl.cache.ApiReference;
+import com.nikondsl.cache.CacheProvider;
+import com.nikondsl.cache.SimpleFuture;
+import com.nikondsl.cache.Weigher;
+import org.ehcache.Cache;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Cache provider on top of ConcurrentHashMap, which keeps at most given number of elements. Eviction policy is
+ * W-TinyLFU: new elements come into a small LRU window, elements evicted from window compete with the least
+ * recently used elements of the main segmented LRU, and one which was used more often (by {@link FrequencySketch})
+ * stays. So a burst of one-time keys doesn't wash out frequently used ones.
+ * Futures of {@link com.nikondsl.cache.SingleCalculationLatch} which are not calculated yet are never evicted,
+ * otherwise a caller waiting for a calculation would start it again.
+ * Reads are a map lookup plus a record in a lossy striped buffer, policy is updated under a lock by whichever
+ * thread manages to take it, i.e. readers never wait for each other.
+ * Capacity may be given as maximum total weight instead of number of elements (see {@link Weigher}), then
+ * all limits above are in units of weight and an element is weighed again when its value is calculated.
+ * NOTE: number of elements may exceed maximum for a short time, till pending writes are applied.
+ * @param <K> class for keys.
+ * @param <V> class for values.
+ */
+@ApiReference(since ="1.1.0")
+public class BoundedConcurrentMapProviderAdapter<K, V> implements CacheProvider<K, V> {
+	private static final int NONE = -1;
+	private static final int WINDOW = 0;
+	private static final int PROBATION = 1;
+	private static final int PROTECTED = 2;
+	private static final int READ_BUFFER_SIZE = 16;
+	private static final int MAX_WEIGHTED_SKETCH = 1 << 20;
+	private static final int READ_BUFFERS =
+			Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 4 - 1) << 1;
+	
+	private final String cacheName;
+	private final long maximum;
+	private final Weigher<K, V> weigher;
+	private final long windowMaximum;
+	private final long protectedMaximum;
+	private final ConcurrentHashMap<K, Node<K, V>> data = new ConcurrentHashMap<>();
+	private final ReentrantLock evictionLock = new ReentrantLock();
+	private final Queue<Runnable> writeBuffer = new ConcurrentLinkedQueue<>();
+	private final ReadBuffer<K, V>[] readBuffers = new ReadBuffer[READ_BUFFERS];
+	private final FrequencySketch sketch;
+	private final AccessOrder<K, V>[] queues =
+			new AccessOrder[] {new AccessOrder<>(WINDOW), new AccessOrder<>(PROBATION), new AccessOrder<>(PROTECTED)};
+	private volatile BiConsumer<K, V> evictionListener = (key, value) -> {};
+	
+	/**
+	 * Creates cache provider which keeps at most given number of elements.
+	 * @param cacheName name of cache.
+	 * @param maximumSize maximum number of elements.
+	 */
+	@ApiReference(since ="1.1.0")
+	public BoundedConcurrentMapProviderAdapter(String cacheName, long maximumSize) {
+		this(cacheName, maximumSize, null);
+	}
+	
+	/**
+	 * Creates cache provider which keeps elements of at most given total weight. For a cache of futures
+	 * use {@link Weigher#ofFutures(Weigher)}, so futures are weighed by their calculated values.
+	 * @param cacheName name of cache.
+	 * @param maximumWeight maximum total weight of elements.
+	 * @param weigher weigher of elements, null means that each element weighs 1.
+	 */
+	@ApiReference(since ="1.1.0")
+	public BoundedConcurrentMapProviderAdapter(String cacheName, long maximumWeight, Weigher<K, V> weigher) {
+		if (maximumWeight <= 0) {
+			throw new IllegalArgumentException("Maximum size should be positive");
+		}
+		this.cacheName = cacheName;
+		this.maximum = maximumWeight;
+		this.weigher = weigher;
+		windowMaximum = Math.max(1L, maximumWeight / 100);
+		protectedMaximum = (maximumWeight - windowMaximum) * 8 / 10;
+		//number of elements is unknown for weighted capacity, so sketch is limited
+		long sketchSize = weigher == null ? maximumWeight : Math.min(maximumWeight, MAX_WEIGHTED_SKETCH);
+		sketch = new FrequencySketch((int) Math.min(sketchSize, Integer.MAX_VALUE));
+		for (int i = 0; i < readBuffers.length; i++) {
+			readBuffers[i] = new ReadBuffer<>();
+		}
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public String getName() {
+		return cacheName;
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public V get(K key) {
+		Node<K, V> node = data.get(key);
+		if (node == null) {
+			return null;
+		}
+		ReadBuffer<K, V> buffer = readBuffers[(int) Thread.currentThread().getId() & (readBuffers.length - 1)];
+		if (!buffer.offer(node)) {
+			tryDrain();
+		}
+		return node.value;
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public V putIfAbsent(K key, V value) {
+		Node<K, V> node = new Node<>(key, value, weigh(key, value));
+		Node<K, V> previous = data.putIfAbsent(key, node);
+		if (previous != null) {
+			return previous.value;
+		}
+		afterWrite(() -> onAdd(node));
+		return null;
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public V remove(K key) {
+		Node<K, V> node = data.remove(key);
+		if (node == null) {
+			return null;
+		}
+		node.removed = true;
+		afterWrite(() -> onRemove(node));
+		return node.value;
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public boolean remove(K key, V value) {
+		Node<K, V> node = data.get(key);
+		if (node == null || node.value != value || !data.remove(key, node)) {
+			return false;
+		}
+		node.removed = true;
+		afterWrite(() -> onRemove(node));
+		return true;
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public void forEach(Consumer<Cache.Entry<K, V>> consumer) {
+		data.forEach((key, node) -> consumer.accept(new ConcurrentMapProviderAdapter.MapEntry<>(key, node.value)));
+	}
+	
+	/**
+	 * Weighs element again, when its value is calculated.
+	 */
+	@Override
+	@ApiReference(since ="1.1.0")
+	public void loaded(K key, V value) {
+		if (weigher == null) {
+			return;
+		}
+		Node<K, V> node = data.get(key);
+		if (node != null && node.value == value) {
+			int weight = weigh(key, value);
+			afterWrite(() -> onUpdate(node, weight));
+		}
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public void setEvictionListener(BiConsumer<K, V> listener) {
+		if (listener == null) {
+			throw new IllegalArgumentException("Listener cannot be null");
+		}
+		evictionListener = listener;
+	}
+	
+	/**
+	 * Returns number of elements, including ones which are not evicted yet.
+	 */
+	@ApiReference(since ="1.1.0")
+	public long size() {
+		return data.mappingCount();
+	}
+	
+	/**
+	 * Returns total weight of elements, i.e. number of elements if weigher isn't set.
+	 * Pending writes are applied first.
+	 */
+	@ApiReference(since ="1.1.0")
+	public long getTotalWeight() {
+		evictionLock.lock();
+		try {
+			drain();
+			return queues[WINDOW].weight + queues[PROBATION].weight + queues[PROTECTED].weight;
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+	
+	/**
+	 * Applies all pending reads and writes to eviction policy and evicts elements above maximum.
+	 */
+	@ApiReference(since ="1.1.0")
+	public void cleanUp() {
+		evictionLock.lock();
+		try {
+			drain();
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+	
+	private int weigh(K key, V value) {
+		if (weigher == null) {
+			return 1;
+		}
+		int weight = weigher.weigh(key, value);
+		if (weight < 0) {
+			throw new IllegalArgumentException("Weight cannot be negative");
+		}
+		return weight;
+	}
+	
+	private void afterWrite(Runnable task) {
+		writeBuffer.add(task);
+		tryDrain();
+	}
+	
+	/**
+	 * Applies pending work if lock is free. If it's taken, the owner checks write buffer again after unlocking,
+	 * so no write is left behind.
+	 */
+	private void tryDrain() {
+		do {
+			if (!evictionLock.tryLock()) {
+				return;
+			}
+			try {
+				drain();
+			} finally {
+				evictionLock.unlock();
+			}
+		} while (!writeBuffer.isEmpty());
+	}
+	
+	private void drain() {
+		for (ReadBuffer<K, V> buffer : readBuffers) {
+			buffer.drainTo(this::onAccess);
+		}
+		for (Runnable task = writeBuffer.poll(); task != null; task = writeBuffer.poll()) {
+			task.run();
+		}
+		evict();
+	}
+	
+	private void onAdd(Node<K, V> node) {
+		sketch.increment(node.key.hashCode());
+		if (!node.removed) {
+			queues[WINDOW].addLast(node);
+		}
+	}
+	
+	private void onRemove(Node<K, V> node) {
+		if (node.isLinked()) {
+			queues[node.queue].remove(node);
+		}
+	}
+	
+	private void onUpdate(Node<K, V> node, int weight) {
+		if (node.isLinked()) {
+			queues[node.queue].weight += weight - node.weight;
+		}
+		node.weight = weight;
+	}
+	
+	private void onAccess(Node<K, V> node) {
+		sketch.increment(node.key.hashCode());
+		if (!node.isLinked()) {
+			return;
+		}
+		if (node.queue == PROBATION) {
+			queues[PROBATION].remove(node);
+			queues[PROTECTED].addLast(node);
+			while (queues[PROTECTED].weight > protectedMaximum) {
+				Node<K, V> demoted = queues[PROTECTED].head;
+				queues[PROTECTED].remove(demoted);
+				queues[PROBATION].addLast(demoted);
+			}
+		} else {
+			queues[node.queue].moveToLast(node);
+		}
+	}
+	
+	/**
+	 * Moves elements out of window into probation, then, while cache is above maximum, evicts either
+	 * the newest element of probation (candidate from window) or the oldest one (victim), whichever is used less.
+	 * If probation has nothing to evict, the least recently used protected elements are demoted into it first,
+	 * window elements are evicted only if main segments have nothing to evict.
+	 */
+	private void evict() {
+		while (queues[WINDOW].weight > windowMaximum) {
+			Node<K, V> candidate = queues[WINDOW].head;
+			queues[WINDOW].remove(candidate);
+			queues[PROBATION].addLast(candidate);
+		}
+		while (queues[WINDOW].weight + queues[PROBATION].weight + queues[PROTECTED].weight > maximum) {
+			Node<K, V> victim = oldestEvictable(queues[PROBATION]);
+			while (victim == null && queues[PROTECTED].size > 0) {
+				Node<K, V> demoted = queues[PROTECTED].head;
+				queues[PROTECTED].remove(demoted);
+				queues[PROBATION].addLast(demoted);
+				victim = isEvictable(demoted) ? demoted : null;
+			}
+			if (victim == null) {
+				victim = oldestEvictable(queues[WINDOW]);
+				if (victim == null) {
+					//all elements are being calculated, they are evicted on a later drain
+					return;
+				}
+			} else {
+				Node<K, V> candidate = newestEvictable(queues[PROBATION]);
+				if (candidate != victim
+						&& sketch.frequency(candidate.key.hashCode()) <= sketch.frequency(victim.key.hashCode())) {
+					victim = candidate;
+				}
+			}
+			queues[victim.queue].remove(victim);
+			if (data.remove(victim.key, victim)) {
+				victim.removed = true;
+				evictionListener.accept(victim.key, victim.value);
+			}
+		}
+	}
+	
+	private Node<K, V> oldestEvictable(AccessOrder<K, V> queue) {
+		for (Node<K, V> node = queue.head; node != null; node = node.next) {
+			if (isEvictable(node)) {
+				return node;
+			}
+		}
+		return null;
+	}
+	
+	private Node<K, V> newestEvictable(AccessOrder<K, V> queue) {
+		for (Node<K, V> node = queue.tail; node != null; node = node.prev) {
+			if (isEvictable(node)) {
+				return node;
+			}
+		}
+		return null;
+	}
+	
+	private static boolean isEvictable(Node<?, ?> node) {
+		if (!(node.value instanceof SimpleFuture)) {
+			return true;
+		}
+		SimpleFuture<?, ?, ?> future = (SimpleFuture<?, ?, ?>) node.value;
+		return future.isDone() || future.isFailed();
+	}
+	
+	static class Node<K, V> {
+		final K key;
+		final V value;
+		volatile boolean removed;
+		int weight;
+		int queue = NONE;
+		Node<K, V> prev;
+		Node<K, V> next;
+		
+		Node(K key, V value, int weight) {
+			this.key = key;
+			this.value = value;
+			this.weight = weight;
+		}
+		
+		boolean isLinked() {
+			return queue != NONE;
+		}
+	}
+	
+	/**
+	 * Doubly linked list of nodes from the least recently used (head) to the most recently used (tail).
+	 * NOTE: it's updated only under eviction lock.
+	 */
+	static class AccessOrder<K, V> {
+		private final int id;
+		Node<K, V> head;
+		Node<K, V> tail;
+		long size;
+		long weight;
+		
+		AccessOrder(int id) {
+			this.id = id;
+		}
+		
+		void addLast(Node<K, V> node) {
+			node.queue = id;
+			node.prev = tail;
+			node.next = null;
+			if (tail == null) {
+				head = node;
+			} else {
+				tail.next = node;
+			}
+			tail = node;
+			size++;
+			weight += node.weight;
+		}
+		
+		void remove(Node<K, V> node) {
+			if (node.prev == null) {
+				head = node.next;
+			} else {
+				node.prev.next = node.next;
+			}
+			if (node.next == null) {
+				tail = node.prev;
+			} else {
+				node.next.prev = node.prev;
+			}
+			node.queue = NONE;
+			node.prev = null;
+			node.next = null;
+			size--;
+			weight -= node.weight;
+		}
+		
+		void moveToLast(Node<K, V> node) {
+			if (tail != node) {
+				remove(node);
+				addLast(node);
+			}
+		}
+	}
+	
+	/**
+	 * Lossy ring buffer of reads, which is filled by readers without locking and drained under eviction lock.
+	 * If buffer is full, a read isn't recorded, it only makes policy slightly less precise.
+	 */
+	static class ReadBuffer<K, V> {
+		private final AtomicReferenceArray<Node<K, V>> buffer = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+		private final AtomicLong writes = new AtomicLong();
+		private volatile long reads;
+		
+		boolean offer(Node<K, V> node) {
+			long write = writes.get();
+			if (write - reads >= READ_BUFFER_SIZE) {
+				return false;
+			}
+			if (writes.compareAndSet(write, write + 1)) {
+				buffer.lazySet((int) write & (READ_BUFFER_SIZE - 1), node);
+			}
+			return true;
+		}
+		
+		void drainTo(Consumer<Node<K, V>> consumer) {
+			long read = reads;
+			long write = writes.get();
+			for (; read < write; read++) {
+				int index = (int) read & (READ_BUFFER_SIZE - 1);
+				Node<K, V> node = buffer.get(index);
+				if (node == null) {
+					break;
+				}
+				buffer.lazySet(index, null);
+				consumer.accept(node);
+			}
+			reads = read;
+		}
+	}
+}
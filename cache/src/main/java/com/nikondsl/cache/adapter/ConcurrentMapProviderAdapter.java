@@ -0,0 +1,90 @@
+package com.nikondsl.cache.adapter;
+
+import com.nikondsl.cache.ApiReference;
+import com.nikondsl.cache.CacheProvider;
+import org.ehcache.Cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * Unbounded cache provider on top of any ConcurrentMap, ConcurrentHashMap is used by default.
+ * @param <K> class for keys.
+ * @param <V> class for values.
+ */
+@ApiReference(since ="1.1.0")
+public class ConcurrentMapProviderAdapter<K, V> implements CacheProvider<K, V> {
+	private ConcurrentMap<K, V> delegate;
+	private String cacheName;
+	
+	@ApiReference(since ="1.1.0")
+	public ConcurrentMapProviderAdapter(String cacheName) {
+		this(cacheName, new ConcurrentHashMap<>());
+	}
+	
+	@ApiReference(since ="1.1.0")
+	public ConcurrentMapProviderAdapter(String cacheName, ConcurrentMap<K, V> map) {
+		if (map == null) {
+			throw new IllegalArgumentException("Map is not provided");
+		}
+		delegate = map;
+		this.cacheName = cacheName;
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public String getName() {
+		return cacheName;
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public V get(K key) {
+		return delegate.get(key);
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public V putIfAbsent(K key, V value) {
+		return delegate.putIfAbsent(key, value);
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public V remove(K key) {
+		return delegate.remove(key);
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public boolean remove(K key, V value) {
+		return delegate.remove(key, value);
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public void forEach(Consumer<Cache.Entry<K, V>> consumer) {
+		delegate.forEach((key, value) -> consumer.accept(new MapEntry<>(key, value)));
+	}
+	
+	static class MapEntry<K, V> implements Cache.Entry<K, V> {
+		private final K key;
+		private final V value;
+		
+		MapEntry(K key, V value) {
+			this.key = key;
+			this.value = value;
+		}
+		
+		@Override
+		public K getKey() {
+			return key;
+		}
+		
+		@Override
+		public V getValue() {
+			return value;
+		}
+	}
+}
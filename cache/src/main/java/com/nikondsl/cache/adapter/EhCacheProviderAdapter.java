@@ -2,24 +2,74 @@ package com.nikondsl.cache.adapter;
 
 import com.nikondsl.cache.ApiReference;
 import com.nikondsl.cache.CacheProvider;
+import com.nikondsl.cache.SimpleFuture;
+import com.nikondsl.cache.SingleCalculationLatch;
 import org.ehcache.Cache;
+import org.ehcache.CacheManager;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.CacheManagerBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.config.units.EntryUnit;
+import org.ehcache.config.units.MemoryUnit;
+import org.ehcache.event.CacheEventListener;
+import org.ehcache.event.EventFiring;
+import org.ehcache.event.EventOrdering;
+import org.ehcache.event.EventType;
+import org.ehcache.spi.serialization.Serializer;
 
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
+/**
+ * Cache provider on top of EhCache. It either wraps a cache which is built by caller, or builds a cache
+ * with heap, off-heap and disk tiers by {@link #builder(String, Class, Class)}, then it owns the cache manager
+ * and closes it on {@link #close()}.
+ * NOTE: off-heap and disk tiers keep serialized copies of values, only heap tier keeps values themselves.
+ * So a cache of {@link SingleCalculationLatch} may have heap tier only: latch keeps {@link SimpleFuture}s, which
+ * aren't serializable and which identity matters (a copy would calculate value again). Off-heap values of latch
+ * are kept by {@link OffHeapProviderAdapter}, values on disk by {@link com.nikondsl.cache.persistence.PersistentValueProvider}.
+ * @param <K> class for keys.
+ * @param <V> class for values.
+ */
 @ApiReference(since ="1.0.0")
-public class EhCacheProviderAdapter<K, V> implements CacheProvider<K, V> {
+public class EhCacheProviderAdapter<K, V> implements CacheProvider<K, V>, Closeable {
+	private static final int REMOVE_ATTEMPTS = 3;
+	
 	private Cache<K, V> delegate;
 	private String cacheName;
+	private CacheManager cacheManager;
+	private CacheEventListener<K, V> evictionListener;
 	
 	@ApiReference(since ="1.0.0")
 	public EhCacheProviderAdapter(String cacheName, Cache<K, V> cache) {
+		this(cacheName, cache, null);
+	}
+	
+	EhCacheProviderAdapter(String cacheName, Cache<K, V> cache, CacheManager cacheManager) {
 		if (cache == null) {
 			throw new IllegalArgumentException("Cache is not provided");
 		}
 		delegate = cache;
 		this.cacheName = cacheName;
+		this.cacheManager = cacheManager;
 	}
 	
+	/**
+	 * Returns builder of a cache with given tiers, which is owned by the adapter.
+	 * @param cacheName name of cache.
+	 * @param keyClass class for keys.
+	 * @param valueClass class for values.
+	 */
+	@ApiReference(since ="1.1.0")
+	public static <K, V> Builder<K, V> builder(String cacheName, Class<K> keyClass, Class<V> valueClass) {
+		return new Builder<>(cacheName, keyClass, valueClass);
+	}
 	
 	@Override
 	@ApiReference(since ="1.0.0")
@@ -39,16 +89,226 @@ public class EhCacheProviderAdapter<K, V> implements CacheProvider<K, V> {
 		return delegate.putIfAbsent(key, value);
 	}
 	
+	/**
+	 * Removes element and returns its value, EhCache has no such operation, so value is read and then removed
+	 * only if it's still the same, it's retried a few times if value is replaced meanwhile.
+	 * Use {@link #remove(Object, Object)} when value is known, it takes a single call.
+	 * @return removed value, or null if there was no value or it's replaced by other threads each time.
+	 */
 	@Override
 	@ApiReference(since ="1.0.0")
 	public V remove(K key) {
-		delegate.remove(key);
+		for (int attempt = 0; attempt < REMOVE_ATTEMPTS; attempt++) {
+			V previous = delegate.get(key);
+			if (previous == null) {
+				return null;
+			}
+			if (delegate.remove(key, previous)) {
+				return previous;
+			}
+		}
 		return null;
 	}
 	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public boolean remove(K key, V value) {
+		return value != null && delegate.remove(key, value);
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public Map<K, V> getAll(Set<? extends K> keys) {
+		Map<K, V> result = new HashMap<>();
+		delegate.getAll(keys).forEach((key, value) -> {
+			if (value != null) {
+				result.put(key, value);
+			}
+		});
+		return result;
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public void putAll(Map<? extends K, ? extends V> entries) {
+		delegate.putAll(entries);
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public void removeAll(Set<? extends K> keys) {
+		delegate.removeAll(keys);
+	}
+	
 	@Override
 	@ApiReference(since ="1.0.0")
 	public void forEach(Consumer<Cache.Entry<K, V>> consumer) {
 		delegate.forEach(consumer);
 	}
+	
+	/**
+	 * Registers listener of EhCache for elements which it evicts or expires by itself.
+	 */
+	@Override
+	@ApiReference(since ="1.1.0")
+	public synchronized void setEvictionListener(BiConsumer<K, V> listener) {
+		if (evictionListener != null) {
+			delegate.getRuntimeConfiguration().deregisterCacheEventListener(evictionListener);
+			evictionListener = null;
+		}
+		if (listener == null) {
+			return;
+		}
+		evictionListener = event -> listener.accept(event.getKey(), event.getOldValue());
+		delegate.getRuntimeConfiguration().registerCacheEventListener(evictionListener, EventOrdering.UNORDERED,
+				EventFiring.SYNCHRONOUS, EnumSet.of(EventType.EVICTED, EventType.EXPIRED));
+	}
+	
+	/**
+	 * Closes cache manager if it's created by builder, a cache which is given by caller is left open.
+	 */
+	@Override
+	@ApiReference(since ="1.1.0")
+	public void close() {
+		if (cacheManager != null) {
+			cacheManager.close();
+		}
+	}
+	
+	/**
+	 * Builder of EhCache with tiers. At least one tier is required, and each next tier should be larger.
+	 * Futures of {@link SingleCalculationLatch} may be kept in heap tier only.
+	 * Typical usage will be like below;
+	 *
+	 * EhCacheProviderAdapter adapter = EhCacheProviderAdapter.builder("prices", String.class, Price.class)
+	 * 		.heap(10_000)
+	 * 		.offHeap(256)
+	 * 		.disk(Paths.get("/var/cache/prices"), 4096, true)
+	 * 		.build();
+	 *
+	 * @param <K> class for keys.
+	 * @param <V> class for values.
+	 */
+	@ApiReference(since ="1.1.0")
+	public static class Builder<K, V> {
+		private final String cacheName;
+		private final Class<K> keyClass;
+		private final Class<V> valueClass;
+		private long heapEntries;
+		private long offHeapMegabytes;
+		private Path diskDirectory;
+		private long diskMegabytes;
+		private boolean persistent;
+		private Serializer<K> keySerializer;
+		private Serializer<V> valueSerializer;
+		
+		Builder(String cacheName, Class<K> keyClass, Class<V> valueClass) {
+			if (cacheName == null || keyClass == null || valueClass == null) {
+				throw new IllegalArgumentException("Name of cache, classes of keys and values are required");
+			}
+			this.cacheName = cacheName;
+			this.keyClass = keyClass;
+			this.valueClass = valueClass;
+		}
+		
+		/**
+		 * Sets heap tier, which keeps values themselves.
+		 * @param entries maximum number of elements.
+		 */
+		@ApiReference(since ="1.1.0")
+		public Builder<K, V> heap(long entries) {
+			if (entries <= 0) {
+				throw new IllegalArgumentException("Size of heap tier should be positive");
+			}
+			this.heapEntries = entries;
+			return this;
+		}
+		
+		/**
+		 * Sets off-heap tier, which keeps serialized values in direct memory.
+		 * @param megabytes size of tier.
+		 */
+		@ApiReference(since ="1.1.0")
+		public Builder<K, V> offHeap(long megabytes) {
+			if (megabytes <= 0) {
+				throw new IllegalArgumentException("Size of off-heap tier should be positive");
+			}
+			this.offHeapMegabytes = megabytes;
+			return this;
+		}
+		
+		/**
+		 * Sets disk tier, which keeps serialized values in files.
+		 * @param directory directory for files, it's used by this cache only.
+		 * @param megabytes size of tier.
+		 * @param persistent whether values survive restart.
+		 */
+		@ApiReference(since ="1.1.0")
+		public Builder<K, V> disk(Path directory, long megabytes, boolean persistent) {
+			if (directory == null || megabytes <= 0) {
+				throw new IllegalArgumentException("Directory and positive size of disk tier are required");
+			}
+			this.diskDirectory = directory;
+			this.diskMegabytes = megabytes;
+			this.persistent = persistent;
+			return this;
+		}
+		
+		/**
+		 * Sets serializer of keys for off-heap and disk tiers, by default Java serialization is used.
+		 */
+		@ApiReference(since ="1.1.0")
+		public Builder<K, V> keySerializer(Serializer<K> keySerializer) {
+			this.keySerializer = keySerializer;
+			return this;
+		}
+		
+		/**
+		 * Sets serializer of values for off-heap and disk tiers, by default Java serialization is used.
+		 */
+		@ApiReference(since ="1.1.0")
+		public Builder<K, V> valueSerializer(Serializer<V> valueSerializer) {
+			this.valueSerializer = valueSerializer;
+			return this;
+		}
+		
+		/**
+		 * Creates cache manager with the cache and returns adapter which owns it.
+		 * @throws IllegalArgumentException if values are futures of latch and off-heap or disk tier is set.
+		 */
+		@ApiReference(since ="1.1.0")
+		public EhCacheProviderAdapter<K, V> build() {
+			if (heapEntries == 0 && offHeapMegabytes == 0 && diskMegabytes == 0) {
+				throw new IllegalArgumentException("At least one tier is required");
+			}
+			if (SimpleFuture.class.isAssignableFrom(valueClass) && (offHeapMegabytes > 0 || diskMegabytes > 0)) {
+				throw new IllegalArgumentException("Futures of latch can be kept in heap tier only, " +
+						"use OffHeapProviderAdapter or PersistentValueProvider for other tiers");
+			}
+			ResourcePoolsBuilder pools = ResourcePoolsBuilder.newResourcePoolsBuilder();
+			if (heapEntries > 0) {
+				pools = pools.heap(heapEntries, EntryUnit.ENTRIES);
+			}
+			if (offHeapMegabytes > 0) {
+				pools = pools.offheap(offHeapMegabytes, MemoryUnit.MB);
+			}
+			if (diskMegabytes > 0) {
+				pools = pools.disk(diskMegabytes, MemoryUnit.MB, persistent);
+			}
+			CacheConfigurationBuilder<K, V> configuration =
+					CacheConfigurationBuilder.newCacheConfigurationBuilder(keyClass, valueClass, pools);
+			if (keySerializer != null) {
+				configuration = configuration.withKeySerializer(keySerializer);
+			}
+			if (valueSerializer != null) {
+				configuration = configuration.withValueSerializer(valueSerializer);
+			}
+			CacheManagerBuilder<CacheManager> managerBuilder = CacheManagerBuilder.newCacheManagerBuilder();
+			CacheManager manager = diskDirectory == null
+					? managerBuilder.withCache(cacheName, configuration).build(true)
+					: managerBuilder.with(CacheManagerBuilder.persistence(diskDirectory.toFile()))
+							.withCache(cacheName, configuration).build(true);
+			return new EhCacheProviderAdapter<>(cacheName, manager.getCache(cacheName, keyClass, valueClass), manager);
+		}
+	}
 }
@@ -0,0 +1,83 @@
+package com.nikondsl.cache.adapter;
+
+/**
+ * Count-min sketch with 4-bit counters, which estimates how often keys were used recently. Four counters of a key
+ * are kept in a single long, so an update touches one cache line. Counters are halved after a sample of
+ * ten times the capacity, so old popularity fades away.
+ * NOTE: it isn't thread safe, callers should hold a lock.
+ */
+class FrequencySketch {
+	private static final long RESET_MASK = 0x7777_7777_7777_7777L;
+	private static final long ONE_MASK = 0x1111_1111_1111_1111L;
+	private static final int[] SEEDS = {0x97cb3127, 0xc2b2ae35, 0x85ebca6b, 0x27d4eb2f};
+	
+	private final long[] table;
+	private final int sampleSize;
+	private int additions;
+	
+	FrequencySketch(int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, Math.min(capacity, 1 << 30)) - 1) << 1;
+		table = new long[size];
+		sampleSize = (int) Math.min(10L * capacity, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Returns estimated number of uses of a key, from 0 to 15.
+	 */
+	int frequency(int hashCode) {
+		int hash = spread(hashCode);
+		int start = (hash & 3) << 2;
+		int frequency = Integer.MAX_VALUE;
+		for (int i = 0; i < 4; i++) {
+			int index = indexOf(hash, i);
+			int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+			frequency = Math.min(frequency, count);
+		}
+		return frequency;
+	}
+	
+	/**
+	 * Counts one more use of a key.
+	 */
+	void increment(int hashCode) {
+		int hash = spread(hashCode);
+		int start = (hash & 3) << 2;
+		boolean added = false;
+		for (int i = 0; i < 4; i++) {
+			added |= incrementAt(indexOf(hash, i), start + i);
+		}
+		if (added && ++additions >= sampleSize) {
+			reset();
+		}
+	}
+	
+	private boolean incrementAt(int index, int counter) {
+		int offset = counter << 2;
+		long mask = 0xfL << offset;
+		if ((table[index] & mask) != mask) {
+			table[index] += 1L << offset;
+			return true;
+		}
+		return false;
+	}
+	
+	private void reset() {
+		int odd = 0;
+		for (int i = 0; i < table.length; i++) {
+			odd += Long.bitCount(table[i] & ONE_MASK);
+			table[i] = (table[i] >>> 1) & RESET_MASK;
+		}
+		additions = (additions >>> 1) - (odd >>> 2);
+	}
+	
+	private int indexOf(int hash, int depth) {
+		long value = (hash + (long) SEEDS[depth]) * SEEDS[depth];
+		value += value >>> 32;
+		return (int) value & (table.length - 1);
+	}
+	
+	private static int spread(int hashCode) {
+		int hash = hashCode * 0x9e3779b9;
+		return hash ^ (hash >>> 16);
+	}
+}
@@ -0,0 +1,287 @@
+package com.nikondsl.cache.adapter;
+
+import com.nikondsl.cache.ApiReference;
+import com.nikondsl.cache.CacheProvider;
+import org.ehcache.Cache;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Two-level cache provider: a small on-heap level (L1) in front of any other provider (L2), e.g. EhCache.
+ * L1 is a direct-mapped array, where a key may take only one slot, so it's read without locks and allocations.
+ * L2 keeps all elements, frequently used ones are promoted to L1 on L2 hits: frequency of keys is estimated
+ * by a sketch and a key replaces the one in its slot only if it's used more often. Sketch is updated only if it
+ * isn't busy, so promotion never blocks readers.
+ * L1 hits are invisible to L2, so each {@link #ACCESS_SAMPLE}th hit of an L1 element is read from L2 as well,
+ * otherwise L2 would take the hottest keys for unused ones and evict them.
+ * Element is removed from L1 when it's removed or evicted from L2, so L2 should notify about its evictions
+ * (see {@link CacheProvider#setEvictionListener(BiConsumer)}).
+ * @param <K> class for keys.
+ * @param <V> class for values.
+ */
+@ApiReference(since ="1.1.0")
+public class NearCacheProviderAdapter<K, V> implements CacheProvider<K, V> {
+	static final int ACCESS_SAMPLE = 8;
+	private static final int MIN_PROMOTION_FREQUENCY = 2;
+	
+	private final CacheProvider<K, V> delegate;
+	private final AtomicReferenceArray<Node<K, V>> nodes;
+	private final int mask;
+	private final FrequencySketch sketch;
+	private final ReentrantLock sketchLock = new ReentrantLock();
+	private final LongAdder nearHits = new LongAdder();
+	private final LongAdder farHits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder promotions = new LongAdder();
+	private volatile BiConsumer<K, V> evictionListener = (key, value) -> {};
+	
+	/**
+	 * @param delegate provider of the second level, which keeps all elements.
+	 * @param nearCapacity number of slots of the first level, rounded up to a power of two.
+	 */
+	@ApiReference(since ="1.1.0")
+	public NearCacheProviderAdapter(CacheProvider<K, V> delegate, int nearCapacity) {
+		if (delegate == null) {
+			throw new IllegalArgumentException("Cache is not provided");
+		}
+		if (nearCapacity <= 0 || nearCapacity > 1 << 30) {
+			throw new IllegalArgumentException("Capacity of near cache should be from 1 to 2^30");
+		}
+		this.delegate = delegate;
+		int size = nearCapacity == 1 ? 1 : Integer.highestOneBit(nearCapacity - 1) << 1;
+		this.nodes = new AtomicReferenceArray<>(size);
+		this.mask = size - 1;
+		this.sketch = new FrequencySketch((int) Math.min(16L * size, 1 << 30));
+		delegate.setEvictionListener((key, value) -> {
+			invalidate(key);
+			evictionListener.accept(key, value);
+		});
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public String getName() {
+		return delegate.getName();
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public V get(K key) {
+		int hash = key.hashCode();
+		Node<K, V> node = nodes.get(indexOf(hash));
+		if (node != null && node.key.equals(key)) {
+			nearHits.increment();
+			if ((++node.hits & (ACCESS_SAMPLE - 1)) == 0) {
+				touch(node);
+			}
+			return node.value;
+		}
+		V value = delegate.get(key);
+		if (value == null) {
+			misses.increment();
+			return null;
+		}
+		farHits.increment();
+		promote(key, hash, value);
+		return value;
+	}
+	
+	/**
+	 * Elements are put only to L2, they get to L1 when they are used often enough.
+	 */
+	@Override
+	@ApiReference(since ="1.1.0")
+	public V putIfAbsent(K key, V value) {
+		return delegate.putIfAbsent(key, value);
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public V remove(K key) {
+		V removed = delegate.remove(key);
+		invalidate(key);
+		return removed;
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public boolean remove(K key, V value) {
+		boolean removed = delegate.remove(key, value);
+		if (removed) {
+			invalidate(key);
+		}
+		return removed;
+	}
+	
+	/**
+	 * Keys which are in L1 are taken from it, all others are looked up in L2 at once.
+	 */
+	@Override
+	@ApiReference(since ="1.1.0")
+	public Map<K, V> getAll(Set<? extends K> keys) {
+		Map<K, V> result = new HashMap<>();
+		Set<K> far = new HashSet<>();
+		for (K key : keys) {
+			Node<K, V> node = nodes.get(indexOf(key.hashCode()));
+			if (node != null && node.key.equals(key)) {
+				nearHits.increment();
+				result.put(key, node.value);
+			} else {
+				far.add(key);
+			}
+		}
+		if (far.isEmpty()) {
+			return result;
+		}
+		Map<K, V> found = delegate.getAll(far);
+		found.forEach((key, value) -> {
+			farHits.increment();
+			promote(key, key.hashCode(), value);
+		});
+		misses.add(far.size() - found.size());
+		result.putAll(found);
+		return result;
+	}
+	
+	/**
+	 * Elements are put only to L2, L1 elements of the same keys are removed, since they may be replaced.
+	 */
+	@Override
+	@ApiReference(since ="1.1.0")
+	public void putAll(Map<? extends K, ? extends V> entries) {
+		delegate.putAll(entries);
+		entries.keySet().forEach(this::invalidate);
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public void removeAll(Set<? extends K> keys) {
+		delegate.removeAll(keys);
+		keys.forEach(this::invalidate);
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public void forEach(Consumer<Cache.Entry<K, V>> consumer) {
+		delegate.forEach(consumer);
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public void loaded(K key, V value) {
+		delegate.loaded(key, value);
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public void setEvictionListener(BiConsumer<K, V> listener) {
+		evictionListener = listener == null ? (key, value) -> {} : listener;
+	}
+	
+	/**
+	 * Returns number of hits which were served by L1.
+	 */
+	@ApiReference(since ="1.1.0")
+	public long getNearHits() {
+		return nearHits.sum();
+	}
+	
+	/**
+	 * Returns number of hits which were served by L2.
+	 */
+	@ApiReference(since ="1.1.0")
+	public long getFarHits() {
+		return farHits.sum();
+	}
+	
+	/**
+	 * Returns number of keys which were found in neither level.
+	 */
+	@ApiReference(since ="1.1.0")
+	public long getMisses() {
+		return misses.sum();
+	}
+	
+	/**
+	 * Returns number of elements which were promoted to L1.
+	 */
+	@ApiReference(since ="1.1.0")
+	public long getPromotions() {
+		return promotions.sum();
+	}
+	
+	/**
+	 * Puts L2 element to L1 if its key is used more often than the key in its slot.
+	 */
+	private void promote(K key, int hash, V value) {
+		if (!sketchLock.tryLock()) {
+			return;
+		}
+		int index = indexOf(hash);
+		Node<K, V> current;
+		try {
+			sketch.increment(hash);
+			int frequency = sketch.frequency(hash);
+			current = nodes.get(index);
+			if (frequency < MIN_PROMOTION_FREQUENCY
+					|| current != null && frequency <= sketch.frequency(current.key.hashCode())) {
+				return;
+			}
+		} finally {
+			sketchLock.unlock();
+		}
+		Node<K, V> promoted = new Node<>(key, value);
+		if (!nodes.compareAndSet(index, current, promoted)) {
+			return;
+		}
+		//element may be removed from L2 meanwhile, then L1 shouldn't keep it
+		if (delegate.get(key) != value) {
+			nodes.compareAndSet(index, promoted, null);
+			return;
+		}
+		promotions.increment();
+	}
+	
+	/**
+	 * Records access to L1 element in L2, element which isn't in L2 anymore is dropped from L1.
+	 */
+	private void touch(Node<K, V> node) {
+		if (delegate.get(node.key) != node.value) {
+			nodes.compareAndSet(indexOf(node.key.hashCode()), node, null);
+		}
+	}
+	
+	private void invalidate(K key) {
+		int index = indexOf(key.hashCode());
+		Node<K, V> node = nodes.get(index);
+		while (node != null && Objects.equals(node.key, key) && !nodes.compareAndSet(index, node, null)) {
+			node = nodes.get(index);
+		}
+	}
+	
+	private int indexOf(int hashCode) {
+		int hash = hashCode * 0x9e3779b9;
+		return (hash ^ (hash >>> 16)) & mask;
+	}
+	
+	static class Node<K, V> {
+		final K key;
+		final V value;
+		//it's racy, some hits may be lost, that's fine for sampling
+		int hits;
+		
+		Node(K key, V value) {
+			this.key = key;
+			this.value = value;
+		}
+	}
+}
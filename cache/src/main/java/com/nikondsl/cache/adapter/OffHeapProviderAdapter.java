@@ -0,0 +1,242 @@
+package com.nikondsl.cache.adapter;
+
+import com.nikondsl.cache.ApiReference;
+import com.nikondsl.cache.CacheProvider;
+import com.nikondsl.cache.SimpleFuture;
+import com.nikondsl.cache.codec.ValueCodec;
+import com.nikondsl.cache.codec.ValueCodecs;
+import org.ehcache.Cache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Cache provider which keeps calculated values in direct memory, so large values don't take heap and
+ * aren't copied by GC. Futures stay on heap as a compact index by key, when a value is calculated it's
+ * encoded into a slab-allocated chunk and decoded right from the chunk on each access.
+ * When byte budget is used up, the oldest values of the same size are evicted, slabs which are emptied
+ * are reused for values of any size.
+ * Values are encoded by given codec (see {@link ValueCodecs}), Java serialization is used by default.
+ * NOTE: values which cannot be encoded or don't fit in a slab stay on heap.
+ * A caller which got a future just before its value is evicted gets null, like with a cleared soft reference.
+ * @param <K> class for keys.
+ * @param <V> class for values.
+ * @param <E> class for exceptions of value provider.
+ */
+@ApiReference(since ="1.1.0")
+public class OffHeapProviderAdapter<K, V, E extends Exception> implements CacheProvider<K, SimpleFuture<K, V, E>> {
+	private static Logger LOG = LoggerFactory.getLogger(OffHeapProviderAdapter.class);
+	private static final int DEFAULT_SLAB_SIZE = 1 << 20;
+	
+	private final String cacheName;
+	private final SlabAllocator allocator;
+	private final ValueCodec<V> codec;
+	private final ConcurrentHashMap<K, SimpleFuture<K, V, E>> futures = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<K, Handle> stored = new ConcurrentHashMap<>();
+	private volatile BiConsumer<K, SimpleFuture<K, V, E>> evictionListener = (key, value) -> {};
+	
+	/**
+	 * Creates provider which takes at most given number of bytes of direct memory by slabs of 1 MB.
+	 * @param cacheName name of cache.
+	 * @param maxBytes budget of direct memory.
+	 */
+	@ApiReference(since ="1.1.0")
+	public OffHeapProviderAdapter(String cacheName, long maxBytes) {
+		this(cacheName, maxBytes, DEFAULT_SLAB_SIZE);
+	}
+	
+	/**
+	 * Creates provider which takes at most given number of bytes of direct memory by slabs of given size.
+	 * @param cacheName name of cache.
+	 * @param maxBytes budget of direct memory.
+	 * @param slabSize power of two, values greater than that are kept on heap.
+	 */
+	@ApiReference(since ="1.1.0")
+	public OffHeapProviderAdapter(String cacheName, long maxBytes, int slabSize) {
+		this(cacheName, maxBytes, slabSize, ValueCodecs.serializable());
+	}
+	
+	/**
+	 * Creates provider which takes at most given number of bytes of direct memory by slabs of given size.
+	 * @param cacheName name of cache.
+	 * @param maxBytes budget of direct memory.
+	 * @param slabSize power of two, values greater than that are kept on heap.
+	 * @param codec codec of values, e.g. {@link ValueCodecs#forClass(Class)}.
+	 */
+	@ApiReference(since ="1.1.0")
+	public OffHeapProviderAdapter(String cacheName, long maxBytes, int slabSize, ValueCodec<V> codec) {
+		if (codec == null) {
+			throw new IllegalArgumentException("Codec is required");
+		}
+		this.cacheName = cacheName;
+		this.allocator = new SlabAllocator(maxBytes, slabSize);
+		this.codec = codec;
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public String getName() {
+		return cacheName;
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public SimpleFuture<K, V, E> get(K key) {
+		return futures.get(key);
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public SimpleFuture<K, V, E> putIfAbsent(K key, SimpleFuture<K, V, E> value) {
+		return futures.putIfAbsent(key, value);
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public SimpleFuture<K, V, E> remove(K key) {
+		SimpleFuture<K, V, E> removed = futures.remove(key);
+		Handle handle = stored.remove(key);
+		if (handle != null) {
+			allocator.free(handle.chunk, handle.generation);
+		}
+		return removed;
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public boolean remove(K key, SimpleFuture<K, V, E> value) {
+		if (!futures.remove(key, value)) {
+			return false;
+		}
+		Handle handle = stored.remove(key);
+		if (handle != null) {
+			allocator.free(handle.chunk, handle.generation);
+		}
+		return true;
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public void forEach(Consumer<Cache.Entry<K, SimpleFuture<K, V, E>>> consumer) {
+		futures.forEach((key, future) -> consumer.accept(new ConcurrentMapProviderAdapter.MapEntry<>(key, future)));
+	}
+	
+	/**
+	 * Moves just calculated value into direct memory.
+	 */
+	@Override
+	@ApiReference(since ="1.1.0")
+	public void loaded(K key, SimpleFuture<K, V, E> future) {
+		AtomicReference<Handle> created = new AtomicReference<>();
+		boolean moved = future.offload(value -> {
+			created.set(store(key, value));
+			return created.get();
+		});
+		if (!moved) {
+			if (created.get() != null) {
+				allocator.free(created.get().chunk, created.get().generation);
+			}
+			return;
+		}
+		Handle handle = created.get();
+		Handle previous = stored.put(key, handle);
+		if (previous != null) {
+			allocator.free(previous.chunk, previous.generation);
+		}
+		//chunk may be taken back before handle is published, then eviction is missed and it's done here
+		if (!handle.chunk.hasGeneration(handle.generation)) {
+			evicted(key, handle);
+		}
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public void setEvictionListener(BiConsumer<K, SimpleFuture<K, V, E>> listener) {
+		if (listener == null) {
+			throw new IllegalArgumentException("Listener cannot be null");
+		}
+		evictionListener = listener;
+	}
+	
+	/**
+	 * Returns number of bytes of direct memory which are taken by slabs.
+	 */
+	@ApiReference(since ="1.1.0")
+	public long getAllocatedBytes() {
+		return allocator.getAllocatedBytes();
+	}
+	
+	private Handle store(K key, V value) {
+		byte[] bytes;
+		try {
+			bytes = codec.toBytes(value);
+		} catch (RuntimeException ex) {
+			LOG.debug("Value for key '{}' cannot be encoded, it's kept on heap in cache '{}'", key, cacheName, ex);
+			return null;
+		}
+		SlabAllocator.Chunk chunk = allocator.allocate(bytes.length, this::evict);
+		if (chunk == null) {
+			return null;
+		}
+		Handle handle = new Handle(chunk, chunk.generation);
+		chunk.write(handle.generation, bytes, key);
+		return handle;
+	}
+	
+	/**
+	 * Removes element whose chunk is taken back by allocator.
+	 */
+	private void evict(SlabAllocator.Chunk chunk) {
+		K key = (K) chunk.owner;
+		if (key == null) {
+			return;
+		}
+		Handle handle = stored.get(key);
+		if (handle != null && handle.chunk == chunk) {
+			evicted(key, handle);
+		}
+	}
+	
+	/**
+	 * Removes element whose value is lost, if its handle is still published. It's called either by allocator
+	 * or by a thread which publishes handle, whoever removes the handle expires the future.
+	 */
+	private void evicted(K key, Handle handle) {
+		if (!stored.remove(key, handle)) {
+			return;
+		}
+		SimpleFuture<K, V, E> future = futures.get(key);
+		if (future != null && futures.remove(key, future)) {
+			future.expire();
+			evictionListener.accept(key, future);
+			LOG.trace("Element with key: '{}' is evicted from cache: '{}'", key, cacheName);
+		}
+	}
+	
+	/**
+	 * Reference to a value in direct memory.
+	 */
+	class Handle implements Supplier<V> {
+		private final SlabAllocator.Chunk chunk;
+		private final int generation;
+		
+		Handle(SlabAllocator.Chunk chunk, int generation) {
+			this.chunk = chunk;
+			this.generation = generation;
+		}
+		
+		@Override
+		public V get() {
+			try {
+				return chunk.read(generation, codec);
+			} catch (RuntimeException ex) {
+				throw new IllegalStateException("Value cannot be read from cache '" + cacheName + "'", ex);
+			}
+		}
+	}
+}
@@ -0,0 +1,231 @@
+package com.nikondsl.cache.adapter;
+
+import com.nikondsl.cache.codec.ValueCodec;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Allocator of chunks in direct memory. Memory is taken from the system by slabs of the same size, each slab
+ * is cut into chunks of one size class (powers of two from 64 bytes to slab size), like memcached does.
+ * A slab which chunks are all freed goes back to a pool of free slabs, so it may be cut for another size class
+ * when sizes of values change. When budget is used up, the oldest chunk of the same size class is taken back
+ * from its owner.
+ * NOTE: allocation is synchronized, chunk content is guarded by the chunk itself.
+ */
+class SlabAllocator {
+	static final int MIN_CHUNK_SIZE = 64;
+	
+	private final int slabSize;
+	private final long maxSlabs;
+	private final SizeClass[] classes;
+	private final ArrayDeque<Slab> freeSlabs = new ArrayDeque<>();
+	private long slabs;
+	
+	SlabAllocator(long maxBytes, int slabSize) {
+		if (slabSize < MIN_CHUNK_SIZE || Integer.bitCount(slabSize) != 1) {
+			throw new IllegalArgumentException("Slab size should be a power of two, not less than " + MIN_CHUNK_SIZE);
+		}
+		if (maxBytes < slabSize) {
+			throw new IllegalArgumentException("Budget should be enough for at least one slab");
+		}
+		this.slabSize = slabSize;
+		this.maxSlabs = maxBytes / slabSize;
+		classes = new SizeClass[Integer.numberOfTrailingZeros(slabSize / MIN_CHUNK_SIZE) + 1];
+		for (int i = 0; i < classes.length; i++) {
+			classes[i] = new SizeClass(MIN_CHUNK_SIZE << i);
+		}
+	}
+	
+	/**
+	 * Returns chunk which can keep given number of bytes.
+	 * @param length number of bytes.
+	 * @param evicted is called with a chunk which is taken back from its owner, if budget is used up.
+	 * @return chunk with a new generation or null if length is greater than slab size.
+	 */
+	synchronized Chunk allocate(int length, Consumer<Chunk> evicted) {
+		if (length > slabSize) {
+			return null;
+		}
+		SizeClass sizeClass = classes[classOf(length)];
+		Chunk chunk = sizeClass.pollFree();
+		if (chunk == null) {
+			Slab slab = freeSlabs.poll();
+			if (slab == null && slabs < maxSlabs) {
+				slab = new Slab(ByteBuffer.allocateDirect(slabSize));
+				slabs++;
+			}
+			if (slab != null) {
+				sizeClass.cut(slab, slabSize);
+				chunk = sizeClass.pollFree();
+			}
+		}
+		if (chunk != null) {
+			chunk.slab.used++;
+		} else {
+			Iterator<Chunk> oldest = sizeClass.used.iterator();
+			if (!oldest.hasNext()) {
+				return null;
+			}
+			chunk = oldest.next();
+			oldest.remove();
+			evicted.accept(chunk);
+		}
+		synchronized (chunk) {
+			chunk.generation++;
+			chunk.length = length;
+			chunk.owner = null;
+		}
+		sizeClass.used.add(chunk);
+		return chunk;
+	}
+	
+	/**
+	 * Returns chunk back, if it's not taken by someone else already.
+	 * @param chunk to free.
+	 * @param generation which chunk had when it was allocated.
+	 */
+	synchronized void free(Chunk chunk, int generation) {
+		SizeClass sizeClass = classes[classOf(chunk.length)];
+		synchronized (chunk) {
+			if (chunk.generation != generation || !sizeClass.used.remove(chunk)) {
+				return;
+			}
+			chunk.generation++;
+			chunk.owner = null;
+		}
+		sizeClass.free.add(chunk);
+		Slab slab = chunk.slab;
+		if (--slab.used == 0) {
+			for (Chunk free : slab.chunks) {
+				sizeClass.free.remove(free);
+			}
+			slab.chunks.clear();
+			freeSlabs.add(slab);
+		}
+	}
+	
+	/**
+	 * Returns number of bytes which are taken from the system.
+	 */
+	synchronized long getAllocatedBytes() {
+		return slabs * slabSize;
+	}
+	
+	/**
+	 * Returns number of slabs which aren't cut into chunks of any size class now.
+	 */
+	synchronized int getFreeSlabs() {
+		return freeSlabs.size();
+	}
+	
+	private static int classOf(int length) {
+		int size = Math.max(length, MIN_CHUNK_SIZE);
+		return 32 - Integer.numberOfLeadingZeros(size - 1) - Integer.numberOfTrailingZeros(MIN_CHUNK_SIZE);
+	}
+	
+	static class SizeClass {
+		final int size;
+		final LinkedHashSet<Chunk> free = new LinkedHashSet<>();
+		final LinkedHashSet<Chunk> used = new LinkedHashSet<>();
+		
+		SizeClass(int size) {
+			this.size = size;
+		}
+		
+		Chunk pollFree() {
+			Iterator<Chunk> first = free.iterator();
+			if (!first.hasNext()) {
+				return null;
+			}
+			Chunk chunk = first.next();
+			first.remove();
+			return chunk;
+		}
+		
+		/**
+		 * Cuts slab into new chunks of this size class, chunks which were cut before are dropped,
+		 * so their stale readers don't see new content.
+		 */
+		void cut(Slab slab, int slabSize) {
+			for (int offset = 0; offset < slabSize; offset += size) {
+				Chunk chunk = new Chunk(slab, offset);
+				slab.chunks.add(chunk);
+				free.add(chunk);
+			}
+		}
+	}
+	
+	/**
+	 * Memory which is taken from the system, it's cut into chunks of one size class at a time.
+	 */
+	static class Slab {
+		final ByteBuffer buffer;
+		final List<Chunk> chunks = new ArrayList<>();
+		int used;
+		
+		Slab(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+	}
+	
+	/**
+	 * Part of a slab. Generation is changed each time chunk is allocated or freed, so a stale reader
+	 * finds out that content isn't its own anymore.
+	 */
+	static class Chunk {
+		private final Slab slab;
+		private final int offset;
+		int generation;
+		int length;
+		Object owner;
+		
+		Chunk(Slab slab, int offset) {
+			this.slab = slab;
+			this.offset = offset;
+		}
+		
+		/**
+		 * Returns true if chunk isn't reused since given generation.
+		 */
+		synchronized boolean hasGeneration(int expectedGeneration) {
+			return generation == expectedGeneration;
+		}
+		
+		synchronized void write(int expectedGeneration, byte[] bytes, Object newOwner) {
+			if (generation != expectedGeneration) {
+				return;
+			}
+			ByteBuffer buffer = slab.buffer.duplicate();
+			((Buffer) buffer).position(offset);
+			buffer.put(bytes, 0, length);
+			owner = newOwner;
+		}
+		
+		/**
+		 * Decodes content right from the slab, or returns null if chunk is reused already. Zero-copy codecs
+		 * get a copy, since chunk may be reused while their value is still used.
+		 */
+		synchronized <V> V read(int expectedGeneration, ValueCodec<V> codec) {
+			if (generation != expectedGeneration) {
+				return null;
+			}
+			ByteBuffer buffer = slab.buffer.duplicate();
+			((Buffer) buffer).limit(offset + length);
+			((Buffer) buffer).position(offset);
+			if (!codec.isZeroCopy()) {
+				return codec.decode(buffer);
+			}
+			ByteBuffer copy = ByteBuffer.allocate(length);
+			copy.put(buffer);
+			((Buffer) copy).flip();
+			return codec.decode(copy);
+		}
+	}
+}
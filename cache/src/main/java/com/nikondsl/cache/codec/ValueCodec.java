@@ -0,0 +1,73 @@
+package com.nikondsl.cache.codec;
+
+import com.nikondsl.cache.ApiReference;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts values to bytes and back for storages which keep values outside of heap: direct memory, files or
+ * memory shared with other processes. Built-in codecs are in {@link ValueCodecs}, other codecs are found by
+ * {@link java.util.ServiceLoader}, i.e. they should be listed in META-INF/services/com.nikondsl.cache.codec.ValueCodec.
+ * Codecs should be thread safe.
+ * @param <V> class for values.
+ */
+@ApiReference(since ="1.1.0")
+public interface ValueCodec<V> {
+	/**
+	 * Returns class of values, codec is used for this class and its subclasses.
+	 */
+	@ApiReference(since ="1.1.0")
+	Class<V> getValueClass();
+	
+	/**
+	 * Returns exact number of bytes which {@link #encode(Object, ByteBuffer)} writes.
+	 * @param value value, not null.
+	 */
+	@ApiReference(since ="1.1.0")
+	int sizeOf(V value);
+	
+	/**
+	 * Writes value at position of buffer and moves position after it.
+	 * @param value value, not null.
+	 * @param target buffer with at least {@link #sizeOf(Object)} bytes remaining.
+	 */
+	@ApiReference(since ="1.1.0")
+	void encode(V value, ByteBuffer target);
+	
+	/**
+	 * Reads value from all bytes between position and limit of buffer.
+	 * @param source buffer, which may be a view of a storage.
+	 * @return value, which refers to source if codec {@link #isZeroCopy()}.
+	 */
+	@ApiReference(since ="1.1.0")
+	V decode(ByteBuffer source);
+	
+	/**
+	 * Returns true if decoded values are views of the source instead of copies. Storages which reuse memory
+	 * give such codecs a copy, others may let them read the storage directly.
+	 */
+	@ApiReference(since ="1.1.0")
+	default boolean isZeroCopy() {
+		return false;
+	}
+	
+	/**
+	 * Returns value as a new array. Storages which need size only for allocating space should call it instead of
+	 * {@link #sizeOf(Object)} and {@link #encode(Object, ByteBuffer)}, so a codec which knows size only after
+	 * encoding doesn't encode value twice.
+	 */
+	@ApiReference(since ="1.1.0")
+	default byte[] toBytes(V value) {
+		byte[] bytes = new byte[sizeOf(value)];
+		encode(value, ByteBuffer.wrap(bytes));
+		return bytes;
+	}
+	
+	/**
+	 * Reads value from an array.
+	 */
+	@ApiReference(since ="1.1.0")
+	default V fromBytes(byte[] bytes) {
+		return decode(ByteBuffer.wrap(bytes));
+	}
+}
@@ -0,0 +1,489 @@
+package com.nikondsl.cache.codec;
+
+import com.nikondsl.cache.ApiReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Built-in codecs and lookup of a codec by class of values. Built-in codecs write values as is, without any
+ * headers, numbers in big-endian order and strings in UTF-8. Java serialization is used for all other classes.
+ */
+@ApiReference(since ="1.1.0")
+public final class ValueCodecs {
+	private static Logger LOG = LoggerFactory.getLogger(ValueCodecs.class);
+	
+	/**
+	 * Byte arrays as is.
+	 */
+	@ApiReference(since ="1.1.0")
+	public static final ValueCodec<byte[]> BYTES = new ValueCodec<byte[]>() {
+		@Override
+		public Class<byte[]> getValueClass() {
+			return byte[].class;
+		}
+		
+		@Override
+		public int sizeOf(byte[] value) {
+			return value.length;
+		}
+		
+		@Override
+		public void encode(byte[] value, ByteBuffer target) {
+			target.put(value);
+		}
+		
+		@Override
+		public byte[] decode(ByteBuffer source) {
+			byte[] value = new byte[source.remaining()];
+			source.get(value);
+			return value;
+		}
+		
+		@Override
+		public byte[] toBytes(byte[] value) {
+			return value.clone();
+		}
+	};
+	
+	/**
+	 * Byte buffers, which are decoded as read-only views of the storage, i.e. without copying.
+	 */
+	@ApiReference(since ="1.1.0")
+	public static final ValueCodec<ByteBuffer> BYTE_BUFFER = new ValueCodec<ByteBuffer>() {
+		@Override
+		public Class<ByteBuffer> getValueClass() {
+			return ByteBuffer.class;
+		}
+		
+		@Override
+		public int sizeOf(ByteBuffer value) {
+			return value.remaining();
+		}
+		
+		@Override
+		public void encode(ByteBuffer value, ByteBuffer target) {
+			target.put(value.duplicate());
+		}
+		
+		@Override
+		public ByteBuffer decode(ByteBuffer source) {
+			ByteBuffer value = source.slice().asReadOnlyBuffer();
+			((Buffer) source).position(source.limit());
+			return value;
+		}
+		
+		@Override
+		public boolean isZeroCopy() {
+			return true;
+		}
+	};
+	
+	/**
+	 * Strings in UTF-8, ASCII strings are written without intermediate arrays.
+	 */
+	@ApiReference(since ="1.1.0")
+	public static final ValueCodec<String> STRING = new ValueCodec<String>() {
+		@Override
+		public Class<String> getValueClass() {
+			return String.class;
+		}
+		
+		@Override
+		public int sizeOf(String value) {
+			return utf8Length(value);
+		}
+		
+		@Override
+		public void encode(String value, ByteBuffer target) {
+			int length = value.length();
+			for (int i = 0; i < length; i++) {
+				if (value.charAt(i) >= 0x80) {
+					target.put(value.getBytes(StandardCharsets.UTF_8));
+					return;
+				}
+			}
+			for (int i = 0; i < length; i++) {
+				target.put((byte) value.charAt(i));
+			}
+		}
+		
+		@Override
+		public String decode(ByteBuffer source) {
+			int length = source.remaining();
+			String value;
+			if (source.hasArray()) {
+				value = new String(source.array(), source.arrayOffset() + source.position(), length,
+						StandardCharsets.UTF_8);
+				((Buffer) source).position(source.limit());
+			} else {
+				byte[] bytes = new byte[length];
+				source.get(bytes);
+				value = new String(bytes, StandardCharsets.UTF_8);
+			}
+			return value;
+		}
+		
+		@Override
+		public byte[] toBytes(String value) {
+			return value.getBytes(StandardCharsets.UTF_8);
+		}
+	};
+	
+	@ApiReference(since ="1.1.0")
+	public static final ValueCodec<Long> LONG = new ValueCodec<Long>() {
+		@Override
+		public Class<Long> getValueClass() {
+			return Long.class;
+		}
+		
+		@Override
+		public int sizeOf(Long value) {
+			return Long.BYTES;
+		}
+		
+		@Override
+		public void encode(Long value, ByteBuffer target) {
+			target.putLong(value);
+		}
+		
+		@Override
+		public Long decode(ByteBuffer source) {
+			return source.getLong();
+		}
+	};
+	
+	@ApiReference(since ="1.1.0")
+	public static final ValueCodec<Integer> INTEGER = new ValueCodec<Integer>() {
+		@Override
+		public Class<Integer> getValueClass() {
+			return Integer.class;
+		}
+		
+		@Override
+		public int sizeOf(Integer value) {
+			return Integer.BYTES;
+		}
+		
+		@Override
+		public void encode(Integer value, ByteBuffer target) {
+			target.putInt(value);
+		}
+		
+		@Override
+		public Integer decode(ByteBuffer source) {
+			return source.getInt();
+		}
+	};
+	
+	@ApiReference(since ="1.1.0")
+	public static final ValueCodec<Double> DOUBLE = new ValueCodec<Double>() {
+		@Override
+		public Class<Double> getValueClass() {
+			return Double.class;
+		}
+		
+		@Override
+		public int sizeOf(Double value) {
+			return Double.BYTES;
+		}
+		
+		@Override
+		public void encode(Double value, ByteBuffer target) {
+			target.putDouble(value);
+		}
+		
+		@Override
+		public Double decode(ByteBuffer source) {
+			return source.getDouble();
+		}
+	};
+	
+	@ApiReference(since ="1.1.0")
+	public static final ValueCodec<long[]> LONG_ARRAY = new ValueCodec<long[]>() {
+		@Override
+		public Class<long[]> getValueClass() {
+			return long[].class;
+		}
+		
+		@Override
+		public int sizeOf(long[] value) {
+			return value.length * Long.BYTES;
+		}
+		
+		@Override
+		public void encode(long[] value, ByteBuffer target) {
+			target.asLongBuffer().put(value);
+			((Buffer) target).position(target.position() + value.length * Long.BYTES);
+		}
+		
+		@Override
+		public long[] decode(ByteBuffer source) {
+			long[] value = new long[source.remaining() / Long.BYTES];
+			source.asLongBuffer().get(value);
+			((Buffer) source).position(source.position() + value.length * Long.BYTES);
+			return value;
+		}
+	};
+	
+	@ApiReference(since ="1.1.0")
+	public static final ValueCodec<int[]> INT_ARRAY = new ValueCodec<int[]>() {
+		@Override
+		public Class<int[]> getValueClass() {
+			return int[].class;
+		}
+		
+		@Override
+		public int sizeOf(int[] value) {
+			return value.length * Integer.BYTES;
+		}
+		
+		@Override
+		public void encode(int[] value, ByteBuffer target) {
+			target.asIntBuffer().put(value);
+			((Buffer) target).position(target.position() + value.length * Integer.BYTES);
+		}
+		
+		@Override
+		public int[] decode(ByteBuffer source) {
+			int[] value = new int[source.remaining() / Integer.BYTES];
+			source.asIntBuffer().get(value);
+			((Buffer) source).position(source.position() + value.length * Integer.BYTES);
+			return value;
+		}
+	};
+	
+	@ApiReference(since ="1.1.0")
+	public static final ValueCodec<double[]> DOUBLE_ARRAY = new ValueCodec<double[]>() {
+		@Override
+		public Class<double[]> getValueClass() {
+			return double[].class;
+		}
+		
+		@Override
+		public int sizeOf(double[] value) {
+			return value.length * Double.BYTES;
+		}
+		
+		@Override
+		public void encode(double[] value, ByteBuffer target) {
+			target.asDoubleBuffer().put(value);
+			((Buffer) target).position(target.position() + value.length * Double.BYTES);
+		}
+		
+		@Override
+		public double[] decode(ByteBuffer source) {
+			double[] value = new double[source.remaining() / Double.BYTES];
+			source.asDoubleBuffer().get(value);
+			((Buffer) source).position(source.position() + value.length * Double.BYTES);
+			return value;
+		}
+	};
+	
+	private static final ValueCodec<Object> SERIALIZABLE = new SerializableCodec();
+	private static final Map<Class<?>, ValueCodec<?>> BUILT_IN = new LinkedHashMap<>();
+	
+	static {
+		for (ValueCodec<?> codec : new ValueCodec<?>[] {BYTES, BYTE_BUFFER, STRING, LONG, INTEGER, DOUBLE,
+				LONG_ARRAY, INT_ARRAY, DOUBLE_ARRAY}) {
+			BUILT_IN.put(codec.getValueClass(), codec);
+		}
+		BUILT_IN.put(long.class, LONG);
+		BUILT_IN.put(int.class, INTEGER);
+		BUILT_IN.put(double.class, DOUBLE);
+	}
+	
+	private ValueCodecs() {
+	}
+	
+	/**
+	 * Returns codec which uses Java serialization, values should be Serializable.
+	 */
+	@ApiReference(since ="1.1.0")
+	public static <V> ValueCodec<V> serializable() {
+		return typed(SERIALIZABLE);
+	}
+	
+	/**
+	 * Returns codec for a class of values. Codecs which are found by ServiceLoader are preferred to built-in ones,
+	 * a codec for the class itself is preferred to a codec for its superclass. If there is no codec,
+	 * Java serialization is used.
+	 * @param valueClass class of values.
+	 * @return codec, never null.
+	 */
+	@ApiReference(since ="1.1.0")
+	public static <V> ValueCodec<V> forClass(Class<V> valueClass) {
+		if (valueClass == null) {
+			throw new IllegalArgumentException("Class of values is required");
+		}
+		for (ValueCodec<?> codec : Discovered.CODECS) {
+			if (codec.getValueClass() == valueClass) {
+				return typed(codec);
+			}
+		}
+		ValueCodec<?> builtIn = BUILT_IN.get(valueClass);
+		if (builtIn != null) {
+			return typed(builtIn);
+		}
+		for (ValueCodec<?> codec : Discovered.CODECS) {
+			if (codec.getValueClass().isAssignableFrom(valueClass)) {
+				return typed(codec);
+			}
+		}
+		for (ValueCodec<?> codec : BUILT_IN.values()) {
+			if (codec.getValueClass().isAssignableFrom(valueClass)) {
+				return typed(codec);
+			}
+		}
+		return serializable();
+	}
+	
+	/**
+	 * Codecs are looked up by their value class, which is the class of values or its superclass, so a codec
+	 * may encode values of the class, and Java serialization encodes any value. Generics can't express that.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <V> ValueCodec<V> typed(ValueCodec<?> codec) {
+		return (ValueCodec<V>) codec;
+	}
+	
+	/**
+	 * Returns number of bytes of a string in UTF-8, unpaired surrogates are replaced by '?' like
+	 * String.getBytes does.
+	 */
+	static int utf8Length(String value) {
+		int length = value.length();
+		int bytes = length;
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				continue;
+			}
+			if (c < 0x800) {
+				bytes += 1;
+			} else if (!Character.isSurrogate(c)) {
+				bytes += 2;
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+				//pair of surrogates is 4 bytes
+				bytes += 2;
+				i++;
+			}
+		}
+		return bytes;
+	}
+	
+	/**
+	 * Codecs which are listed in META-INF/services, they are loaded on first lookup.
+	 */
+	static class Discovered {
+		static final List<ValueCodec<?>> CODECS = load();
+		
+		private static List<ValueCodec<?>> load() {
+			List<ValueCodec<?>> codecs = new ArrayList<>();
+			Iterator<?> iterator = ServiceLoader.load(ValueCodec.class).iterator();
+			while (true) {
+				try {
+					if (!iterator.hasNext()) {
+						break;
+					}
+					ValueCodec<?> codec = (ValueCodec<?>) iterator.next();
+					codecs.add(codec);
+					LOG.info("Codec {} is found for {}", codec.getClass().getName(), codec.getValueClass().getName());
+				} catch (ServiceConfigurationError ex) {
+					LOG.warn("Codec cannot be loaded", ex);
+				}
+			}
+			return Collections.unmodifiableList(codecs);
+		}
+	}
+	
+	/**
+	 * Java serialization, which works for any Serializable class, but it's slow and bloated.
+	 */
+	static class SerializableCodec implements ValueCodec<Object> {
+		//size is known only after serialization, so bytes of the last sized value are kept for encoding it
+		private final ThreadLocal<Serialized> lastSized = new ThreadLocal<>();
+		
+		@Override
+		public Class<Object> getValueClass() {
+			return Object.class;
+		}
+		
+		@Override
+		public int sizeOf(Object value) {
+			byte[] bytes = toBytes(value);
+			lastSized.set(new Serialized(value, bytes));
+			return bytes.length;
+		}
+		
+		@Override
+		public void encode(Object value, ByteBuffer target) {
+			Serialized serialized = lastSized.get();
+			if (serialized != null && serialized.value == value) {
+				lastSized.remove();
+				target.put(serialized.bytes);
+			} else {
+				target.put(toBytes(value));
+			}
+		}
+		
+		@Override
+		public Object decode(ByteBuffer source) {
+			byte[] bytes;
+			int offset;
+			if (source.hasArray()) {
+				bytes = source.array();
+				offset = source.arrayOffset() + source.position();
+			} else {
+				bytes = new byte[source.remaining()];
+				source.duplicate().get(bytes);
+				offset = 0;
+			}
+			int length = source.remaining();
+			((Buffer) source).position(source.limit());
+			try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes, offset, length))) {
+				return input.readObject();
+			} catch (IOException | ClassNotFoundException ex) {
+				throw new IllegalStateException("Value cannot be deserialized", ex);
+			}
+		}
+		
+		@Override
+		public byte[] toBytes(Object value) {
+			try (ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				 ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+				output.writeObject(value);
+				output.flush();
+				return bytes.toByteArray();
+			} catch (IOException ex) {
+				throw new IllegalArgumentException("Value cannot be serialized", ex);
+			}
+		}
+	}
+	
+	static class Serialized {
+		final Object value;
+		final byte[] bytes;
+		
+		Serialized(Object value, byte[] bytes) {
+			this.value = value;
+			this.bytes = bytes;
+		}
+	}
+}
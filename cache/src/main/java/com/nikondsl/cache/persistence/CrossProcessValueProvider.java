@@ -0,0 +1,158 @@
+package com.nikondsl.cache.persistence;
+
+import com.nikondsl.cache.ApiReference;
+import com.nikondsl.cache.ValueProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import static com.nikondsl.cache.Deadlines.deadline;
+
+/**
+ * Value provider which calculates a value once for several processes, e.g. several JVMs of one host, which use
+ * the same expensive backend. SingleCalculationLatch calculates a value once inside a process, this provider lets
+ * the first process which takes a lease of the key calculate it, other processes wait for the lease and read
+ * the published value instead of asking the backend. A published value expires in the same time for everybody,
+ * counting from its original creation time.
+ * Typical usage will be like below;
+ *
+ * LeaseStore store = new FileLeaseStore(Paths.get("/dev/shm/cache.leases"), 4096, 4096);
+ * CrossProcessValueProvider provider = new CrossProcessValueProvider(valueProvider, store, 30, TimeUnit.SECONDS);
+ * SingleCalculationLatch latch = new SingleCalculationLatch(cacheProvider, provider);
+ * ...
+ * provider.close();
+ *
+ * If lease isn't taken in time or store fails, value is calculated locally, so the store never makes cache
+ * unavailable.
+ * @param <K> class for keys.
+ * @param <V> class for values.
+ * @param <E> class for exceptions of wrapped provider.
+ */
+@ApiReference(since ="1.1.0")
+public class CrossProcessValueProvider<K, V, E extends Exception> extends ForwardingValueProvider<K, V, E>
+		implements Closeable {
+	private static Logger LOG = LoggerFactory.getLogger(CrossProcessValueProvider.class);
+	
+	private final LeaseStore<K, V> store;
+	private final long leaseTimeout;
+	private final LongSupplier clock;
+	private final ConcurrentHashMap<K, LeaseStore.Published<V>> received = new ConcurrentHashMap<>();
+	
+	/**
+	 * @param delegate provider which creates values.
+	 * @param store store of leases, which is shared by processes.
+	 * @param leaseTimeout maximum time of waiting for another process, usually a bit more than time of calculation.
+	 * @param unit unit of timeout.
+	 */
+	@ApiReference(since ="1.1.0")
+	public CrossProcessValueProvider(ValueProvider<K, V, E> delegate, LeaseStore<K, V> store,
+									 long leaseTimeout, TimeUnit unit) {
+		this(delegate, store, leaseTimeout, unit, System::currentTimeMillis);
+	}
+	
+	CrossProcessValueProvider(ValueProvider<K, V, E> delegate, LeaseStore<K, V> store,
+							  long leaseTimeout, TimeUnit unit, LongSupplier clock) {
+		super(delegate);
+		if (store == null) {
+			throw new IllegalArgumentException("Lease store is required");
+		}
+		if (leaseTimeout < 0) {
+			throw new IllegalArgumentException("Lease timeout cannot be negative");
+		}
+		this.store = store;
+		this.leaseTimeout = unit.toMillis(leaseTimeout);
+		this.clock = clock;
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public V createValue(K key) throws E {
+		LeaseStore.Lease<V> lease;
+		try {
+			lease = store.acquire(key, leaseTimeout, TimeUnit.MILLISECONDS);
+		} catch (IOException ex) {
+			LOG.warn("Lease of key '{}' cannot be taken, value is created locally", key, ex);
+			return delegate.createValue(key);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			LOG.debug("Waiting for lease of key '{}' is interrupted, value is created locally", key);
+			return delegate.createValue(key);
+		}
+		if (lease == null) {
+			LOG.debug("Lease of key '{}' isn't taken in {} ms, value is created locally", key, leaseTimeout);
+			return delegate.createValue(key);
+		}
+		try {
+			LeaseStore.Published<V> published = read(key, lease);
+			if (published != null) {
+				received.put(key, published);
+				return published.getValue();
+			}
+			V created = delegate.createValue(key);
+			publish(key, created, lease);
+			return created;
+		} finally {
+			try {
+				lease.close();
+			} catch (IOException ex) {
+				LOG.warn("Lease of key '{}' cannot be released", key, ex);
+			}
+		}
+	}
+	
+	/**
+	 * Returns time which is left to a value published by another process, for new values wrapped provider is asked.
+	 */
+	@Override
+	@ApiReference(since ="1.1.0")
+	public long expireAfterCreate(K key, V value) {
+		LeaseStore.Published<V> published = received.get(key);
+		if (published != null && published.getValue() == value && received.remove(key, published)) {
+			return published.getExpiresAt() - clock.getAsLong();
+		}
+		return delegate.expireAfterCreate(key, value);
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public void close() throws IOException {
+		store.close();
+	}
+	
+	/**
+	 * Returns published value if it's not expired and it's not older than refresh time,
+	 * otherwise it's refreshed by the holder of lease.
+	 */
+	private LeaseStore.Published<V> read(K key, LeaseStore.Lease<V> lease) {
+		long now = clock.getAsLong();
+		LeaseStore.Published<V> published;
+		try {
+			published = lease.getPublished(now);
+		} catch (IOException ex) {
+			LOG.warn("Published value of key '{}' cannot be read", key, ex);
+			return null;
+		}
+		long timeToRefresh = delegate.getTimeToRefresh();
+		if (published == null || timeToRefresh > 0 && published.getCreatedAt() + timeToRefresh <= now) {
+			return null;
+		}
+		return published;
+	}
+	
+	private void publish(K key, V value, LeaseStore.Lease<V> lease) {
+		long now = clock.getAsLong();
+		long expiresAt = deadline(now, delegate.expireAfterCreate(key, value));
+		try {
+			if (!lease.publish(value, now, expiresAt)) {
+				LOG.debug("Value of key '{}' isn't published", key);
+			}
+		} catch (IOException ex) {
+			LOG.warn("Value of key '{}' cannot be published", key, ex);
+		}
+	}
+}
@@ -0,0 +1,233 @@
+package com.nikondsl.cache.persistence;
+
+import com.nikondsl.cache.ApiReference;
+import com.nikondsl.cache.codec.ValueCodec;
+import com.nikondsl.cache.codec.ValueCodecs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lease store for processes of one host, which needs no external services. The file is split into slots
+ * of fixed size, a key is mapped to a slot by its hash code. A lease is an exclusive lock of the slot's range of
+ * the file (which OS releases if process dies) plus a lock of the slot inside JVM. Published value is kept
+ * in the slot itself through memory mapping, so the next holder reads it without any copying to disk.
+ * Keys which share a slot just wait for each other.
+ * Values are encoded by given codec (see {@link ValueCodecs}), Java serialization is used by default. Values are
+ * decoded right from the mapped slot, only zero-copy codecs get a copy, since the slot is overwritten later.
+ * NOTE: hash codes of keys should be the same in all processes (e.g. strings or numbers), keys should be
+ * Serializable, values which don't fit in a slot are not published.
+ * @param <K> class for keys.
+ * @param <V> class for values.
+ */
+@ApiReference(since ="1.1.0")
+public class FileLeaseStore<K, V> implements LeaseStore<K, V> {
+	private static Logger LOG = LoggerFactory.getLogger(FileLeaseStore.class);
+	private static final int HEADER = Integer.BYTES + Long.BYTES * 2;
+	private static final long MAX_PAUSE = TimeUnit.MILLISECONDS.toNanos(50L);
+	
+	private final Path file;
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+	private final int slotSize;
+	private final ReentrantLock[] locks;
+	private final ValueCodec<V> codec;
+	
+	/**
+	 * Opens file of leases, or creates it if it doesn't exist. All processes should use the same sizes.
+	 * @param file file of leases.
+	 * @param slots number of slots.
+	 * @param slotSize size of a slot in bytes, i.e. limit of a published key and value.
+	 * @throws IOException if file cannot be opened.
+	 */
+	@ApiReference(since ="1.1.0")
+	public FileLeaseStore(Path file, int slots, int slotSize) throws IOException {
+		this(file, slots, slotSize, ValueCodecs.serializable());
+	}
+	
+	/**
+	 * Opens file of leases, or creates it if it doesn't exist. All processes should use the same sizes and codec.
+	 * @param file file of leases.
+	 * @param slots number of slots.
+	 * @param slotSize size of a slot in bytes, i.e. limit of a published key and value.
+	 * @param codec codec of values, e.g. {@link ValueCodecs#forClass(Class)}.
+	 * @throws IOException if file cannot be opened.
+	 */
+	@ApiReference(since ="1.1.0")
+	public FileLeaseStore(Path file, int slots, int slotSize, ValueCodec<V> codec) throws IOException {
+		if (file == null) {
+			throw new IllegalArgumentException("File is required");
+		}
+		if (codec == null) {
+			throw new IllegalArgumentException("Codec is required");
+		}
+		if (slots <= 0 || slotSize <= HEADER || (long) slots * slotSize > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Slots should fit in 2 GB and be larger than " + HEADER + " bytes");
+		}
+		this.file = file;
+		this.slotSize = slotSize;
+		this.codec = codec;
+		this.locks = new ReentrantLock[slots];
+		for (int i = 0; i < slots; i++) {
+			locks[i] = new ReentrantLock();
+		}
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) slots * slotSize);
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public Lease<V> acquire(K key, long timeout, TimeUnit unit) throws IOException, InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		int slot = (key.hashCode() & Integer.MAX_VALUE) % locks.length;
+		ReentrantLock lock = locks[slot];
+		if (!lock.tryLock(timeout, unit)) {
+			return null;
+		}
+		boolean leased = false;
+		try {
+			long pause = TimeUnit.MILLISECONDS.toNanos(1L);
+			for (;;) {
+				FileLock fileLock = tryLock(slot);
+				if (fileLock != null) {
+					leased = true;
+					return new SlotLease(key, slot, fileLock, lock);
+				}
+				long left = deadline - System.nanoTime();
+				if (left <= 0) {
+					return null;
+				}
+				TimeUnit.NANOSECONDS.sleep(Math.min(left, pause));
+				pause = Math.min(pause * 2, MAX_PAUSE);
+			}
+		} finally {
+			if (!leased) {
+				lock.unlock();
+			}
+		}
+	}
+	
+	private FileLock tryLock(int slot) throws IOException {
+		try {
+			return channel.tryLock((long) slot * slotSize, slotSize, false);
+		} catch (OverlappingFileLockException ex) {
+			//slot is leased by another store on the same file in this JVM
+			return null;
+		}
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public void close() throws IOException {
+		channel.close();
+	}
+	
+	private static ByteBuffer copyOf(ByteBuffer source) {
+		ByteBuffer copy = ByteBuffer.allocate(source.remaining());
+		copy.put(source);
+		((Buffer) copy).flip();
+		return copy;
+	}
+	
+	/**
+	 * Lease of a slot, it's used by one thread, which holds lock of the slot.
+	 */
+	class SlotLease implements Lease<V> {
+		private final K key;
+		private final int offset;
+		private final FileLock fileLock;
+		private final ReentrantLock lock;
+		private boolean closed;
+		
+		SlotLease(K key, int slot, FileLock fileLock, ReentrantLock lock) {
+			this.key = key;
+			this.offset = slot * slotSize;
+			this.fileLock = fileLock;
+			this.lock = lock;
+		}
+		
+		@Override
+		public Published<V> getPublished(long now) {
+			int length = buffer.getInt(offset);
+			if (length <= 0 || length > slotSize - HEADER) {
+				return null;
+			}
+			long createdAt = buffer.getLong(offset + Integer.BYTES);
+			long expiresAt = buffer.getLong(offset + Integer.BYTES + Long.BYTES);
+			if (expiresAt <= now) {
+				return null;
+			}
+			ByteBuffer slot = buffer.duplicate();
+			((Buffer) slot).limit(offset + HEADER + length);
+			((Buffer) slot).position(offset + HEADER);
+			try {
+				int keyLength = slot.getInt();
+				ByteBuffer keyBytes = slot.slice();
+				((Buffer) keyBytes).limit(keyLength);
+				((Buffer) slot).position(slot.position() + keyLength);
+				if (!Objects.equals(key, ValueCodecs.serializable().decode(keyBytes))) {
+					return null;
+				}
+				return new Published<>(codec.decode(codec.isZeroCopy() ? copyOf(slot) : slot), createdAt, expiresAt);
+			} catch (RuntimeException ex) {
+				LOG.warn("Published value cannot be read from '{}'", file, ex);
+				return null;
+			}
+		}
+		
+		@Override
+		public boolean publish(V value, long createdAt, long expiresAt) {
+			byte[] keyBytes;
+			byte[] valueBytes;
+			try {
+				keyBytes = ValueCodecs.serializable().toBytes(key);
+				valueBytes = codec.toBytes(value);
+			} catch (RuntimeException ex) {
+				LOG.debug("Value for key '{}' cannot be encoded, it's not published", key, ex);
+				return false;
+			}
+			int length = Integer.BYTES + keyBytes.length + valueBytes.length;
+			if (length > slotSize - HEADER) {
+				LOG.debug("Value for key '{}' doesn't fit in a slot of '{}', it's not published", key, file);
+				return false;
+			}
+			//length is written last, so a value which was being written during crash is never read
+			buffer.putInt(offset, 0);
+			ByteBuffer slot = buffer.duplicate();
+			((Buffer) slot).position(offset + HEADER);
+			slot.putInt(keyBytes.length);
+			slot.put(keyBytes);
+			slot.put(valueBytes);
+			buffer.putLong(offset + Integer.BYTES, createdAt);
+			buffer.putLong(offset + Integer.BYTES + Long.BYTES, expiresAt);
+			buffer.putInt(offset, length);
+			return true;
+		}
+		
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			try {
+				fileLock.release();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package com.nikondsl.cache.persistence;
+
+import com.nikondsl.cache.ApiReference;
+import com.nikondsl.cache.ReferenceType;
+import com.nikondsl.cache.ValueProvider;
+
+/**
+ * Value provider which wraps another one: values are created by subclass, all settings and expiration of values
+ * which subclass didn't take from elsewhere are given by wrapped provider.
+ * @param <K> class for keys.
+ * @param <V> class for values.
+ * @param <E> class for exceptions of wrapped provider.
+ */
+abstract class ForwardingValueProvider<K, V, E extends Exception> implements ValueProvider<K, V, E> {
+	protected final ValueProvider<K, V, E> delegate;
+	
+	ForwardingValueProvider(ValueProvider<K, V, E> delegate) {
+		if (delegate == null) {
+			throw new IllegalArgumentException("No value provider presented");
+		}
+		this.delegate = delegate;
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public long expireAfterCreate(K key, V value) {
+		return delegate.expireAfterCreate(key, value);
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public long getTimeToLive() {
+		return delegate.getTimeToLive();
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public long getTimeToRefresh() {
+		return delegate.getTimeToRefresh();
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public long getErrorTimeToLive() {
+		return delegate.getErrorTimeToLive();
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public long getMaxErrorTimeToLive() {
+		return delegate.getMaxErrorTimeToLive();
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public boolean isServingStaleOnError() {
+		return delegate.isServingStaleOnError();
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public ReferenceType getReferenceType() {
+		return delegate.getReferenceType();
+	}
+}
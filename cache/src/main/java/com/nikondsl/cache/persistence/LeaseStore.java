@@ -0,0 +1,91 @@
+package com.nikondsl.cache.persistence;
+
+import com.nikondsl.cache.ApiReference;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Store of leases, which lets processes agree which of them calculates a value (see
+ * {@link CrossProcessValueProvider}). A holder of a lease of a key is the only one which calculates its value,
+ * it publishes the value before releasing the lease, so the next holder reads it instead of calculating it again.
+ * Leases of a crashed process should be released by the store.
+ * @param <K> class for keys.
+ * @param <V> class for values.
+ */
+@ApiReference(since ="1.1.0")
+public interface LeaseStore<K, V> extends Closeable {
+	/**
+	 * Takes lease of a key, waiting while it's held by another process or thread.
+	 * @param key key of value.
+	 * @param timeout maximum time of waiting.
+	 * @param unit unit of timeout.
+	 * @return lease, or null if it isn't taken in time.
+	 * @throws IOException if store cannot be used.
+	 * @throws InterruptedException if waiting is interrupted.
+	 */
+	@ApiReference(since ="1.1.0")
+	Lease<V> acquire(K key, long timeout, TimeUnit unit) throws IOException, InterruptedException;
+	
+	/**
+	 * Lease of a key, it's released by {@link #close()}.
+	 * @param <V> class for values.
+	 */
+	@ApiReference(since ="1.1.0")
+	interface Lease<V> extends Closeable {
+		/**
+		 * Returns value which was published for the key and isn't expired yet, or null.
+		 * @param now current time in milliseconds since epoch.
+		 */
+		@ApiReference(since ="1.1.0")
+		Published<V> getPublished(long now) throws IOException;
+		
+		/**
+		 * Publishes a value for other processes.
+		 * @param value calculated value.
+		 * @param createdAt time of calculation in milliseconds since epoch.
+		 * @param expiresAt time when value expires in milliseconds since epoch.
+		 * @return false if value cannot be published, e.g. it's too large.
+		 */
+		@ApiReference(since ="1.1.0")
+		boolean publish(V value, long createdAt, long expiresAt) throws IOException;
+		
+		/**
+		 * Releases lease.
+		 */
+		@Override
+		@ApiReference(since ="1.1.0")
+		void close() throws IOException;
+	}
+	
+	/**
+	 * Value which was published by a holder of a lease.
+	 * @param <V> class for values.
+	 */
+	@ApiReference(since ="1.1.0")
+	class Published<V> {
+		private final V value;
+		private final long createdAt;
+		private final long expiresAt;
+		
+		@ApiReference(since ="1.1.0")
+		public Published(V value, long createdAt, long expiresAt) {
+			this.value = value;
+			this.createdAt = createdAt;
+			this.expiresAt = expiresAt;
+		}
+		
+		public V getValue() {
+			return value;
+		}
+		
+		public long getCreatedAt() {
+			return createdAt;
+		}
+		
+		public long getExpiresAt() {
+			return expiresAt;
+		}
+	}
+}
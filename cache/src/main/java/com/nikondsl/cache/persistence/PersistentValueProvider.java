@@ -0,0 +1,544 @@
+package com.nikondsl.cache.persistence;
+
+import com.nikondsl.cache.ApiReference;
+import com.nikondsl.cache.BulkValueProvider;
+import com.nikondsl.cache.ValueProvider;
+import com.nikondsl.cache.codec.ValueCodec;
+import com.nikondsl.cache.codec.ValueCodecs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import static com.nikondsl.cache.Deadlines.deadline;
+
+/**
+ * Value provider which keeps all created values in a memory-mapped log file, so after restart cache is filled
+ * from the file instead of the backend. A value is taken from the file while it isn't expired, counting from
+ * its original creation time, and it doesn't need refreshing yet. Otherwise the wrapped provider is asked.
+ * It also works as a spill-over tier for values which were evicted from a bounded cache.
+ * Typical usage will be like below;
+ *
+ * PersistentValueProvider provider = new PersistentValueProvider(valueProvider, Paths.get("cache.log"), 64 << 20);
+ * SingleCalculationLatch latch = new SingleCalculationLatch(cacheProvider, provider);
+ * latch.getAll(provider.getPersistedKeys());
+ * ...
+ * provider.close();
+ *
+ * When log is full and at least half of its records are dead (overwritten or expired) it's compacted in background,
+ * i.e. the latest not expired records are copied into a new log. Meanwhile values are read from the old log
+ * and new values are written into the new one, each record is moved to the new log atomically, so compaction
+ * is invisible to callers. Values which don't fit in log are just not persisted.
+ * Values are encoded by given codec (see {@link ValueCodecs}), Java serialization is used by default.
+ * NOTE: keys should be Serializable, values which cannot be encoded are just not persisted.
+ * @param <K> class for keys.
+ * @param <V> class for values.
+ * @param <E> class for exceptions of wrapped provider.
+ */
+@ApiReference(since ="1.1.0")
+public class PersistentValueProvider<K, V, E extends Exception> extends ForwardingValueProvider<K, V, E>
+		implements BulkValueProvider<K, V, E>, Closeable {
+	static final double COMPACTION_RATIO = 0.5;
+	static final int COMPACTION_INTERVAL = 256;
+	private static Logger LOG = LoggerFactory.getLogger(PersistentValueProvider.class);
+	
+	private final Path file;
+	private final int segmentSize;
+	private final LongSupplier clock;
+	private final ValueCodec<V> codec;
+	private final ConcurrentHashMap<K, Record> index = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<K, Restored<V>> restored = new ConcurrentHashMap<>();
+	private final Executor compactor;
+	private SegmentLog log;
+	private int records;
+	//new log while compaction runs, all fields below are guarded by this
+	private SegmentLog target;
+	private int targetRecords;
+	private CountDownLatch compaction;
+	private int persistsSinceCheck = COMPACTION_INTERVAL;
+	private boolean closed;
+	
+	/**
+	 * Opens log file, or creates it if it doesn't exist, and reads index of persisted values.
+	 * @param delegate provider which creates values.
+	 * @param file log file.
+	 * @param segmentSize size of log file in bytes.
+	 * @throws IOException if file cannot be opened.
+	 */
+	@ApiReference(since ="1.1.0")
+	public PersistentValueProvider(ValueProvider<K, V, E> delegate, Path file, int segmentSize) throws IOException {
+		this(delegate, file, segmentSize, ValueCodecs.serializable());
+	}
+	
+	/**
+	 * Opens log file, or creates it if it doesn't exist, and reads index of persisted values.
+	 * @param delegate provider which creates values.
+	 * @param file log file.
+	 * @param segmentSize size of log file in bytes.
+	 * @param codec codec of values, e.g. {@link ValueCodecs#forClass(Class)}.
+	 * @throws IOException if file cannot be opened.
+	 */
+	@ApiReference(since ="1.1.0")
+	public PersistentValueProvider(ValueProvider<K, V, E> delegate, Path file, int segmentSize,
+								   ValueCodec<V> codec) throws IOException {
+		this(delegate, file, segmentSize, codec, System::currentTimeMillis);
+	}
+	
+	PersistentValueProvider(ValueProvider<K, V, E> delegate, Path file, int segmentSize,
+							LongSupplier clock) throws IOException {
+		this(delegate, file, segmentSize, ValueCodecs.serializable(), clock);
+	}
+	
+	PersistentValueProvider(ValueProvider<K, V, E> delegate, Path file, int segmentSize, ValueCodec<V> codec,
+							LongSupplier clock) throws IOException {
+		this(delegate, file, segmentSize, codec, clock, null);
+	}
+	
+	/**
+	 * @param compactor executor of compaction, own single daemon thread is used if it's null.
+	 */
+	PersistentValueProvider(ValueProvider<K, V, E> delegate, Path file, int segmentSize, ValueCodec<V> codec,
+							LongSupplier clock, Executor compactor) throws IOException {
+		super(delegate);
+		if (file == null) {
+			throw new IllegalArgumentException("File is required");
+		}
+		if (codec == null) {
+			throw new IllegalArgumentException("Codec is required");
+		}
+		this.file = file;
+		this.segmentSize = segmentSize;
+		this.codec = codec;
+		this.clock = clock;
+		this.compactor = compactor == null ? newCompactor(file) : compactor;
+		this.log = open(file);
+		LOG.info("{} persisted values are read from '{}'", index.size(), file);
+	}
+	
+	private static ThreadPoolExecutor newCompactor(Path file) {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 1L, TimeUnit.MINUTES, new LinkedBlockingQueue<>(),
+				task -> {
+					Thread thread = new Thread(task, "Compaction of '" + file.getFileName() + "'");
+					thread.setDaemon(true);
+					return thread;
+				});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+	
+	private SegmentLog open(Path path) throws IOException {
+		SegmentLog opened = new SegmentLog(path, segmentSize);
+		long now = clock.getAsLong();
+		records = 0;
+		boolean broken = opened.replay((offset, payload) -> {
+			records++;
+			Entry<K, V> entry = decode(payload);
+			if (entry != null && entry.expiresAt > now) {
+				index.put(entry.key, new Record(opened, offset, entry.createdAt, entry.expiresAt));
+			} else if (entry != null) {
+				index.remove(entry.key);
+			}
+		});
+		if (broken) {
+			LOG.warn("Broken record is dropped at the end of '{}'", path);
+		}
+		return opened;
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public V createValue(K key) throws E {
+		Restored<V> value = restore(key);
+		if (value != null) {
+			return value.value;
+		}
+		V created = delegate.createValue(key);
+		persist(key, created);
+		return created;
+	}
+	
+	@Override
+	@ApiReference(since ="1.1.0")
+	public Map<K, V> createValues(Set<K> keys) throws E {
+		Map<K, V> result = new LinkedHashMap<>();
+		Set<K> toCreate = new HashSet<>();
+		for (K key : keys) {
+			Restored<V> value = restore(key);
+			if (value != null) {
+				result.put(key, value.value);
+			} else {
+				toCreate.add(key);
+			}
+		}
+		if (toCreate.isEmpty()) {
+			return result;
+		}
+		if (delegate instanceof BulkValueProvider) {
+			Map<K, V> created = ((BulkValueProvider<K, V, E>) delegate)
+					.createValues(Collections.unmodifiableSet(toCreate));
+			if (created != null) {
+				created.forEach(this::persist);
+				result.putAll(created);
+			}
+		} else {
+			for (K key : toCreate) {
+				V created = delegate.createValue(key);
+				persist(key, created);
+				result.put(key, created);
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns time which is left to a persisted value, for new values wrapped provider is asked.
+	 */
+	@Override
+	@ApiReference(since ="1.1.0")
+	public long expireAfterCreate(K key, V value) {
+		Restored<V> restoredValue = restored.get(key);
+		//entry is dropped even if value doesn't match, e.g. restored value was discarded by the caller
+		if (restoredValue != null && restored.remove(key, restoredValue) && restoredValue.value == value) {
+			return restoredValue.expiresAt - clock.getAsLong();
+		}
+		return delegate.expireAfterCreate(key, value);
+	}
+	
+	/**
+	 * Returns keys of values which are persisted and not expired, e.g. for warming cache up by getAll.
+	 */
+	@ApiReference(since ="1.1.0")
+	public Set<K> getPersistedKeys() {
+		long now = clock.getAsLong();
+		Set<K> keys = new HashSet<>();
+		index.forEach((key, record) -> {
+			if (record.expiresAt > now) {
+				keys.add(key);
+			}
+		});
+		return Collections.unmodifiableSet(keys);
+	}
+	
+	/**
+	 * Writes persisted values to disk, so they survive crash of the system, not only of the process.
+	 */
+	@ApiReference(since ="1.1.0")
+	public synchronized void flush() {
+		log.force();
+		if (target != null) {
+			target.force();
+		}
+	}
+	
+	/**
+	 * Closes log, compaction which is running is finished first.
+	 */
+	@Override
+	@ApiReference(since ="1.1.0")
+	public void close() throws IOException {
+		CountDownLatch running;
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			running = compaction;
+		}
+		if (compactor instanceof ExecutorService) {
+			((ExecutorService) compactor).shutdown();
+		}
+		if (running != null) {
+			try {
+				running.await();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		synchronized (this) {
+			if (target != null) {
+				//compaction is interrupted, values which were written into the new log are lost
+				target.close();
+			}
+			log.close();
+		}
+	}
+	
+	/**
+	 * Returns persisted value if it's not expired and it's not older than refresh time.
+	 */
+	private Restored<V> restore(K key) {
+		long now = clock.getAsLong();
+		long timeToRefresh = delegate.getTimeToRefresh();
+		Entry<K, V> entry = null;
+		//record may be moved by compaction while it's read, then the old log is closed and it's read again
+		for (int attempt = 0; attempt < 2 && entry == null; attempt++) {
+			Record record = index.get(key);
+			if (record == null || record.expiresAt <= now
+					|| timeToRefresh > 0 && record.createdAt + timeToRefresh <= now) {
+				return null;
+			}
+			byte[] payload = record.log.read(record.offset);
+			entry = payload == null ? null : decode(payload);
+		}
+		if (entry == null) {
+			return null;
+		}
+		//time to live may be changed since value was persisted, so it's asked again
+		long expiresAt = deadline(entry.createdAt, delegate.expireAfterCreate(key, entry.value));
+		if (expiresAt <= now) {
+			return null;
+		}
+		Restored<V> value = new Restored<>(entry.value, expiresAt);
+		restored.put(key, value);
+		return value;
+	}
+	
+	private void persist(K key, V value) {
+		long now = clock.getAsLong();
+		long expiresAt = deadline(now, delegate.expireAfterCreate(key, value));
+		byte[] payload;
+		try {
+			payload = encode(key, value, now, expiresAt);
+		} catch (RuntimeException ex) {
+			LOG.debug("Value for key '{}' cannot be encoded, it's not persisted", key, ex);
+			return;
+		}
+		restored.remove(key);
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			persistsSinceCheck++;
+			Record record = append(payload, now, expiresAt);
+			if (record == null && target == null && needsCompaction(now)) {
+				startCompaction();
+				record = append(payload, now, expiresAt);
+			}
+			if (record == null) {
+				LOG.debug("Value for key '{}' doesn't fit in '{}', it's not persisted", key, file);
+				return;
+			}
+			index.put(key, record);
+		}
+	}
+	
+	/**
+	 * Appends record to the new log if compaction is running, or to the current one.
+	 * @return record or null if log is full.
+	 */
+	private Record append(byte[] payload, long createdAt, long expiresAt) {
+		SegmentLog writable = target != null ? target : log;
+		int offset = writable.append(payload);
+		if (offset < 0) {
+			return null;
+		}
+		if (writable == target) {
+			targetRecords++;
+		} else {
+			records++;
+		}
+		return new Record(writable, offset, createdAt, expiresAt);
+	}
+	
+	/**
+	 * Checks if enough records are dead to free space by compaction, live records are counted at most once
+	 * in {@link #COMPACTION_INTERVAL} persists, so a live set which doesn't fit in log isn't rescanned each time.
+	 */
+	private boolean needsCompaction(long now) {
+		if (persistsSinceCheck < COMPACTION_INTERVAL) {
+			return false;
+		}
+		persistsSinceCheck = 0;
+		int live = 0;
+		for (Record record : index.values()) {
+			if (record.expiresAt > now) {
+				live++;
+			}
+		}
+		return records - live >= records * COMPACTION_RATIO;
+	}
+	
+	/**
+	 * Creates new log and starts copying live records into it, from now on new records are written there.
+	 */
+	private void startCompaction() {
+		Path compacted = compactedFile();
+		try {
+			Files.deleteIfExists(compacted);
+			target = new SegmentLog(compacted, segmentSize);
+		} catch (IOException ex) {
+			LOG.error("Log '{}' cannot be compacted", file, ex);
+			return;
+		}
+		targetRecords = 0;
+		CountDownLatch done = new CountDownLatch(1);
+		compaction = done;
+		SegmentLog source = log;
+		try {
+			compactor.execute(() -> compact(source, done));
+		} catch (RejectedExecutionException ex) {
+			LOG.error("Log '{}' cannot be compacted", file, ex);
+			abortCompaction(compacted);
+			done.countDown();
+		}
+	}
+	
+	/**
+	 * Copies the latest not expired records from source log into the new one. Source is read without locking,
+	 * each record is moved under lock only if it isn't replaced meanwhile, so callers are blocked only for
+	 * a single append. Records which are written during compaction are in the new log already.
+	 */
+	private void compact(SegmentLog source, CountDownLatch done) {
+		try {
+			long now = clock.getAsLong();
+			//iterator of concurrent map visits all keys which are not removed since it's created
+			for (Map.Entry<K, Record> entry : index.entrySet()) {
+				Record record = entry.getValue();
+				if (record.log != source) {
+					continue;
+				}
+				byte[] payload = record.expiresAt > now ? source.read(record.offset) : null;
+				synchronized (this) {
+					//value may be replaced meanwhile, then its new record is in the new log already
+					if (index.get(entry.getKey()) != record) {
+						continue;
+					}
+					Record copied = payload == null ? null : append(payload, record.createdAt, record.expiresAt);
+					if (copied == null) {
+						index.remove(entry.getKey());
+					} else {
+						index.put(entry.getKey(), copied);
+					}
+				}
+			}
+			synchronized (this) {
+				swap(source, now);
+			}
+		} finally {
+			done.countDown();
+		}
+	}
+	
+	/**
+	 * Makes the new log current and releases the old one, readers of its records look them up again.
+	 */
+	private void swap(SegmentLog source, long now) {
+		log = target;
+		records = targetRecords;
+		target = null;
+		persistsSinceCheck = 0;
+		try {
+			source.close();
+			Files.move(compactedFile(), file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException ex) {
+			LOG.error("Compacted log cannot replace '{}', it's used till restart", file, ex);
+		}
+		restored.entrySet().removeIf(entry -> entry.getValue().expiresAt <= now || !index.containsKey(entry.getKey()));
+		LOG.info("'{}' is compacted, {} values are left", file, index.size());
+	}
+	
+	private void abortCompaction(Path compacted) {
+		try {
+			target.close();
+			Files.deleteIfExists(compacted);
+		} catch (IOException ex) {
+			LOG.warn("Compacted log '{}' cannot be removed", compacted, ex);
+		}
+		target = null;
+		compaction = null;
+	}
+	
+	private Path compactedFile() {
+		return file.resolveSibling(file.getFileName() + ".compacting");
+	}
+	
+	/**
+	 * Record is creation and expiration time, length of serialized key, the key and encoded value.
+	 */
+	private byte[] encode(K key, V value, long createdAt, long expiresAt) {
+		byte[] keyBytes = ValueCodecs.serializable().toBytes(key);
+		byte[] valueBytes = codec.toBytes(value);
+		ByteBuffer payload = ByteBuffer.allocate(Long.BYTES * 2 + Integer.BYTES + keyBytes.length + valueBytes.length);
+		payload.putLong(createdAt);
+		payload.putLong(expiresAt);
+		payload.putInt(keyBytes.length);
+		payload.put(keyBytes);
+		payload.put(valueBytes);
+		return payload.array();
+	}
+	
+	private Entry<K, V> decode(byte[] payload) {
+		try {
+			ByteBuffer input = ByteBuffer.wrap(payload);
+			long createdAt = input.getLong();
+			long expiresAt = input.getLong();
+			int keyLength = input.getInt();
+			ByteBuffer keyBytes = input.slice();
+			((Buffer) keyBytes).limit(keyLength);
+			((Buffer) input).position(input.position() + keyLength);
+			K key = ValueCodecs.<K>serializable().decode(keyBytes);
+			return new Entry<>(key, codec.decode(input), createdAt, expiresAt);
+		} catch (RuntimeException ex) {
+			LOG.warn("Persisted value cannot be read from '{}'", file, ex);
+			return null;
+		}
+	}
+	
+	static class Record {
+		final SegmentLog log;
+		final int offset;
+		final long createdAt;
+		final long expiresAt;
+		
+		Record(SegmentLog log, int offset, long createdAt, long expiresAt) {
+			this.log = log;
+			this.offset = offset;
+			this.createdAt = createdAt;
+			this.expiresAt = expiresAt;
+		}
+	}
+	
+	static class Entry<K, V> {
+		final K key;
+		final V value;
+		final long createdAt;
+		final long expiresAt;
+		
+		Entry(K key, V value, long createdAt, long expiresAt) {
+			this.key = key;
+			this.value = value;
+			this.createdAt = createdAt;
+			this.expiresAt = expiresAt;
+		}
+	}
+	
+	static class Restored<V> {
+		final V value;
+		final long expiresAt;
+		
+		Restored(V value, long expiresAt) {
+			this.value = value;
+			this.expiresAt = expiresAt;
+		}
+	}
+}
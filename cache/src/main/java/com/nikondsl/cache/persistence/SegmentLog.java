@@ -0,0 +1,167 @@
+package com.nikondsl.cache.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of records in a memory-mapped file of fixed size. Each record is its length, CRC32 of payload
+ * and payload. Records are written into mapped pages, so they survive crash of the process, {@link #force()}
+ * makes them survive crash of the system too.
+ * On opening, log is read till the first zero length or broken record, i.e. a record which was being written
+ * during crash is dropped and the next append overwrites it.
+ * When log is closed its file is unmapped at once, records which are read after that are just missing.
+ * NOTE: all methods are synchronized.
+ */
+class SegmentLog implements Closeable {
+	private static final int HEADER = Integer.BYTES * 2;
+	
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+	private final int capacity;
+	private int position;
+	private boolean closed;
+	
+	SegmentLog(Path file, int capacity) throws IOException {
+		if (capacity <= HEADER) {
+			throw new IllegalArgumentException("Segment size is too small");
+		}
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		this.capacity = capacity;
+		this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+	}
+	
+	/**
+	 * Reads all valid records and moves append position after the last of them.
+	 * @param consumer receives offset and payload of each record.
+	 * @return true if a broken record was found and dropped.
+	 */
+	synchronized boolean replay(BiConsumer<Integer, byte[]> consumer) {
+		int offset = 0;
+		boolean broken = false;
+		while (offset + HEADER <= capacity) {
+			int length = buffer.getInt(offset);
+			if (length == 0) {
+				break;
+			}
+			byte[] payload = length > 0 && length <= capacity - offset - HEADER ? read(offset) : null;
+			if (payload == null) {
+				broken = true;
+				break;
+			}
+			consumer.accept(offset, payload);
+			offset += HEADER + length;
+		}
+		position = offset;
+		if (broken) {
+			//erase the rest, so garbage of the broken record is never taken for a valid one
+			for (int i = offset; i < capacity; i++) {
+				buffer.put(i, (byte) 0);
+			}
+		}
+		return broken;
+	}
+	
+	/**
+	 * Appends record.
+	 * @return offset of record or -1 if segment is full.
+	 */
+	synchronized int append(byte[] payload) {
+		if (payload.length == 0) {
+			throw new IllegalArgumentException("Empty records are not supported");
+		}
+		if (closed || (long) position + HEADER + payload.length > capacity) {
+			return -1;
+		}
+		int offset = position;
+		ByteBuffer target = buffer.duplicate();
+		((Buffer) target).position(offset + HEADER);
+		target.put(payload);
+		buffer.putInt(offset + Integer.BYTES, checksum(payload));
+		//length is written last, a torn record has either zero length or wrong checksum
+		buffer.putInt(offset, payload.length);
+		position = offset + HEADER + payload.length;
+		return offset;
+	}
+	
+	/**
+	 * Returns payload of a record at given offset or null if record is broken or log is closed.
+	 */
+	synchronized byte[] read(int offset) {
+		if (closed) {
+			return null;
+		}
+		int length = buffer.getInt(offset);
+		byte[] payload = new byte[length];
+		ByteBuffer source = buffer.duplicate();
+		((Buffer) source).position(offset + HEADER);
+		source.get(payload);
+		return checksum(payload) == buffer.getInt(offset + Integer.BYTES) ? payload : null;
+	}
+	
+	synchronized int size() {
+		return position;
+	}
+	
+	synchronized void force() {
+		if (!closed) {
+			buffer.force();
+		}
+	}
+	
+	@Override
+	public synchronized void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		buffer.force();
+		channel.close();
+		unmap(buffer);
+	}
+	
+	/**
+	 * Releases mapping without waiting for garbage collection, so a replaced log doesn't hold its pages.
+	 * If it's not possible on this JVM, mapping is released by garbage collector.
+	 */
+	private static void unmap(MappedByteBuffer buffer) {
+		try {
+			//Java 9+
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			invokeCleaner.invoke(theUnsafe.get(null), buffer);
+		} catch (NoSuchMethodException ex) {
+			//Java 8
+			try {
+				Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+				cleanerMethod.setAccessible(true);
+				Object cleaner = cleanerMethod.invoke(buffer);
+				if (cleaner != null) {
+					cleaner.getClass().getMethod("clean").invoke(cleaner);
+				}
+			} catch (ReflectiveOperationException | RuntimeException ignored) {
+				//left to garbage collector
+			}
+		} catch (ReflectiveOperationException | RuntimeException ignored) {
+			//left to garbage collector
+		}
+	}
+	
+	private static int checksum(byte[] payload) {
+		CRC32 crc = new CRC32();
+		crc.update(payload, 0, payload.length);
+		return (int) crc.getValue();
+	}
+}
@@ -0,0 +1,37 @@
+package com.nikondsl.cache;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Counts bytes which are allocated by the current thread on cache hits.
+ */
+public class AllocationCounter {
+	private static final int WARM_UP_HITS = 20_000;
+	private static final int MEASURED_HITS = 100_000;
+	private static final int RUNS = 3;
+	
+	public interface Hit {
+		void get() throws Exception;
+	}
+	
+	/**
+	 * Warms hit path up, so it's compiled, then returns number of bytes which are allocated by 100 000 hits.
+	 * JVM itself may allocate on this thread once (e.g. on deoptimization), so the best of a few runs is taken.
+	 */
+	public static long allocatedOnHits(Hit hit) throws Exception {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		for (int i = 0; i < WARM_UP_HITS; i++) {
+			hit.get();
+		}
+		long threadId = Thread.currentThread().getId();
+		long allocated = Long.MAX_VALUE;
+		for (int run = 0; run < RUNS; run++) {
+			long before = threads.getThreadAllocatedBytes(threadId);
+			for (int i = 0; i < MEASURED_HITS; i++) {
+				hit.get();
+			}
+			allocated = Math.min(allocated, threads.getThreadAllocatedBytes(threadId) - before);
+		}
+		return allocated;
+	}
+}
@@ -0,0 +1,19 @@
+package com.nikondsl.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@RunWith(JUnitPlatform.class)
+public class DeadlinesTest {
+	@Test
+	public void testDeadlineSaturatesOnOverflow() {
+		assertEquals(15L, Deadlines.deadline(10L, 5L));
+		assertEquals(-5L, Deadlines.deadline(-10L, 5L));
+		assertEquals(Long.MAX_VALUE, Deadlines.deadline(Long.MAX_VALUE - 1, 5L));
+		assertEquals(Long.MAX_VALUE, Deadlines.deadline(1L, Long.MAX_VALUE));
+		assertEquals(Long.MIN_VALUE, Deadlines.deadline(Long.MIN_VALUE + 1, -5L));
+	}
+}
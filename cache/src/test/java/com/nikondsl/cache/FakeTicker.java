@@ -0,0 +1,21 @@
+package com.nikondsl.cache;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ticker which is moved by tests, so expiration is checked without sleeping.
+ */
+public class FakeTicker implements Ticker {
+	private final AtomicLong time = new AtomicLong();
+	
+	@Override
+	public long read() {
+		return time.get();
+	}
+	
+	public FakeTicker advance(long duration, TimeUnit unit) {
+		time.addAndGet(unit.toNanos(duration));
+		return this;
+	}
+}
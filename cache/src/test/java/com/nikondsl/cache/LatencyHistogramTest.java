@@ -0,0 +1,45 @@
+package com.nikondsl.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@RunWith(JUnitPlatform.class)
+public class LatencyHistogramTest {
+	
+	@Test
+	public void testPercentilesAreWithinPrecision() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long i = 1; i <= 100_000; i++) {
+			histogram.record(i * 1_000L);
+		}
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+		
+		assertEquals(100_000L, snapshot.getCount());
+		assertEquals(100_000_000L, snapshot.getMax());
+		assertEquals(50_000_000L, snapshot.getValueAtPercentile(50.0), 50_000_000L * 0.032);
+		assertEquals(99_000_000L, snapshot.getValueAtPercentile(99.0), 99_000_000L * 0.032);
+		assertEquals(99_900_000L, snapshot.getValueAtPercentile(99.9), 99_900_000L * 0.032);
+		assertEquals(100_000_000L, snapshot.getValueAtPercentile(100.0));
+	}
+	
+	@Test
+	public void testBucketsCoverWholeRange() {
+		for (long value : new long[] {0L, 1L, 31L, 32L, 33L, 1_000L, 1L << 40, Long.MAX_VALUE}) {
+			int index = LatencyHistogram.indexOf(value);
+			assertTrue(LatencyHistogram.highestValueOf(index) >= value);
+			assertTrue(index == 0 || LatencyHistogram.highestValueOf(index - 1) < value);
+		}
+	}
+	
+	@Test
+	public void testEmptySnapshot() {
+		LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+		
+		assertEquals(0L, snapshot.getCount());
+		assertEquals(0L, snapshot.getValueAtPercentile(99.0));
+		assertThrows(IllegalArgumentException.class, () -> snapshot.getValueAtPercentile(101.0));
+	}
+}
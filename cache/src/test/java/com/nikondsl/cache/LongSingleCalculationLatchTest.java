@@ -0,0 +1,186 @@
+package com.nikondsl.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@RunWith(JUnitPlatform.class)
+public class LongSingleCalculationLatchTest {
+	private final FakeTicker ticker = new FakeTicker();
+	private final AtomicInteger calls = new AtomicInteger();
+	private final SimpleCacheStatistics<Long, String, NoOpException> statistics = new SimpleCacheStatistics<>();
+	private LongSingleCalculationLatch<String, NoOpException> latch;
+	
+	@BeforeEach
+	void setUp() {
+		latch = new LongSingleCalculationLatch<>(new ValueProvider<Long, String, NoOpException>() {
+			@Override
+			public String createValue(Long key) throws NoOpException {
+				calls.incrementAndGet();
+				if (key < 0) {
+					throw new NoOpException();
+				}
+				return Long.toString(key);
+			}
+		}, statistics, MaintenanceScheduler.shared(), ticker);
+	}
+	
+	@AfterEach
+	void tearDown() {
+		latch.stop();
+	}
+	
+	@Test
+	public void testValuesExpireAndAreRemoved() throws NoOpException {
+		for (long key = 0; key < 10_000; key++) {
+			assertEquals(Long.toString(key), latch.get(key));
+		}
+		assertEquals("42", latch.get(42L));
+		assertEquals(10_000L, latch.size());
+		assertEquals(10_000, calls.get());
+		
+		ticker.advance(2, TimeUnit.SECONDS);
+		latch.removeAllExpired();
+		
+		assertEquals(0L, latch.size());
+		assertEquals(10_000L, statistics.getRemoves());
+		for (long key = 0; key < 10_000; key++) {
+			assertEquals(Long.toString(key), latch.get(key));
+		}
+		assertEquals(10_000L, latch.size());
+		assertEquals(20_000, calls.get());
+	}
+	
+	@Test
+	public void testVetoKeepsExpiredValue() throws NoOpException {
+		latch.setVeto(new CachingVeto<Long, String>() {
+			@Override
+			public boolean removeAllowed(Long key, String value) {
+				return false;
+			}
+			
+			@Override
+			public boolean expireAllowed(Long key, String value) {
+				return false;
+			}
+		});
+		latch.get(1L);
+		ticker.advance(2, TimeUnit.SECONDS);
+		latch.removeAllExpired();
+		
+		assertEquals("1", latch.get(1L));
+		assertEquals(1, calls.get());
+		assertEquals(1L, latch.size());
+	}
+	
+	@Test
+	public void testVetoIsAskedWithoutLock() throws NoOpException {
+		latch.setVeto(new CachingVeto<Long, String>() {
+			@Override
+			public boolean removeAllowed(Long key, String value) {
+				//element is calculated again by veto, so it's not removed
+				try {
+					return latch.get(key) != null;
+				} catch (NoOpException ex) {
+					throw new IllegalStateException(ex);
+				}
+			}
+		});
+		latch.get(1L);
+		ticker.advance(2, TimeUnit.SECONDS);
+		
+		assertTimeoutPreemptively(Duration.ofSeconds(5), () -> latch.removeAllExpired());
+		
+		assertEquals(2, calls.get());
+		assertEquals(1L, latch.size());
+		assertEquals(0L, statistics.getRemoves());
+	}
+	
+	@Test
+	public void testHitKeyIsGivenToStatisticsSubclass() throws NoOpException {
+		List<Long> hits = new ArrayList<>();
+		LongSingleCalculationLatch<String, NoOpException> keyedLatch = new LongSingleCalculationLatch<>(
+				Object::toString, new SimpleCacheStatistics<Long, String, NoOpException>() {
+					@Override
+					public void hit(Long key) {
+						super.hit(key);
+						hits.add(key);
+					}
+				}, MaintenanceScheduler.shared(), ticker);
+		keyedLatch.get(7L);
+		keyedLatch.get(7L);
+		
+		assertEquals(Collections.singletonList(7L), hits);
+		keyedLatch.stop();
+	}
+	
+	@Test
+	public void testFailureIsKeptForErrorTimeToLive() {
+		assertThrows(NoOpException.class, () -> latch.get(-1L));
+		assertThrows(NoOpException.class, () -> latch.get(-1L));
+		assertEquals(1, calls.get());
+		
+		ticker.advance(2, TimeUnit.SECONDS);
+		
+		assertThrows(NoOpException.class, () -> latch.get(-1L));
+		assertEquals(2, calls.get());
+		assertEquals(2L, statistics.getErrors());
+	}
+	
+	@Test
+	public void testConcurrentGetShouldCreateOnce() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		LongSingleCalculationLatch<String, NoOpException> slowLatch = new LongSingleCalculationLatch<>(
+				new ValueProvider<Long, String, NoOpException>() {
+					@Override
+					public String createValue(Long key) {
+						calls.incrementAndGet();
+						started.countDown();
+						try {
+							TimeUnit.MILLISECONDS.sleep(100);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+						return Long.toString(key);
+					}
+				});
+		ExecutorService service = Executors.newFixedThreadPool(8);
+		List<Future<String>> results = new ArrayList<>();
+		results.add(service.submit(() -> slowLatch.get(1_000L)));
+		started.await();
+		for (int i = 0; i < 7; i++) {
+			results.add(service.submit(() -> slowLatch.get(1_000L)));
+		}
+		
+		for (Future<String> result : results) {
+			assertEquals("1000", result.get(1, TimeUnit.SECONDS));
+		}
+		service.shutdown();
+		slowLatch.stop();
+		assertEquals(1, calls.get());
+	}
+	
+	@Test
+	public void testHitShouldNotAllocate() throws Exception {
+		long key = 1_000_000L;
+		long allocated = AllocationCounter.allocatedOnHits(() -> latch.get(key));
+		
+		//a few bytes may come from allocation counter itself, but not a boxed key per hit
+		assertTrue(allocated < 1024, "Allocated on hits: " + allocated + " bytes");
+	}
+}
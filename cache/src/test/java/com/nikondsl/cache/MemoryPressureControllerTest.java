@@ -0,0 +1,57 @@
+package com.nikondsl.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@RunWith(JUnitPlatform.class)
+public class MemoryPressureControllerTest {
+	private MemoryPressureController controller;
+	private List<Double> parts;
+	
+	@BeforeEach
+	void setUp() {
+		controller = new MemoryPressureController();
+		parts = new ArrayList<>();
+		controller.addListener(parts::add);
+	}
+	
+	@Test
+	public void testEvictionIsProportionalToUsage() {
+		controller.evaluate(0.8);
+		assertTrue(parts.isEmpty());
+		
+		controller.evaluate(0.85);
+		controller.evaluate(1.0);
+		
+		assertEquals(2, parts.size());
+		assertEquals(0.5, parts.get(0), 0.001);
+		assertEquals(1.0, parts.get(1), 0.001);
+	}
+	
+	@Test
+	public void testEvictionGoesOnTillTarget() {
+		controller.evaluate(0.9);
+		controller.evaluate(0.75);
+		assertTrue(controller.isUnderPressure());
+		
+		controller.evaluate(0.69);
+		controller.evaluate(0.8);
+		
+		assertFalse(controller.isUnderPressure());
+		assertEquals(2, parts.size());
+		assertEquals(0.05 / 0.3, parts.get(1), 0.001);
+	}
+	
+	@Test
+	public void testWrongWatermarks() {
+		assertThrows(IllegalArgumentException.class, () -> controller.setHighWatermark(0.5));
+		assertThrows(IllegalArgumentException.class, () -> controller.setTarget(0.9));
+	}
+}
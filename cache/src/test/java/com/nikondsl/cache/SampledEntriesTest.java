@@ -0,0 +1,59 @@
+package com.nikondsl.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@RunWith(JUnitPlatform.class)
+public class SampledEntriesTest {
+	private final SampledEntries<String, Integer> entries = new SampledEntries<>();
+	
+	private static Set<String> keys(List<SampledEntries.Handle<String, Integer>> sample) {
+		Set<String> keys = new HashSet<>();
+		for (SampledEntries.Handle<String, Integer> handle : sample) {
+			keys.add(handle.key);
+		}
+		return keys;
+	}
+	
+	@Test
+	public void testSmallSampleContainsAllEntries() {
+		SampledEntries.Handle<String, Integer> first = entries.add("a", 1);
+		entries.add("b", 2);
+		entries.add("c", 3);
+		
+		entries.remove(first);
+		entries.remove(first);
+		
+		assertEquals(2, entries.size());
+		assertEquals(new HashSet<>(Arrays.asList("b", "c")), keys(entries.sample(16)));
+	}
+	
+	@Test
+	public void testRemovedEntriesAreNeverSampled() {
+		List<SampledEntries.Handle<String, Integer>> handles = new ArrayList<>();
+		for (int i = 0; i < 1_000; i++) {
+			handles.add(entries.add("key" + i, i));
+		}
+		for (int i = 0; i < 1_000; i += 2) {
+			entries.remove(handles.get(i));
+		}
+		
+		assertEquals(500, entries.size());
+		for (int i = 0; i < 100; i++) {
+			List<SampledEntries.Handle<String, Integer>> sample = entries.sample(16);
+			assertEquals(16, sample.size());
+			for (SampledEntries.Handle<String, Integer> handle : sample) {
+				assertEquals(1, handle.value % 2, handle.key);
+			}
+		}
+	}
+}
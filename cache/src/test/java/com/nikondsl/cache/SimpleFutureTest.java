@@ -7,10 +7,19 @@ import org.junit.platform.runner.JUnitPlatform;
 import org.junit.runner.RunWith;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 @ExtendWith(MockitoExtension.class)
@@ -33,17 +42,17 @@ public class SimpleFutureTest {
 	
 	@Test
 	public void testGetShouldCallCreate() throws NoOpException {
-		doReturn(false).when(future).isExpired();
+		doReturn(false).when(future).isExpired(anyLong());
 		doReturn(false).when(future).isDone();
 		
 		assertEquals("ABC", future.get("abc", null, statistics));
-	
+		
 		verify(future).constructValue("abc", statistics);
 	}
 	
 	@Test
 	public void testExpiredShouldCallCreate() throws NoOpException {
-		doReturn(true).when(future).isExpired();
+		doReturn(true).when(future).isExpired(anyLong());
 		doReturn(true).when(future).isDone();
 		
 		assertEquals("ABC", future.get("abc", null, statistics));
@@ -62,7 +71,7 @@ public class SimpleFutureTest {
 	
 	@Test
 	public void testExceptionCreateValue() throws NoOpException {
-		doReturn(false).when(future).isExpired();
+		doReturn(false).when(future).isExpired(anyLong());
 		doReturn(false).when(future).isDone();
 		doThrow(NoOpException.class).when(valueProvider).createValue("abc");
 		
@@ -91,10 +100,164 @@ public class SimpleFutureTest {
 	}
 	
 	@Test
-	public void testIsExpiredShouldCheckIsDone() {
+	public void testIsExpiredShouldCheckIsDone() throws NoOpException {
 		doReturn(Long.MAX_VALUE).when(valueProvider).getTimeToLive();
 		doReturn(true).when(future).isDone();
+		future.get("abc", null, statistics);
 		
 		assertFalse(future.isExpired());
 	}
-}
\ No newline at end of file
+	
+	@Test
+	public void testExpireAfterCreateIsUsedPerValue() throws NoOpException {
+		doReturn(Long.MAX_VALUE).when(valueProvider).expireAfterCreate("abc", "ABC");
+		doReturn(-1L).when(valueProvider).expireAfterCreate("zero", "ZERO");
+		SimpleFuture<String, String, NoOpException> expiredFuture = new SimpleFuture<>(valueProvider);
+		
+		assertEquals("ABC", future.get("abc", null, statistics));
+		assertEquals("ZERO", expiredFuture.get("zero", null, statistics));
+		
+		assertFalse(future.isExpired());
+		assertTrue(expiredFuture.isExpired());
+		assertEquals(Long.MAX_VALUE, future.getExpiresAt());
+	}
+	
+	@Test
+	public void testConcurrentGetShouldCreateOnce() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		ValueProvider<String, String, NoOpException> slowProvider = spy(new ValueProvider<String, String, NoOpException>() {
+			@Override
+			public String createValue(String s) {
+				started.countDown();
+				try {
+					TimeUnit.MILLISECONDS.sleep(100);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return s.toUpperCase();
+			}
+			
+			@Override
+			public long getTimeToLive() {
+				return TimeUnit.MINUTES.toMillis(1L);
+			}
+		});
+		SimpleFuture<String, String, NoOpException> slowFuture = new SimpleFuture<>(slowProvider);
+		ExecutorService service = Executors.newFixedThreadPool(8);
+		Future<String> first = service.submit(() -> slowFuture.get("abc", null, statistics));
+		started.await();
+		Future<?>[] waiting = new Future<?>[7];
+		for (int i = 0; i < waiting.length; i++) {
+			waiting[i] = service.submit(() -> slowFuture.get("abc", null, statistics));
+		}
+		
+		assertEquals("ABC", first.get(1, TimeUnit.SECONDS));
+		for (Future<?> each : waiting) {
+			assertEquals("ABC", each.get(1, TimeUnit.SECONDS));
+		}
+		service.shutdown();
+		verify(slowProvider).createValue("abc");
+	}
+	
+	@Test
+	public void testExpireShouldCallCreateAgain() throws NoOpException {
+		assertEquals("ABC", future.get("abc", null, statistics));
+		assertTrue(future.expire());
+		assertFalse(future.isDone());
+		assertEquals("ABC", future.get("abc", null, statistics));
+		
+		verify(valueProvider, times(2)).createValue("abc");
+	}
+	
+	@Test
+	public void testFailureIsCachedWithBackoff() throws NoOpException {
+		FakeTicker ticker = new FakeTicker();
+		AtomicInteger calls = new AtomicInteger();
+		ValueProvider<String, String, NoOpException> failingProvider = new ValueProvider<String, String, NoOpException>() {
+			@Override
+			public String createValue(String s) throws NoOpException {
+				calls.incrementAndGet();
+				throw new NoOpException();
+			}
+			
+			@Override
+			public long getErrorTimeToLive() {
+				return 100L;
+			}
+		};
+		SimpleFuture<String, String, NoOpException> failingFuture = new SimpleFuture<>(failingProvider, null, ticker, null);
+		
+		assertThrows(NoOpException.class, () -> failingFuture.get("abc", null, statistics));
+		assertThrows(NoOpException.class, () -> failingFuture.get("abc", null, statistics));
+		assertEquals(1, calls.get());
+		
+		ticker.advance(101L, TimeUnit.MILLISECONDS);
+		assertThrows(NoOpException.class, () -> failingFuture.get("abc", null, statistics));
+		assertEquals(2, calls.get());
+		
+		//the second failure is kept twice as long
+		ticker.advance(101L, TimeUnit.MILLISECONDS);
+		assertThrows(NoOpException.class, () -> failingFuture.get("abc", null, statistics));
+		assertEquals(2, calls.get());
+		ticker.advance(100L, TimeUnit.MILLISECONDS);
+		assertThrows(NoOpException.class, () -> failingFuture.get("abc", null, statistics));
+		assertEquals(3, calls.get());
+	}
+	
+	@Test
+	public void testStaleValueIsServedOnError() throws NoOpException {
+		FakeTicker ticker = new FakeTicker();
+		AtomicInteger calls = new AtomicInteger();
+		ValueProvider<String, String, NoOpException> flakyProvider = new ValueProvider<String, String, NoOpException>() {
+			@Override
+			public String createValue(String s) throws NoOpException {
+				if (calls.incrementAndGet() > 1) {
+					throw new NoOpException();
+				}
+				return s.toUpperCase();
+			}
+			
+			@Override
+			public boolean isServingStaleOnError() {
+				return true;
+			}
+		};
+		SimpleFuture<String, String, NoOpException> flakyFuture = new SimpleFuture<>(flakyProvider, null, ticker, null);
+		
+		assertEquals("ABC", flakyFuture.get("abc", null, statistics));
+		ticker.advance(2L, TimeUnit.SECONDS);
+		assertEquals("ABC", flakyFuture.get("abc", null, statistics));
+		assertTrue(flakyFuture.isFailed());
+		assertEquals("ABC", flakyFuture.get("abc", null, statistics));
+		
+		assertEquals(2, calls.get());
+		assertEquals(2, statistics.getStaleOnError());
+		assertEquals(0, statistics.getStaleServed());
+	}
+	
+	@Test
+	public void testHitReadsTickerOnce() throws NoOpException {
+		AtomicInteger reads = new AtomicInteger();
+		ValueProvider<String, String, NoOpException> refreshingProvider = new ValueProvider<String, String, NoOpException>() {
+			@Override
+			public String createValue(String s) {
+				return s.toUpperCase();
+			}
+			
+			@Override
+			public long getTimeToRefresh() {
+				return 500L;
+			}
+		};
+		SimpleFuture<String, String, NoOpException> refreshingFuture = new SimpleFuture<>(refreshingProvider, null,
+				() -> {
+					reads.incrementAndGet();
+					return 0L;
+				}, null);
+		assertEquals("ABC", refreshingFuture.get("abc", null, statistics, Runnable::run));
+		reads.set(0);
+		
+		assertEquals("ABC", refreshingFuture.get("abc", null, statistics, Runnable::run));
+		assertEquals(1, reads.get());
+	}
+}
@@ -1,22 +1,45 @@
 package com.nikondsl.cache;
 
+import com.nikondsl.cache.adapter.ConcurrentMapProviderAdapter;
+import com.nikondsl.cache.codec.ValueCodecs;
 import org.ehcache.Cache;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.platform.runner.JUnitPlatform;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
@@ -43,7 +66,25 @@ public class SingleCalculationLatchTest {
 	
 	@BeforeEach
 	public void setUp() {
-		cacheProvider = spy(new CacheProvider<String, SimpleFuture<String, Integer, Exception>>() {
+		cacheProvider = spy(newCacheProvider());
+		valueProvider = spy(new ValueProvider<String, Integer, Exception>() {
+			@Override
+			public Integer createValue(String key) throws Exception {
+				TimeUnit.MILLISECONDS.sleep(10);
+				return key.length();
+			}
+			
+			@Override
+			public long getTimeToLive() {
+				return 1L;
+			}
+		});
+		latch = spy(new SingleCalculationLatch(cacheProvider, valueProvider));
+		latch.setSleepBeforeDelete(10_000L);
+	}
+	
+	private static CacheProvider<String, SimpleFuture<String, Integer, Exception>> newCacheProvider() {
+		return new CacheProvider<String, SimpleFuture<String, Integer, Exception>>() {
 			private ConcurrentMap<String, SimpleFuture<String, Integer, Exception> > cache = new ConcurrentHashMap<>();
 			
 			@Override
@@ -80,22 +121,7 @@ public class SingleCalculationLatchTest {
 					}
 				}));
 			}
-			
-		});
-		valueProvider = spy(new ValueProvider<String, Integer, Exception>() {
-			@Override
-			public Integer createValue(String key) throws Exception {
-				TimeUnit.MILLISECONDS.sleep(10);
-				return key.length();
-			}
-			
-			@Override
-			public long getTimeToLive() {
-				return 1L;
-			}
-		});
-		latch = spy(new SingleCalculationLatch(cacheProvider, valueProvider));
-		latch.setSleepBeforeDelete(10_000L);
+		};
 	}
 	
 	@Test
@@ -177,15 +203,20 @@ public class SingleCalculationLatchTest {
 	
 	@Test
 	public void testNoVeto() throws Exception {
+		FakeTicker ticker = new FakeTicker();
+		SingleCalculationLatch<String, Integer, Exception> tickingLatch = new SingleCalculationLatch<>(cacheProvider,
+				valueProvider, statistics, MaintenanceScheduler.shared(), ticker);
 		CachingVeto<String, Integer> veto = new CachingVeto<String, Integer>() {};
-		latch.setSleepBeforeDelete(1);
-		latch.setVeto(veto);
-		assertEquals(4, (int)latch.get("zero"));
-		latch.stop();
+		tickingLatch.setVeto(veto);
+		assertEquals(4, (int)tickingLatch.get("zero"));
+		tickingLatch.stop();
+		tickingLatch.removeAllExpired();
+		verify(cacheProvider, never()).remove("zero");
+		//expired elements are found by timer wheel with 67 ms precision
+		ticker.advance(100, TimeUnit.MILLISECONDS);
 		
-		latch.removeAllExpired();
+		tickingLatch.removeAllExpired();
 		
-		TimeUnit.MILLISECONDS.sleep(25);
 		verify(cacheProvider).remove("zero");
 	}
 	
@@ -226,4 +257,472 @@ public class SingleCalculationLatchTest {
 		
 		latch.stop();
 	}
-}
\ No newline at end of file
+	
+	@Test
+	public void testHitShouldNotAllocate() throws Exception {
+		SingleCalculationLatch<String, Integer, Exception> hitLatch = new SingleCalculationLatch<>(newCacheProvider(),
+				new ValueProvider<String, Integer, Exception>() {
+					@Override
+					public Integer createValue(String key) {
+						return key.length();
+					}
+					
+					@Override
+					public long getTimeToLive() {
+						return Long.MAX_VALUE / 2;
+					}
+				});
+		String key = "hit";
+		long allocated = AllocationCounter.allocatedOnHits(() -> hitLatch.get(key));
+		hitLatch.stop();
+		
+		//a few bytes may come from allocation counter itself, but not a future per hit
+		assertTrue(allocated < 1024, "Allocated on hits: " + allocated + " bytes");
+	}
+	
+	@Test
+	public void testGetAsyncShouldShareCalculation() throws Exception {
+		latch.setVeto(NO_EXPIRE_VETO);
+		ExecutorService loader = Executors.newSingleThreadExecutor();
+		latch.setLoadExecutor(loader);
+		
+		CompletableFuture<Integer> first = latch.getAsync("abc");
+		CompletableFuture<Integer> second = latch.getAsync("abc");
+		
+		assertEquals(3, (int) first.get(1, TimeUnit.SECONDS));
+		assertEquals(3, (int) second.get(1, TimeUnit.SECONDS));
+		CompletableFuture<Integer> hit = latch.getAsync("abc");
+		assertTrue(hit.isDone());
+		assertEquals(3, (int) hit.get());
+		verify(valueProvider).createValue("abc");
+		
+		loader.shutdown();
+		latch.stop();
+	}
+	
+	@Test
+	public void testGetAsyncShouldCompleteExceptionally() throws Exception {
+		ValueProvider<String, Integer, Exception> failing = new ValueProvider<String, Integer, Exception>() {
+			@Override
+			public Integer createValue(String key) throws Exception {
+				throw new NoOpException();
+			}
+		};
+		SingleCalculationLatch<String, Integer, Exception> failingLatch = new SingleCalculationLatch<>(newCacheProvider(), failing);
+		
+		CompletableFuture<Integer> result = failingLatch.getAsync("abc");
+		
+		ExecutionException thrown = assertThrows(ExecutionException.class, () -> result.get(1, TimeUnit.SECONDS));
+		assertTrue(thrown.getCause() instanceof NoOpException);
+		failingLatch.stop();
+	}
+	
+	@Test
+	public void testDefaultLoadExecutorIsSharedByLatches() throws Exception {
+		Set<Thread> loaders = ConcurrentHashMap.newKeySet();
+		ValueProvider<String, Integer, Exception> recordingProvider = key -> {
+			loaders.add(Thread.currentThread());
+			return key.length();
+		};
+		SingleCalculationLatch<String, Integer, Exception> first = new SingleCalculationLatch<>(newCacheProvider(),
+				recordingProvider);
+		SingleCalculationLatch<String, Integer, Exception> second = new SingleCalculationLatch<>(newCacheProvider(),
+				recordingProvider);
+		
+		assertEquals(3, (int) first.getAsync("abc").get(1, TimeUnit.SECONDS));
+		first.stop();
+		//stopping of a latch doesn't stop loading of others
+		assertEquals(4, (int) second.getAsync("abcd").get(1, TimeUnit.SECONDS));
+		for (Thread loader : loaders) {
+			assertTrue(loader.isDaemon());
+			assertTrue(loader.getName().startsWith("Cache load thread #"), loader.getName());
+		}
+		second.stop();
+	}
+	
+	@Test
+	public void testGetAllShouldLoadOnlyMissingKeysAtOnce() throws Exception {
+		BulkValueProvider<String, Integer, Exception> bulkProvider = spy(new BulkValueProvider<String, Integer, Exception>() {
+			@Override
+			public Map<String, Integer> createValues(Set<String> keys) {
+				Map<String, Integer> result = new HashMap<>();
+				keys.forEach(key -> result.put(key, key.length()));
+				return result;
+			}
+			
+			@Override
+			public long getTimeToLive() {
+				return TimeUnit.MINUTES.toMillis(1L);
+			}
+		});
+		SingleCalculationLatch<String, Integer, Exception> bulkLatch = new SingleCalculationLatch<>(newCacheProvider(), bulkProvider);
+		assertEquals(1, (int) bulkLatch.get("a"));
+		
+		Map<String, Integer> result = bulkLatch.getAll(Arrays.asList("a", "bb", "ccc", "bb"));
+		
+		assertEquals(Arrays.asList("a", "bb", "ccc"), new ArrayList<>(result.keySet()));
+		assertEquals(Arrays.asList(1, 2, 3), new ArrayList<>(result.values()));
+		verify(bulkProvider).createValues(new HashSet<>(Arrays.asList("bb", "ccc")));
+		assertEquals(result, bulkLatch.getAll(Arrays.asList("a", "bb", "ccc")));
+		verify(bulkProvider, times(2)).createValues(anySet());
+		bulkLatch.stop();
+	}
+	
+	@Test
+	public void testRefreshShouldServeCurrentValue() throws Exception {
+		AtomicInteger counter = new AtomicInteger();
+		SimpleCacheStatistics<String, Integer, Exception> refreshStatistics = new SimpleCacheStatistics<>();
+		SingleCalculationLatch<String, Integer, Exception> refreshLatch = new SingleCalculationLatch<>(newCacheProvider(),
+				new ValueProvider<String, Integer, Exception>() {
+					@Override
+					public Integer createValue(String key) {
+						return counter.incrementAndGet();
+					}
+					
+					@Override
+					public long getTimeToLive() {
+						return TimeUnit.MINUTES.toMillis(1L);
+					}
+					
+					@Override
+					public long getTimeToRefresh() {
+						return 20L;
+					}
+				}, refreshStatistics);
+		refreshLatch.setLoadExecutor(Runnable::run);
+		assertEquals(1, (int) refreshLatch.get("abc"));
+		assertEquals(1, (int) refreshLatch.get("abc"));
+		
+		TimeUnit.MILLISECONDS.sleep(50);
+		
+		assertEquals(1, (int) refreshLatch.get("abc"));
+		assertEquals(2, (int) refreshLatch.get("abc"));
+		assertEquals(1, refreshStatistics.getRefreshes());
+		assertEquals(1, refreshStatistics.getStaleServed());
+		assertEquals(2L, refreshStatistics.snapshot().getLoadLatency().getCount());
+		refreshLatch.stop();
+	}
+	
+	@Test
+	public void testFailedRefreshIsRetriedAfterErrorTimeToLive() throws Exception {
+		FakeTicker ticker = new FakeTicker();
+		AtomicInteger calls = new AtomicInteger();
+		SingleCalculationLatch<String, Integer, Exception> refreshLatch = new SingleCalculationLatch<>(newCacheProvider(),
+				new ValueProvider<String, Integer, Exception>() {
+					@Override
+					public Integer createValue(String key) throws Exception {
+						if (calls.incrementAndGet() > 1) {
+							throw new Exception("backend is down");
+						}
+						return 1;
+					}
+					
+					@Override
+					public long getTimeToLive() {
+						return TimeUnit.MINUTES.toMillis(1L);
+					}
+					
+					@Override
+					public long getTimeToRefresh() {
+						return 100L;
+					}
+					
+					@Override
+					public long getErrorTimeToLive() {
+						return 1_000L;
+					}
+				}, new SimpleCacheStatistics<>(), MaintenanceScheduler.shared(), ticker);
+		refreshLatch.setLoadExecutor(Runnable::run);
+		assertEquals(1, (int) refreshLatch.get("abc"));
+		ticker.advance(200, TimeUnit.MILLISECONDS);
+		
+		for (int i = 0; i < 100; i++) {
+			assertEquals(1, (int) refreshLatch.get("abc"));
+		}
+		assertEquals(2, calls.get());
+		
+		//the second failure doubles delay
+		ticker.advance(1_100, TimeUnit.MILLISECONDS);
+		for (int i = 0; i < 100; i++) {
+			refreshLatch.get("abc");
+		}
+		assertEquals(3, calls.get());
+		ticker.advance(1_100, TimeUnit.MILLISECONDS);
+		refreshLatch.get("abc");
+		assertEquals(3, calls.get());
+		ticker.advance(1_000, TimeUnit.MILLISECONDS);
+		refreshLatch.get("abc");
+		assertEquals(4, calls.get());
+		refreshLatch.stop();
+	}
+	
+	@Test
+	public void testErrorTimeToLiveGrowsOverConsecutiveFailures() throws Exception {
+		FakeTicker ticker = new FakeTicker();
+		AtomicInteger calls = new AtomicInteger();
+		CacheProvider<String, SimpleFuture<String, Integer, Exception>> provider = newCacheProvider();
+		SingleCalculationLatch<String, Integer, Exception> failingLatch = new SingleCalculationLatch<>(provider,
+				new ValueProvider<String, Integer, Exception>() {
+					@Override
+					public Integer createValue(String key) throws Exception {
+						calls.incrementAndGet();
+						throw new Exception("backend is down");
+					}
+					
+					@Override
+					public long getErrorTimeToLive() {
+						return 1_000L;
+					}
+					
+					@Override
+					public long getMaxErrorTimeToLive() {
+						return 4_000L;
+					}
+				}, new SimpleCacheStatistics<>(), MaintenanceScheduler.shared(), ticker);
+		//failed future outlives its error time to live, so each next attempt waits twice longer: 1, 2, 4, 4 seconds
+		long[] waits = {1_000L, 2_000L, 4_000L, 4_000L};
+		for (int attempt = 0; attempt < waits.length; attempt++) {
+			assertThrows(Exception.class, () -> failingLatch.get("abc"));
+			assertEquals(attempt + 1, calls.get());
+			ticker.advance(waits[attempt] - 100L, TimeUnit.MILLISECONDS);
+			failingLatch.removeAllExpired();
+			assertThrows(Exception.class, () -> failingLatch.get("abc"));
+			assertEquals(attempt + 1, calls.get());
+			ticker.advance(200L, TimeUnit.MILLISECONDS);
+			failingLatch.removeAllExpired();
+		}
+		
+		//future is removed when max error time to live is over
+		ticker.advance(5, TimeUnit.SECONDS);
+		failingLatch.removeAllExpired();
+		assertNull(provider.get("abc"));
+		failingLatch.stop();
+	}
+	
+	@Test
+	public void testAbandonedFutureIsRemoved() throws Exception {
+		FakeTicker ticker = new FakeTicker();
+		SimpleCacheStatistics<String, Integer, Exception> abandonedStatistics = new SimpleCacheStatistics<>();
+		CacheProvider<String, SimpleFuture<String, Integer, Exception>> provider = newCacheProvider();
+		SingleCalculationLatch<String, Integer, Exception> abandonedLatch = new SingleCalculationLatch<>(provider,
+				key -> {
+					if (key.startsWith("broken")) {
+						throw new AssertionError("calculation is broken");
+					}
+					return key.length();
+				}, abandonedStatistics, MaintenanceScheduler.shared(), ticker);
+		abandonedLatch.setSleepBeforeDelete(500L);
+		assertThrows(AssertionError.class, () -> abandonedLatch.get("broken"));
+		assertEquals(3, (int) abandonedLatch.get("abc"));
+		abandonedLatch.removeAllExpired();
+		assertNotNull(provider.get("broken"));
+		assertEquals(2L, abandonedStatistics.snapshot().getTotalInCache());
+		
+		//error isn't cached, but future which is left after it is removed by maintenance
+		ticker.advance(300, TimeUnit.MILLISECONDS);
+		abandonedLatch.removeAllExpired();
+		assertNotNull(provider.get("broken"));
+		ticker.advance(300, TimeUnit.MILLISECONDS);
+		abandonedLatch.removeAllExpired();
+		assertNull(provider.get("broken"));
+		assertEquals(1L, abandonedStatistics.snapshot().getTotalInCache());
+		abandonedLatch.stop();
+	}
+	
+	@Test
+	public void testMaintenanceIsScheduledAndCancelled() {
+		MaintenanceScheduler scheduler = mock(MaintenanceScheduler.class);
+		ScheduledFuture<?> scheduled = mock(ScheduledFuture.class);
+		doReturn(scheduled).when(scheduler).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+		SingleCalculationLatch<String, Integer, Exception> scheduledLatch = new SingleCalculationLatch<>(newCacheProvider(),
+				valueProvider, new SimpleCacheStatistics<>(), scheduler);
+		scheduledLatch.setSleepBeforeDelete(5_000L);
+		ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+		verify(scheduler).schedule(task.capture(), eq(1_000L), eq(TimeUnit.MILLISECONDS));
+		
+		task.getValue().run();
+		
+		verify(scheduler).schedule(any(Runnable.class), eq(5_000L), eq(TimeUnit.MILLISECONDS));
+		scheduledLatch.stop();
+		verify(scheduled).cancel(false);
+	}
+	
+	@Test
+	public void testMemoryPressureEvictsColdElements() throws Exception {
+		FakeTicker ticker = new FakeTicker();
+		ValueProvider<String, Integer, Exception> longLivedProvider = new ValueProvider<String, Integer, Exception>() {
+			@Override
+			public Integer createValue(String key) {
+				return key.length();
+			}
+			
+			@Override
+			public long getTimeToLive() {
+				return TimeUnit.MINUTES.toMillis(1L);
+			}
+		};
+		SingleCalculationLatch<String, Integer, Exception> pressureLatch = new SingleCalculationLatch<>(cacheProvider,
+				longLivedProvider, statistics, MaintenanceScheduler.shared(), ticker);
+		pressureLatch.setMemoryPressureController(new MemoryPressureController());
+		for (String key : Arrays.asList("a", "b", "c", "d")) {
+			pressureLatch.get(key);
+		}
+		ticker.advance(1, TimeUnit.SECONDS);
+		pressureLatch.get("c");
+		pressureLatch.get("d");
+		
+		pressureLatch.relieveMemoryPressure(0.5);
+		
+		verify(cacheProvider).remove("a");
+		verify(cacheProvider).remove("b");
+		verify(cacheProvider, never()).remove("c");
+		verify(cacheProvider, never()).remove("d");
+		//elements are sampled, cache isn't copied while memory is short
+		verify(cacheProvider, never()).forEach(any());
+		assertEquals(2L, statistics.getMemoryPressureEvictions());
+		pressureLatch.stop();
+	}
+	
+	@Test
+	public void testIdleValuesAreCompressedAndReadBack() throws Exception {
+		FakeTicker ticker = new FakeTicker();
+		SimpleCacheStatistics<String, String, Exception> compressionStatistics = new SimpleCacheStatistics<>();
+		SingleCalculationLatch<String, String, Exception> compressingLatch = new SingleCalculationLatch<>(
+				new ConcurrentMapProviderAdapter<>("compressed"), new ValueProvider<String, String, Exception>() {
+					@Override
+					public String createValue(String key) {
+						StringBuilder value = new StringBuilder();
+						for (int i = 0; i < key.length() * key.length() * 10; i++) {
+							value.append("line ").append(i % 10).append('\n');
+						}
+						return value.toString();
+					}
+					
+					@Override
+					public long getTimeToLive() {
+						return TimeUnit.MINUTES.toMillis(10L);
+					}
+				}, compressionStatistics, MaintenanceScheduler.shared(), ticker);
+		compressingLatch.setCompression(ValueCodecs.STRING, 1, TimeUnit.MINUTES);
+		String expected = compressingLatch.get("cold key");
+		compressingLatch.get("hot key");
+		compressingLatch.get("s");
+		
+		ticker.advance(30, TimeUnit.SECONDS);
+		compressingLatch.get("hot key");
+		ticker.advance(40, TimeUnit.SECONDS);
+		
+		//hot key is read recently and value of "s" is too small
+		assertEquals(1, compressingLatch.compressIdle());
+		assertEquals(0, compressingLatch.compressIdle());
+		SimpleCacheStatistics.Snapshot snapshot = compressionStatistics.snapshot();
+		assertEquals(1L, snapshot.getCompressions());
+		assertTrue(snapshot.getCompressionRatio() > 5.0, snapshot.toString());
+		
+		assertEquals(expected, compressingLatch.get("cold key"));
+		assertEquals(expected, compressingLatch.get("cold key"));
+		assertEquals(1L, compressionStatistics.snapshot().getDecompressLatency().getCount());
+		compressingLatch.stop();
+	}
+	
+	@Test
+	public void testWeightIsBounded() throws Exception {
+		SingleCalculationLatch<String, Integer, Exception> weightedLatch =
+				new SingleCalculationLatch<>(cacheProvider, valueProvider, statistics);
+		weightedLatch.setWeigher((key, value) -> value);
+		weightedLatch.setMaximumWeight(5L);
+		weightedLatch.get("abc");
+		assertEquals(3L, weightedLatch.getTotalWeight());
+		weightedLatch.get("abcd");
+		
+		weightedLatch.evictToMaximumWeight();
+		
+		assertTrue(weightedLatch.getTotalWeight() <= 5L);
+		assertEquals(weightedLatch.getTotalWeight(), statistics.snapshot().getTotalWeight());
+		verify(cacheProvider, atLeastOnce()).remove(anyString());
+		weightedLatch.stop();
+	}
+	
+	@Test
+	public void testWeightIsBoundedWithoutVisitingWholeCache() throws Exception {
+		SingleCalculationLatch<String, Integer, Exception> weightedLatch = new SingleCalculationLatch<>(cacheProvider,
+				String::length, statistics);
+		weightedLatch.setWeigher((key, value) -> value);
+		for (int i = 0; i < 1_000; i++) {
+			weightedLatch.get("key" + i);
+		}
+		weightedLatch.setMaximumWeight(2_000L);
+		
+		weightedLatch.evictToMaximumWeight();
+		
+		assertTrue(weightedLatch.getTotalWeight() <= 2_000L);
+		assertTrue(weightedLatch.getTotalWeight() > 1_900L);
+		verify(cacheProvider, never()).forEach(any());
+		weightedLatch.stop();
+	}
+	
+	@Test
+	public void testGetWithTimeout() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger calls = new AtomicInteger();
+		SingleCalculationLatch<String, Integer, Exception> hangingLatch = new SingleCalculationLatch<>(newCacheProvider(),
+				new ValueProvider<String, Integer, Exception>() {
+					@Override
+					public Integer createValue(String key) throws Exception {
+						if (calls.incrementAndGet() > 1) {
+							release.await();
+						}
+						return calls.get();
+					}
+					
+					@Override
+					public long getTimeToLive() {
+						return TimeUnit.MINUTES.toMillis(1L);
+					}
+				});
+		assertThrows(TimeoutException.class, () -> {
+			calls.set(1);
+			hangingLatch.get("abc", 50, TimeUnit.MILLISECONDS);
+		});
+		assertEquals(-1, (int) hangingLatch.get("abc", 10, TimeUnit.MILLISECONDS, () -> -1));
+		
+		release.countDown();
+		
+		assertEquals(2, (int) hangingLatch.get("abc", 1, TimeUnit.SECONDS));
+		assertEquals(2, calls.get());
+		hangingLatch.stop();
+	}
+	
+	@Test
+	public void testGetWithTimeoutReturnsPreviousValue() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger calls = new AtomicInteger();
+		SimpleCacheStatistics<String, Integer, Exception> timeoutStatistics = new SimpleCacheStatistics<>();
+		CacheProvider<String, SimpleFuture<String, Integer, Exception>> provider = newCacheProvider();
+		SingleCalculationLatch<String, Integer, Exception> hangingLatch = new SingleCalculationLatch<>(provider,
+				new ValueProvider<String, Integer, Exception>() {
+					@Override
+					public Integer createValue(String key) throws Exception {
+						if (calls.incrementAndGet() > 1) {
+							release.await();
+						}
+						return calls.get();
+					}
+					
+					@Override
+					public long getTimeToLive() {
+						return TimeUnit.MINUTES.toMillis(1L);
+					}
+				}, timeoutStatistics);
+		assertEquals(1, (int) hangingLatch.get("abc"));
+		provider.get("abc").expire();
+		
+		assertEquals(1, (int) hangingLatch.get("abc", 50, TimeUnit.MILLISECONDS));
+		assertEquals(1L, timeoutStatistics.getStaleOnTimeout());
+		assertEquals(0L, timeoutStatistics.getStaleServed());
+		
+		release.countDown();
+		assertEquals(2, (int) hangingLatch.getAsync("abc").get(1, TimeUnit.SECONDS));
+		hangingLatch.stop();
+	}
+}
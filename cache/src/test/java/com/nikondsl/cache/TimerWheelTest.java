@@ -0,0 +1,90 @@
+package com.nikondsl.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@RunWith(JUnitPlatform.class)
+public class TimerWheelTest {
+	//ticker time may be negative, so wheel should work across zero
+	private static final long START = -TimeUnit.SECONDS.toNanos(1);
+	private TimerWheel<String> wheel;
+	
+	@BeforeEach
+	void setUp() {
+		wheel = new TimerWheel<>(START);
+	}
+	
+	private static long millis(long millis) {
+		return TimeUnit.MILLISECONDS.toNanos(millis);
+	}
+	
+	@Test
+	public void testAdvanceReturnsOnlyExpired() {
+		wheel.schedule(null, "soon", START + millis(10));
+		wheel.schedule(null, "later", START + TimeUnit.SECONDS.toNanos(10));
+		wheel.schedule(null, "never", Long.MAX_VALUE);
+		
+		assertEquals(2, wheel.size());
+		assertEquals(Collections.singletonList("soon"), wheel.advance(START + millis(100)));
+		assertEquals(1, wheel.size());
+		assertTrue(wheel.advance(START + TimeUnit.SECONDS.toNanos(5)).isEmpty());
+		assertEquals(Collections.singletonList("later"), wheel.advance(START + TimeUnit.SECONDS.toNanos(11)));
+		assertEquals(0, wheel.size());
+	}
+	
+	@Test
+	public void testCascadeThroughLevels() {
+		wheel.schedule(null, "minute", START + TimeUnit.MINUTES.toNanos(1));
+		wheel.schedule(null, "hour", START + TimeUnit.HOURS.toNanos(1));
+		wheel.schedule(null, "day", START + TimeUnit.DAYS.toNanos(1));
+		wheel.schedule(null, "week", START + TimeUnit.DAYS.toNanos(7));
+		
+		long time = START;
+		HashSet<String> expired = new HashSet<>();
+		while (time < START + TimeUnit.DAYS.toNanos(8)) {
+			time += TimeUnit.SECONDS.toNanos(30);
+			for (String key : wheel.advance(time)) {
+				assertTrue(expired.add(key));
+				switch (key) {
+					case "minute":
+						assertTrue(time - START <= TimeUnit.MINUTES.toNanos(1) + TimeUnit.SECONDS.toNanos(30));
+						break;
+					case "hour":
+						assertTrue(time - START <= TimeUnit.HOURS.toNanos(1) + TimeUnit.SECONDS.toNanos(30));
+						break;
+					default:
+				}
+			}
+		}
+		assertEquals(new HashSet<>(Arrays.asList("minute", "hour", "day", "week")), expired);
+	}
+	
+	@Test
+	public void testRescheduleAndDeschedule() {
+		TimerWheel.Node<String> node = wheel.schedule(null, "key", START + millis(10));
+		assertSame(node, wheel.schedule(node, "key", START + TimeUnit.MINUTES.toNanos(1)));
+		
+		assertTrue(wheel.advance(START + millis(100)).isEmpty());
+		wheel.deschedule(node);
+		
+		assertEquals(0, wheel.size());
+		assertTrue(wheel.advance(START + TimeUnit.MINUTES.toNanos(2)).isEmpty());
+	}
+	
+	@Test
+	public void testAlreadyExpiredFoundOnNextAdvance() {
+		wheel.advance(START + millis(1_000));
+		wheel.schedule(null, "past", START);
+		
+		assertEquals(Collections.singletonList("past"), wheel.advance(START + millis(1_100)));
+	}
+}
@@ -0,0 +1,149 @@
+package com.nikondsl.cache.adapter;
+
+import com.nikondsl.cache.SimpleCacheStatistics;
+import com.nikondsl.cache.SimpleFuture;
+import com.nikondsl.cache.ValueProvider;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@RunWith(JUnitPlatform.class)
+public class BoundedConcurrentMapProviderAdapterTest {
+	
+	@Test
+	public void testSizeIsBounded() {
+		BoundedConcurrentMapProviderAdapter<Integer, Integer> provider =
+				new BoundedConcurrentMapProviderAdapter<>("bounded", 100);
+		AtomicInteger evicted = new AtomicInteger();
+		provider.setEvictionListener((key, value) -> evicted.incrementAndGet());
+		for (int i = 0; i < 1_000; i++) {
+			assertNull(provider.putIfAbsent(i, i));
+		}
+		provider.cleanUp();
+		
+		assertEquals(100L, provider.size());
+		assertEquals(900, evicted.get());
+	}
+	
+	@Test
+	public void testFrequentKeysSurviveScan() {
+		BoundedConcurrentMapProviderAdapter<Integer, Integer> provider =
+				new BoundedConcurrentMapProviderAdapter<>("bounded", 100);
+		for (int i = 0; i < 10; i++) {
+			provider.putIfAbsent(i, i);
+		}
+		for (int round = 0; round < 10; round++) {
+			for (int i = 0; i < 10; i++) {
+				assertEquals(i, (int) provider.get(i));
+			}
+			provider.cleanUp();
+		}
+		for (int i = 1_000; i < 11_000; i++) {
+			provider.putIfAbsent(i, i);
+			provider.get(i % 10);
+		}
+		provider.cleanUp();
+		
+		for (int i = 0; i < 10; i++) {
+			assertEquals(i, (int) provider.get(i));
+		}
+	}
+	
+	@Test
+	public void testPutIfAbsentAndRemove() {
+		BoundedConcurrentMapProviderAdapter<String, String> provider =
+				new BoundedConcurrentMapProviderAdapter<>("bounded", 10);
+		
+		assertNull(provider.putIfAbsent("key", "first"));
+		assertEquals("first", provider.putIfAbsent("key", "second"));
+		assertEquals("first", provider.remove("key"));
+		assertNull(provider.get("key"));
+		assertNull(provider.remove("key"));
+		assertThrows(IllegalArgumentException.class, () -> new BoundedConcurrentMapProviderAdapter<>("bounded", 0));
+	}
+	
+	@Test
+	public void testWeightIsBounded() {
+		BoundedConcurrentMapProviderAdapter<Integer, StringBuilder> provider =
+				new BoundedConcurrentMapProviderAdapter<>("weighted", 1_000, (key, value) -> value.length());
+		for (int i = 0; i < 100; i++) {
+			provider.putIfAbsent(i, new StringBuilder(String.format("%050d", i)));
+		}
+		
+		assertEquals(1_000L, provider.getTotalWeight());
+		assertEquals(20L, provider.size());
+		
+		StringBuilder empty = new StringBuilder();
+		provider.putIfAbsent(-1, empty);
+		assertEquals(1_000L, provider.getTotalWeight());
+		empty.append(String.format("%0100d", 0));
+		provider.loaded(-1, empty);
+		
+		//either the heavy element or older ones are evicted
+		assertTrue(provider.getTotalWeight() <= 1_000L);
+		assertTrue(provider.size() <= 20L);
+	}
+	
+	@Test
+	public void testLeastRecentlyUsedProtectedElementIsEvicted() {
+		AtomicInteger heavy = new AtomicInteger(1);
+		BoundedConcurrentMapProviderAdapter<Integer, String> provider = new BoundedConcurrentMapProviderAdapter<>(
+				"weighted", 100, (key, value) -> key == 4 ? heavy.get() : 1);
+		for (int i = 0; i < 10; i++) {
+			provider.putIfAbsent(i, Integer.toString(i));
+			provider.cleanUp();
+		}
+		String four = provider.get(4);
+		for (int round = 0; round < 2; round++) {
+			for (int i = 0; i < 10; i++) {
+				provider.get(i);
+			}
+			provider.cleanUp();
+		}
+		//probation is empty now, all elements but the newest one are protected
+		heavy.set(94);
+		provider.loaded(4, four);
+		provider.cleanUp();
+		
+		for (int i = 0; i < 10; i++) System.out.println("DBG " + i + " " + provider.get(i));
+		assertEquals(100L, provider.getTotalWeight());
+		for (int i = 0; i < 3; i++) {
+			assertNull(provider.get(i));
+		}
+		for (int i = 3; i < 10; i++) {
+			assertEquals(Integer.toString(i), provider.get(i));
+		}
+	}
+	
+	@Test
+	public void testNotCalculatedFuturesAreNotEvicted() throws Exception {
+		ValueProvider<String, Integer, Exception> valueProvider = String::length;
+		SimpleCacheStatistics<String, Integer, Exception> statistics = new SimpleCacheStatistics<>();
+		BoundedConcurrentMapProviderAdapter<String, SimpleFuture<String, Integer, Exception>> provider =
+				new BoundedConcurrentMapProviderAdapter<>("futures", 3);
+		SimpleFuture<String, Integer, Exception> loading = new SimpleFuture<>(valueProvider);
+		for (int i = 0; i < 10; i++) {
+			SimpleFuture<String, Integer, Exception> future = new SimpleFuture<>(valueProvider);
+			future.get("key" + i, null, statistics);
+			provider.putIfAbsent("key" + i, future);
+			provider.cleanUp();
+			if (i == 2) {
+				for (int round = 0; round < 5; round++) {
+					provider.get("key0");
+					provider.get("key1");
+					provider.get("key2");
+				}
+				//it's used less than any other element
+				provider.putIfAbsent("loading", loading);
+			}
+		}
+		provider.cleanUp();
+		
+		assertEquals(3L, provider.size());
+		assertSame(loading, provider.get("loading"));
+	}
+}
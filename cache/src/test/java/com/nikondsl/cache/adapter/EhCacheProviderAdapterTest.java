@@ -0,0 +1,117 @@
+package com.nikondsl.cache.adapter;
+
+import com.nikondsl.cache.SimpleFuture;
+import com.nikondsl.cache.SingleCalculationLatch;
+import com.nikondsl.cache.ValueProvider;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@RunWith(JUnitPlatform.class)
+public class EhCacheProviderAdapterTest {
+	
+	@Test
+	public void testRemoveReturnsPreviousValue() {
+		try (EhCacheProviderAdapter<String, String> provider = EhCacheProviderAdapter
+				.builder("tiered", String.class, String.class)
+				.heap(10)
+				.offHeap(1)
+				.build()) {
+			assertNull(provider.putIfAbsent("key", "value"));
+			
+			assertEquals("value", provider.remove("key"));
+			assertNull(provider.remove("key"));
+			assertNull(provider.get("key"));
+			
+			provider.putIfAbsent("key", "newer");
+			assertFalse(provider.remove("key", "value"));
+			assertEquals("newer", provider.get("key"));
+			assertTrue(provider.remove("key", "newer"));
+		}
+	}
+	
+	@Test
+	public void testBulkOperations() {
+		try (EhCacheProviderAdapter<Integer, String> provider = EhCacheProviderAdapter
+				.builder("bulk", Integer.class, String.class)
+				.heap(100)
+				.build()) {
+			Map<Integer, String> entries = new HashMap<>();
+			for (int i = 0; i < 10; i++) {
+				entries.put(i, Integer.toString(i));
+			}
+			provider.putAll(entries);
+			
+			assertEquals(Collections.singletonMap(1, "1"), provider.getAll(new HashSet<>(Arrays.asList(1, 42))));
+			provider.removeAll(new HashSet<>(Arrays.asList(1, 2)));
+			assertNull(provider.get(1));
+			assertEquals(8, provider.getAll(entries.keySet()).size());
+		}
+	}
+	
+	@Test
+	public void testPersistentDiskTierSurvivesRestart() throws IOException {
+		Path directory = Files.createTempDirectory("ehcache");
+		try {
+			try (EhCacheProviderAdapter<String, String> provider = open(directory)) {
+				provider.putIfAbsent("key", "value");
+			}
+			try (EhCacheProviderAdapter<String, String> provider = open(directory)) {
+				assertEquals("value", provider.get("key"));
+			}
+		} finally {
+			try (Stream<Path> files = Files.walk(directory)) {
+				files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+			}
+		}
+	}
+	
+	@Test
+	public void testLatchFuturesAreKeptInHeapTierOnly() throws Exception {
+		Class<SimpleFuture<String, Integer, Exception>> futureClass = (Class) SimpleFuture.class;
+		assertThrows(IllegalArgumentException.class, () -> EhCacheProviderAdapter
+				.builder("off-heap", String.class, futureClass).heap(10).offHeap(1).build());
+		
+		AtomicInteger calls = new AtomicInteger();
+		try (EhCacheProviderAdapter<String, SimpleFuture<String, Integer, Exception>> provider = EhCacheProviderAdapter
+				.builder("latch", String.class, futureClass)
+				.heap(10)
+				.build()) {
+			SingleCalculationLatch<String, Integer, Exception> latch = new SingleCalculationLatch<>(provider,
+					new ValueProvider<String, Integer, Exception>() {
+						@Override
+						public Integer createValue(String key) {
+							return calls.incrementAndGet();
+						}
+					});
+			try {
+				assertEquals(1, (int) latch.get("key"));
+				assertEquals(1, (int) latch.get("key"));
+				assertEquals(1, calls.get());
+			} finally {
+				latch.stop();
+			}
+		}
+	}
+	
+	private EhCacheProviderAdapter<String, String> open(Path directory) {
+		return EhCacheProviderAdapter.builder("disk", String.class, String.class)
+				.heap(10)
+				.disk(directory, 1, true)
+				.build();
+	}
+}
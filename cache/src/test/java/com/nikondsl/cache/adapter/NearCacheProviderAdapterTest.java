@@ -0,0 +1,112 @@
+package com.nikondsl.cache.adapter;
+
+import org.ehcache.Cache;
+import org.ehcache.CacheManager;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.CacheManagerBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@RunWith(JUnitPlatform.class)
+public class NearCacheProviderAdapterTest {
+	private CacheManager cacheManager;
+	private Cache<Integer, String> cache;
+	private NearCacheProviderAdapter<Integer, String> provider;
+	
+	@BeforeEach
+	void setUp() {
+		cacheManager = CacheManagerBuilder.newCacheManagerBuilder().build(true);
+		cache = cacheManager.createCache("far", CacheConfigurationBuilder.newCacheConfigurationBuilder(
+				Integer.class, String.class, ResourcePoolsBuilder.heap(100)));
+		provider = new NearCacheProviderAdapter<>(new EhCacheProviderAdapter<>("far", cache), 16);
+	}
+	
+	@AfterEach
+	void tearDown() {
+		cacheManager.close();
+	}
+	
+	@Test
+	public void testFrequentKeysArePromoted() {
+		assertNull(provider.putIfAbsent(1, "one"));
+		assertNull(provider.putIfAbsent(2, "two"));
+		assertEquals("two", provider.get(2));
+		for (int i = 0; i < 10; i++) {
+			assertEquals("one", provider.get(1));
+		}
+		assertNull(provider.get(3));
+		
+		assertEquals(1L, provider.getPromotions());
+		assertEquals(8L, provider.getNearHits());
+		assertEquals(3L, provider.getFarHits());
+		assertEquals(1L, provider.getMisses());
+	}
+	
+	@Test
+	public void testRemovedElementIsNotServedByNearCache() {
+		provider.putIfAbsent(1, "one");
+		for (int i = 0; i < 10; i++) {
+			provider.get(1);
+		}
+		assertEquals("one", provider.remove(1));
+		
+		assertNull(provider.get(1));
+		provider.putIfAbsent(1, "uno");
+		assertEquals("uno", provider.get(1));
+	}
+	
+	@Test
+	public void testEvictedElementIsNotServedByNearCache() {
+		AtomicInteger evicted = new AtomicInteger();
+		provider.setEvictionListener((key, value) -> evicted.incrementAndGet());
+		for (int i = 0; i < 16; i++) {
+			provider.putIfAbsent(i, Integer.toString(i));
+			provider.get(i);
+			provider.get(i);
+		}
+		assertTrue(provider.getPromotions() > 0);
+		for (int i = 16; i < 1_000; i++) {
+			provider.putIfAbsent(i, Integer.toString(i));
+		}
+		
+		assertTrue(evicted.get() > 0);
+		for (int i = 0; i < 16; i++) {
+			assertEquals(cache.get(i), provider.get(i));
+		}
+	}
+	
+	@Test
+	public void testHotKeysAreNotEvictedFromBoundedFarCache() {
+		BoundedConcurrentMapProviderAdapter<Integer, String> far = new BoundedConcurrentMapProviderAdapter<>("far", 50);
+		NearCacheProviderAdapter<Integer, String> near = new NearCacheProviderAdapter<>(far, 16);
+		AtomicInteger hotEvictions = new AtomicInteger();
+		near.setEvictionListener((key, value) -> {
+			if (key == 0) {
+				hotEvictions.incrementAndGet();
+			}
+		});
+		near.putIfAbsent(0, "hot");
+		near.get(0);
+		near.get(0);
+		assertEquals(1L, near.getPromotions());
+		
+		for (int i = 1; i < 10_000; i++) {
+			near.putIfAbsent(i, Integer.toString(i));
+			near.get(i);
+			for (int j = 0; j < NearCacheProviderAdapter.ACCESS_SAMPLE; j++) {
+				assertEquals("hot", near.get(0));
+			}
+		}
+		
+		assertEquals(0, hotEvictions.get());
+		assertEquals("hot", far.get(0));
+	}
+}
@@ -0,0 +1,72 @@
+package com.nikondsl.cache.adapter;
+
+import com.nikondsl.cache.SimpleFuture;
+import com.nikondsl.cache.SingleCalculationLatch;
+import com.nikondsl.cache.ValueProvider;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@RunWith(JUnitPlatform.class)
+public class OffHeapProviderAdapterTest {
+	private final AtomicInteger created = new AtomicInteger();
+	private final ValueProvider<Integer, byte[], RuntimeException> valueProvider =
+			new ValueProvider<Integer, byte[], RuntimeException>() {
+				@Override
+				public byte[] createValue(Integer key) {
+					created.incrementAndGet();
+					byte[] value = new byte[1_000];
+					value[0] = key.byteValue();
+					return value;
+				}
+				
+				@Override
+				public long getTimeToLive() {
+					return TimeUnit.MINUTES.toMillis(1L);
+				}
+			};
+	
+	@Test
+	public void testValueIsReadFromDirectMemory() {
+		OffHeapProviderAdapter<Integer, byte[], RuntimeException> provider =
+				new OffHeapProviderAdapter<>("off-heap", 1 << 20, 1 << 16);
+		SingleCalculationLatch<Integer, byte[], RuntimeException> latch =
+				new SingleCalculationLatch<>(provider, valueProvider);
+		
+		byte[] first = latch.get(7);
+		byte[] second = latch.get(7);
+		
+		assertEquals(7, second[0]);
+		assertArrayEquals(first, second);
+		assertNotSame(first, second);
+		assertEquals(1, created.get());
+		assertEquals(1 << 16, provider.getAllocatedBytes());
+		latch.stop();
+	}
+	
+	@Test
+	public void testOldestValueIsEvictedWhenBudgetIsUsedUp() {
+		OffHeapProviderAdapter<Integer, byte[], RuntimeException> provider =
+				new OffHeapProviderAdapter<>("off-heap", 4_096, 4_096);
+		SingleCalculationLatch<Integer, byte[], RuntimeException> latch =
+				new SingleCalculationLatch<>(provider, valueProvider);
+		
+		latch.get(1);
+		latch.get(2);
+		SimpleFuture<Integer, byte[], RuntimeException> first = provider.get(1);
+		latch.get(3);
+		
+		assertNull(provider.get(1));
+		assertTrue(first.isExpired());
+		assertEquals(2, latch.get(2)[0]);
+		assertEquals(3, latch.get(3)[0]);
+		assertEquals(3, created.get());
+		assertEquals(4_096, provider.getAllocatedBytes());
+		latch.stop();
+	}
+}
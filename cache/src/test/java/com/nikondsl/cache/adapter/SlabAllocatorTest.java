@@ -0,0 +1,38 @@
+package com.nikondsl.cache.adapter;
+
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@RunWith(JUnitPlatform.class)
+public class SlabAllocatorTest {
+	
+	@Test
+	public void testEmptySlabIsReusedByAnotherSizeClass() {
+		SlabAllocator allocator = new SlabAllocator(8_192, 4_096);
+		List<SlabAllocator.Chunk> evicted = new ArrayList<>();
+		List<SlabAllocator.Chunk> small = new ArrayList<>();
+		for (int i = 0; i < 40; i++) {
+			small.add(allocator.allocate(100, evicted::add));
+		}
+		assertEquals(8_192, allocator.getAllocatedBytes());
+		for (SlabAllocator.Chunk chunk : small) {
+			allocator.free(chunk, chunk.generation);
+		}
+		assertEquals(2, allocator.getFreeSlabs());
+		
+		SlabAllocator.Chunk first = allocator.allocate(3_000, evicted::add);
+		SlabAllocator.Chunk second = allocator.allocate(3_000, evicted::add);
+		
+		assertNotNull(first);
+		assertNotNull(second);
+		assertTrue(evicted.isEmpty());
+		assertEquals(0, allocator.getFreeSlabs());
+		assertEquals(8_192, allocator.getAllocatedBytes());
+	}
+}
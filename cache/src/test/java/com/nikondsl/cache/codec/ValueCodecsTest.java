@@ -0,0 +1,147 @@
+package com.nikondsl.cache.codec;
+
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@RunWith(JUnitPlatform.class)
+public class ValueCodecsTest {
+	
+	@Test
+	public void testBuiltInCodecsRoundTrip() {
+		assertArrayEquals(new byte[] {1, 2, 3}, roundTrip(ValueCodecs.BYTES, new byte[] {1, 2, 3}));
+		assertEquals(42L, (long) roundTrip(ValueCodecs.LONG, 42L));
+		assertEquals(-7, (int) roundTrip(ValueCodecs.INTEGER, -7));
+		assertEquals(0.5, (double) roundTrip(ValueCodecs.DOUBLE, 0.5));
+		assertArrayEquals(new long[] {1L, Long.MIN_VALUE},
+				roundTrip(ValueCodecs.LONG_ARRAY, new long[] {1L, Long.MIN_VALUE}));
+		assertArrayEquals(new int[] {1, -1}, roundTrip(ValueCodecs.INT_ARRAY, new int[] {1, -1}));
+		assertArrayEquals(new double[] {0.25}, roundTrip(ValueCodecs.DOUBLE_ARRAY, new double[] {0.25}));
+		assertEquals(new BigDecimal("1.5"), roundTrip(ValueCodecs.serializable(), new BigDecimal("1.5")));
+		//arrays are written as is, without any headers
+		assertEquals(16, ValueCodecs.LONG_ARRAY.sizeOf(new long[2]));
+	}
+	
+	@Test
+	public void testStringSizeIsExactUtf8Length() {
+		for (String value : new String[] {"", "ascii", "кириллица", "€", "😀", "broken \ud83d"}) {
+			assertEquals(value.getBytes(StandardCharsets.UTF_8).length, ValueCodecs.STRING.sizeOf(value), value);
+			assertArrayEquals(value.getBytes(StandardCharsets.UTF_8), encode(ValueCodecs.STRING, value).array());
+		}
+		assertEquals("кириллица", roundTrip(ValueCodecs.STRING, "кириллица"));
+	}
+	
+	@Test
+	public void testByteBufferIsDecodedWithoutCopying() {
+		ByteBuffer stored = ByteBuffer.allocateDirect(16);
+		stored.putInt(4, 42);
+		
+		ByteBuffer source = stored.duplicate();
+		source.position(4).limit(8);
+		ByteBuffer value = ValueCodecs.BYTE_BUFFER.decode(source);
+		
+		assertTrue(ValueCodecs.BYTE_BUFFER.isZeroCopy());
+		assertTrue(value.isReadOnly());
+		assertEquals(4, value.remaining());
+		stored.putInt(4, 43);
+		assertEquals(43, value.getInt(0));
+	}
+	
+	@Test
+	public void testCodecIsFoundByClass() {
+		assertSame(ValueCodecs.STRING, ValueCodecs.forClass(String.class));
+		assertSame(ValueCodecs.LONG, ValueCodecs.forClass(long.class));
+		assertSame(ValueCodecs.BYTE_BUFFER, ValueCodecs.forClass(ByteBuffer.allocate(1).getClass()));
+		assertSame(ValueCodecs.serializable(), ValueCodecs.forClass(BigDecimal.class));
+		
+		ValueCodec<Point> codec = ValueCodecs.forClass(Point.class);
+		assertTrue(codec instanceof PointCodec);
+		Point point = roundTrip(codec, new Point(3, 4));
+		assertEquals(3, point.x);
+		assertEquals(4, point.y);
+	}
+	
+	@Test
+	public void testSerializedValueIsSizedAndEncodedOnce() {
+		Counted value = new Counted();
+		ValueCodec<Counted> codec = ValueCodecs.serializable();
+		
+		encode(codec, value);
+		assertEquals(1, value.serializations);
+		codec.toBytes(value);
+		assertEquals(2, value.serializations);
+		//another value of the same thread isn't taken for the sized one
+		assertEquals(new BigDecimal("2.5"), roundTrip(ValueCodecs.serializable(), new BigDecimal("2.5")));
+		codec.sizeOf(value);
+		codec.encode(new Counted(), ByteBuffer.allocate(1024));
+		assertEquals(3, value.serializations);
+	}
+	
+	private static <V> ByteBuffer encode(ValueCodec<V> codec, V value) {
+		ByteBuffer buffer = ByteBuffer.allocate(codec.sizeOf(value));
+		codec.encode(value, buffer);
+		assertFalse(buffer.hasRemaining());
+		buffer.flip();
+		return buffer;
+	}
+	
+	private static <V> V roundTrip(ValueCodec<V> codec, V value) {
+		ByteBuffer buffer = encode(codec, value);
+		V decoded = codec.decode(buffer);
+		assertFalse(buffer.hasRemaining());
+		return decoded;
+	}
+	
+	public static class Counted implements Serializable {
+		transient int serializations;
+		
+		private void writeObject(ObjectOutputStream output) throws IOException {
+			serializations++;
+			output.defaultWriteObject();
+		}
+	}
+	
+	public static class Point {
+		final int x;
+		final int y;
+		
+		Point(int x, int y) {
+			this.x = x;
+			this.y = y;
+		}
+	}
+	
+	/**
+	 * Codec which is listed in META-INF/services of tests.
+	 */
+	public static class PointCodec implements ValueCodec<Point> {
+		@Override
+		public Class<Point> getValueClass() {
+			return Point.class;
+		}
+		
+		@Override
+		public int sizeOf(Point value) {
+			return Integer.BYTES * 2;
+		}
+		
+		@Override
+		public void encode(Point value, ByteBuffer target) {
+			target.putInt(value.x).putInt(value.y);
+		}
+		
+		@Override
+		public Point decode(ByteBuffer source) {
+			return new Point(source.getInt(), source.getInt());
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package com.nikondsl.cache.persistence;
+
+import com.nikondsl.cache.ValueProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@RunWith(JUnitPlatform.class)
+public class CrossProcessValueProviderTest {
+	private final AtomicInteger created = new AtomicInteger();
+	private final AtomicLong clock = new AtomicLong(1_000_000L);
+	private final CountDownLatch started = new CountDownLatch(1);
+	private final CountDownLatch release = new CountDownLatch(1);
+	private final ValueProvider<String, String, RuntimeException> valueProvider =
+			new ValueProvider<String, String, RuntimeException>() {
+				@Override
+				public String createValue(String key) {
+					created.incrementAndGet();
+					started.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					return key.toUpperCase() + created.get();
+				}
+				
+				@Override
+				public long getTimeToLive() {
+					return TimeUnit.MINUTES.toMillis(1L);
+				}
+			};
+	private Path file;
+	
+	@BeforeEach
+	void setUp() throws IOException {
+		file = Files.createTempFile("cache", ".leases");
+	}
+	
+	@AfterEach
+	void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+	
+	//every provider has its own store, as if it was another process
+	private CrossProcessValueProvider<String, String, RuntimeException> open(long timeout) throws IOException {
+		return open(valueProvider, timeout);
+	}
+	
+	private CrossProcessValueProvider<String, String, RuntimeException> open(
+			ValueProvider<String, String, RuntimeException> delegate, long timeout) throws IOException {
+		return new CrossProcessValueProvider<>(delegate, new FileLeaseStore<>(file, 16, 1024),
+				timeout, TimeUnit.SECONDS, clock::get);
+	}
+	
+	@Test
+	public void testValueIsCreatedOnceAndReadByOthers() throws Exception {
+		ExecutorService service = Executors.newFixedThreadPool(2);
+		try (CrossProcessValueProvider<String, String, RuntimeException> first = open(10);
+			 CrossProcessValueProvider<String, String, RuntimeException> second = open(10)) {
+			Future<String> firstValue = service.submit(() -> first.createValue("abc"));
+			started.await();
+			Future<String> secondValue = service.submit(() -> second.createValue("abc"));
+			TimeUnit.MILLISECONDS.sleep(50);
+			release.countDown();
+			
+			assertEquals("ABC1", firstValue.get(5, TimeUnit.SECONDS));
+			assertEquals("ABC1", secondValue.get(5, TimeUnit.SECONDS));
+			assertEquals(1, created.get());
+			clock.addAndGet(TimeUnit.SECONDS.toMillis(20));
+			//only time which is left since original creation is given to cache
+			assertEquals(TimeUnit.SECONDS.toMillis(40), second.expireAfterCreate("abc", secondValue.get()));
+		} finally {
+			service.shutdown();
+		}
+	}
+	
+	@Test
+	public void testValueIsCreatedLocallyIfLeaseIsNotTaken() throws Exception {
+		ExecutorService service = Executors.newSingleThreadExecutor();
+		try (CrossProcessValueProvider<String, String, RuntimeException> first = open(10);
+			 CrossProcessValueProvider<String, String, RuntimeException> second = open(key -> "local", 0)) {
+			Future<String> firstValue = service.submit(() -> first.createValue("abc"));
+			started.await();
+			
+			String secondValue = second.createValue("abc");
+			assertEquals("local", secondValue);
+			assertEquals(TimeUnit.SECONDS.toMillis(1L), second.expireAfterCreate("abc", secondValue));
+			release.countDown();
+			assertEquals("ABC1", firstValue.get(5, TimeUnit.SECONDS));
+		} finally {
+			service.shutdown();
+		}
+	}
+	
+	@Test
+	public void testExpiredValueIsCreatedAgain() throws IOException {
+		release.countDown();
+		try (CrossProcessValueProvider<String, String, RuntimeException> first = open(1);
+			 CrossProcessValueProvider<String, String, RuntimeException> second = open(1)) {
+			assertEquals("ABC1", first.createValue("abc"));
+			assertEquals("ABC1", second.createValue("abc"));
+			
+			clock.addAndGet(TimeUnit.MINUTES.toMillis(1L));
+			
+			assertEquals("ABC2", second.createValue("abc"));
+			assertEquals("ABC2", first.createValue("abc"));
+			assertEquals(2, created.get());
+		}
+	}
+}
@@ -0,0 +1,199 @@
+package com.nikondsl.cache.persistence;
+
+import com.nikondsl.cache.SingleCalculationLatch;
+import com.nikondsl.cache.ValueProvider;
+import com.nikondsl.cache.adapter.ConcurrentMapProviderAdapter;
+import com.nikondsl.cache.codec.ValueCodecs;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@RunWith(JUnitPlatform.class)
+public class PersistentValueProviderTest {
+	private static final int SEGMENT_SIZE = 64 << 10;
+	private final AtomicInteger created = new AtomicInteger();
+	private final AtomicInteger compactions = new AtomicInteger();
+	private final AtomicLong clock = new AtomicLong(1_000_000L);
+	private final ValueProvider<String, String, RuntimeException> valueProvider =
+			new ValueProvider<String, String, RuntimeException>() {
+				@Override
+				public String createValue(String key) {
+					created.incrementAndGet();
+					return key.toUpperCase();
+				}
+				
+				@Override
+				public long getTimeToLive() {
+					return TimeUnit.MINUTES.toMillis(1L);
+				}
+			};
+	private Path file;
+	
+	@BeforeEach
+	void setUp() throws IOException {
+		file = Files.createTempFile("cache", ".log");
+	}
+	
+	@AfterEach
+	void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+	
+	private PersistentValueProvider<String, String, RuntimeException> open() throws IOException {
+		//compaction is run by the calling thread, so results don't depend on timing
+		return open(task -> {
+			compactions.incrementAndGet();
+			task.run();
+		});
+	}
+	
+	private PersistentValueProvider<String, String, RuntimeException> open(Executor compactor) throws IOException {
+		return new PersistentValueProvider<>(valueProvider, file, SEGMENT_SIZE, ValueCodecs.serializable(), clock::get,
+				compactor);
+	}
+	
+	@Test
+	public void testValuesAreRestoredAfterReopening() throws IOException {
+		try (PersistentValueProvider<String, String, RuntimeException> provider = open()) {
+			assertEquals("ABC", provider.createValue("abc"));
+			assertEquals("XYZ", provider.createValue("xyz"));
+		}
+		clock.addAndGet(TimeUnit.SECONDS.toMillis(20));
+		
+		try (PersistentValueProvider<String, String, RuntimeException> provider = open()) {
+			SingleCalculationLatch<String, String, RuntimeException> latch =
+					new SingleCalculationLatch<>(new ConcurrentMapProviderAdapter<>("warm"), provider);
+			assertEquals(new HashSet<>(Arrays.asList("abc", "xyz")), provider.getPersistedKeys());
+			
+			assertEquals("ABC", latch.get("abc"));
+			assertEquals(2, created.get());
+			//only time which is left since original creation is given to cache
+			assertEquals(TimeUnit.SECONDS.toMillis(40), provider.expireAfterCreate("xyz",
+					provider.createValue("xyz")));
+			latch.stop();
+		}
+	}
+	
+	@Test
+	public void testExpiredValuesAreNotRestored() throws IOException {
+		try (PersistentValueProvider<String, String, RuntimeException> provider = open()) {
+			provider.createValue("abc");
+		}
+		clock.addAndGet(TimeUnit.MINUTES.toMillis(2));
+		
+		try (PersistentValueProvider<String, String, RuntimeException> provider = open()) {
+			assertTrue(provider.getPersistedKeys().isEmpty());
+			assertEquals("ABC", provider.createValue("abc"));
+			assertEquals(2, created.get());
+		}
+	}
+	
+	@Test
+	public void testTornRecordIsDropped() throws IOException {
+		try (PersistentValueProvider<String, String, RuntimeException> provider = open()) {
+			provider.createValue("abc");
+			provider.createValue("xyz");
+		}
+		try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+			//damage the tail of the last record, like a crash in the middle of writing
+			raw.seek(0);
+			int firstLength = raw.readInt();
+			raw.seek(8L + firstLength + 8L + 5L);
+			raw.writeLong(-1L);
+		}
+		
+		try (PersistentValueProvider<String, String, RuntimeException> provider = open()) {
+			assertEquals(Collections.singleton("abc"), provider.getPersistedKeys());
+			assertEquals("XYZ", provider.createValue("xyz"));
+		}
+		try (PersistentValueProvider<String, String, RuntimeException> provider = open()) {
+			assertEquals(new HashSet<>(Arrays.asList("abc", "xyz")), provider.getPersistedKeys());
+		}
+	}
+	
+	@Test
+	public void testLogIsCompactedWhenFull() throws IOException {
+		try (PersistentValueProvider<String, String, RuntimeException> provider = open()) {
+			for (int i = 0; i < 2_000; i++) {
+				if (i % 100 == 0) {
+					clock.addAndGet(TimeUnit.MINUTES.toMillis(2));
+				}
+				provider.createValue("key" + i);
+			}
+			
+			assertEquals(100, provider.getPersistedKeys().size());
+			//log is compacted only when it's full of dead records, not on each append which doesn't fit
+			assertTrue(compactions.get() > 0 && compactions.get() < 4);
+		}
+		try (PersistentValueProvider<String, String, RuntimeException> provider = open()) {
+			assertEquals(100, provider.getPersistedKeys().size());
+			assertEquals("KEY1999", provider.createValue("key1999"));
+		}
+		assertEquals(2_000, created.get());
+	}
+	
+	@Test
+	public void testValuesAreServedAndPersistedDuringCompaction() throws IOException {
+		AtomicReference<Runnable> compaction = new AtomicReference<>();
+		String live;
+		try (PersistentValueProvider<String, String, RuntimeException> provider = open(compaction::set)) {
+			int i = 0;
+			for (; compaction.get() == null; i++) {
+				if (i % 100 == 0) {
+					clock.addAndGet(TimeUnit.MINUTES.toMillis(2));
+				}
+				provider.createValue("key" + i);
+			}
+			//the last value is written into the new log, the previous one is still in the old log
+			assertNotEquals(1, i % 100);
+			live = "key" + (i - 2);
+			int createdBeforeCompaction = created.get();
+			
+			assertEquals(live.toUpperCase(), provider.createValue(live));
+			assertEquals("FRESH", provider.createValue("fresh"));
+			assertEquals(createdBeforeCompaction + 1, created.get());
+			
+			compaction.get().run();
+			assertEquals(live.toUpperCase(), provider.createValue(live));
+			assertEquals("FRESH", provider.createValue("fresh"));
+			assertEquals(createdBeforeCompaction + 1, created.get());
+		}
+		try (PersistentValueProvider<String, String, RuntimeException> provider = open()) {
+			assertTrue(provider.getPersistedKeys().containsAll(Arrays.asList(live, "fresh")));
+		}
+		assertFalse(Files.exists(file.resolveSibling(file.getFileName() + ".compacting")));
+	}
+	
+	@Test
+	public void testLogIsNotCompactedWhenLiveValuesDoNotFit() throws IOException {
+		try (PersistentValueProvider<String, String, RuntimeException> provider = open()) {
+			for (int i = 0; i < 5_000; i++) {
+				provider.createValue("key" + i);
+			}
+			int persisted = provider.getPersistedKeys().size();
+			
+			assertTrue(persisted < 5_000);
+			assertEquals(0, compactions.get());
+			//the latest values are not persisted, but don't break anything
+			assertEquals("KEY4999", provider.createValue("key4999"));
+			assertEquals(persisted, provider.getPersistedKeys().size());
+		}
+	}
+}